@@ -0,0 +1,55 @@
+#!/usr/bin/env python3
+"""Compares two JMH JSON result files and reports benchmarks that got slower.
+
+Usage: compare.py BASELINE.json CURRENT.json [--threshold PERCENT]
+
+Exits with status 1 if any benchmark's score regressed by more than the threshold (default 10%).
+"""
+import argparse
+import json
+import sys
+
+
+def load(path):
+    with open(path) as f:
+        results = {}
+        for run in json.load(f):
+            params = ",".join(f"{k}={v}" for k, v in sorted(run.get("params", {}).items()))
+            key = f"{run['benchmark']}({params})"
+            metric = run["primaryMetric"]
+            alloc = run.get("secondaryMetrics", {}).get("gc.alloc.rate.norm", {}).get("score")
+            results[key] = (metric["score"], metric["scoreUnit"], alloc)
+        return results
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("baseline")
+    parser.add_argument("current")
+    parser.add_argument("--threshold", type=float, default=10.0)
+    args = parser.parse_args()
+
+    baseline = load(args.baseline)
+    current = load(args.current)
+    regressions = 0
+    for key in sorted(current):
+        score, unit, alloc = current[key]
+        if key not in baseline:
+            print(f"NEW   {key}: {score:.3f} {unit}")
+            continue
+        base_score, _, base_alloc = baseline[key]
+        # All benchmarks measure average time, so a higher score is slower.
+        change = (score - base_score) / base_score * 100 if base_score else 0.0
+        status = "SLOW " if change > args.threshold else "ok   "
+        regressions += change > args.threshold
+        line = f"{status} {key}: {base_score:.3f} -> {score:.3f} {unit} ({change:+.1f}%)"
+        if alloc is not None and base_alloc is not None:
+            line += f", alloc {base_alloc:.0f} -> {alloc:.0f} B/op"
+        print(line)
+    for key in sorted(set(baseline) - set(current)):
+        print(f"GONE  {key}")
+    return 1 if regressions else 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
\ No newline at end of file
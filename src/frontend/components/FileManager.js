@@ -1,7 +1,7 @@
 import React, { useState } from 'react';
 import {
-    createFile, deleteFile, deleteDuplicates, keywordSearch,
-    countWords, loadFilesFromDirectory, writeFile
+    createFile, deleteFile, deleteDuplicates, streamKeywordSearch,
+    countWords, streamFilesFromDirectory, writeFile
 } from '../services/FileManagerService';
 import './FileManager.css';
 
@@ -17,13 +17,18 @@ const FileManager = () => {
     const handleLoadFilesFromDirectory = async () => {
         try {
             const encodedDirectoryPath = encodeURIComponent(directory);
-            const response = await loadFilesFromDirectory(encodedDirectoryPath);
-            const fileList = response.data.map(file => ({
-                fileName: file.fileName,
-                wordCount: file.wordCount,
-                charCount: file.charCount
-            }));
-            setFiles(fileList);
+            setFiles([]);
+            setMessage('Loading files from the directory...');
+            await streamFilesFromDirectory(encodedDirectoryPath, file => {
+                if (file.error) {
+                    throw new Error(file.error);
+                }
+                setFiles(previous => [...previous, {
+                    fileName: file.fileName,
+                    wordCount: file.wordCount,
+                    charCount: file.charCount
+                }]);
+            });
             setMessage('Files loaded successfully from the directory');
             setIsDirectoryLoaded(true);
         } catch (error) {
@@ -67,9 +72,16 @@ const FileManager = () => {
 
     const handleKeywordSearch = async () => {
         try {
-            const response = await keywordSearch(keyword);
-            setSearchResults(response.data);
-            if (response.data.length === 0) {
+            const results = [];
+            setSearchResults([]);
+            await streamKeywordSearch(keyword, result => {
+                if (result.error) {
+                    throw new Error(result.error);
+                }
+                results.push(result);
+                setSearchResults([...results]);
+            });
+            if (results.length === 0) {
                 setMessage('No files found containing the keyword');
             } else {
                 setMessage('Search completed');
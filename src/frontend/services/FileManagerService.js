@@ -1,20 +1,64 @@
 import axios from 'axios';
 
 const API_URL = 'http://localhost:8080/api/files';
+const WORKSPACE_HEADER = 'x-workspace-id';
 
-export const loadFilesFromDirectory = async (directoryPath) => {
+// Id of the workspace of the last loaded directory, sent with every other request.
+let workspaceId = null;
+
+const withWorkspace = (params = {}) => (workspaceId ? {...params, workspaceId} : params);
+
+export const loadFilesFromDirectory = async (directoryPath, {maxDepth = 1, extensions = []} = {}) => {
     try {
         const encodedPath = encodeURIComponent(directoryPath);
-        const url = `${API_URL}/loadFiles?directoryPath=${encodedPath}`;
-        return await axios.get(url, {withCredentials: true}); // Return the full response
+        let url = `${API_URL}/loadFiles?directoryPath=${encodedPath}&maxDepth=${maxDepth}`;
+        if (extensions.length > 0) {
+            url += `&extensions=${encodeURIComponent(extensions.join(','))}`;
+        }
+        const response = await axios.get(url, {withCredentials: true});
+        workspaceId = response.headers[WORKSPACE_HEADER] || workspaceId;
+        return response; // Return the full response
     } catch (error) {
         console.error('Error loading files from directory:', error);
     }
 };
 
+const streamNdjson = async (url, onRecord, signal) => {
+    const response = await fetch(url, {credentials: 'include', signal});
+    if (!response.ok) {
+        throw new Error(`Request failed with status ${response.status}`);
+    }
+    workspaceId = response.headers.get(WORKSPACE_HEADER) || workspaceId;
+    const reader = response.body.getReader();
+    const decoder = new TextDecoder();
+    let buffered = '';
+    for (;;) {
+        const {done, value} = await reader.read();
+        if (done) {
+            break;
+        }
+        buffered += decoder.decode(value, {stream: true});
+        const lines = buffered.split('\n');
+        buffered = lines.pop();
+        lines.filter(line => line.trim()).forEach(line => onRecord(JSON.parse(line)));
+    }
+    if (buffered.trim()) {
+        onRecord(JSON.parse(buffered));
+    }
+};
+
+export const streamFilesFromDirectory = async (directoryPath, onFile, {maxDepth = 1, extensions = [], signal} = {}) => {
+    const encodedPath = encodeURIComponent(directoryPath);
+    let url = `${API_URL}/loadFiles/stream?directoryPath=${encodedPath}&maxDepth=${maxDepth}`;
+    if (extensions.length > 0) {
+        url += `&extensions=${encodeURIComponent(extensions.join(','))}`;
+    }
+    return streamNdjson(url, onFile, signal);
+};
+
 export const createFile = async (fileName, fileContent) => {
     try {
-        return await axios.post(`${API_URL}/createFile`, null, {params: {fileName, fileContent}});
+        return await axios.post(`${API_URL}/createFile`, null, {params: withWorkspace({fileName, fileContent})});
     } catch (error) {
         console.error('Error creating file:', error);
     }
@@ -22,39 +66,137 @@ export const createFile = async (fileName, fileContent) => {
 
 export const deleteFile = async (fileName) => {
     try {
-        return await axios.delete(`${API_URL}/deleteFile`, {params: {fileName}});
+        return await axios.delete(`${API_URL}/deleteFile`, {params: withWorkspace({fileName})});
     } catch (error) {
         console.error('Error deleting file:', error);
     }
 };
 
-export const deleteDuplicates = async () => {
+export const deleteDuplicates = async (verify = false) => {
     try {
-        return await axios.delete(`${API_URL}/deleteDuplicates`);
+        return await axios.delete(`${API_URL}/deleteDuplicates`, {params: withWorkspace({verify})});
     } catch (error) {
         console.error('Error deleting duplicates:', error);
     }
 };
 
+export const findNearDuplicates = async (threshold = 0.9) => {
+    try {
+        return await axios.get(`${API_URL}/nearDuplicates`, {params: withWorkspace({threshold})});
+    } catch (error) {
+        console.error('Error finding near-duplicates:', error);
+    }
+};
+
+export const deleteNearDuplicates = async (threshold = 0.9) => {
+    try {
+        return await axios.delete(`${API_URL}/nearDuplicates`, {params: withWorkspace({threshold})});
+    } catch (error) {
+        console.error('Error deleting near-duplicates:', error);
+    }
+};
+
+export const bulkOperations = async (operations, sync = true) => {
+    try {
+        return await axios.post(`${API_URL}/bulk`, operations, {params: withWorkspace({sync})});
+    } catch (error) {
+        console.error('Error applying bulk operations:', error);
+    }
+};
+
 export const keywordSearch = async (keyword) => {
     try {
-        return await axios.get(`${API_URL}/keywordSearch`, {params: {keyword}});
+        return await axios.get(`${API_URL}/keywordSearch`, {params: withWorkspace({keyword})});
     } catch (error) {
         console.error('Error searching keyword:', error);
     }
 };
 
-export const countWords = async (fileName, numThreads) => {
+export const streamKeywordSearch = async (keyword, onResult, signal) => {
+    const params = new URLSearchParams(withWorkspace({keyword}));
+    return streamNdjson(`${API_URL}/keywordSearch/stream?${params}`, onResult, signal);
+};
+
+export const searchFiles = async (keyword, type, {ignoreCase = false, limit = 100, snippets = 3} = {}) => {
     try {
-        return await axios.get(`${API_URL}/countWords`, {params: {fileName, numThreads}});
+        return await axios.get(`${API_URL}/keywordSearch`, {params: withWorkspace({keyword, type, ignoreCase, limit, snippets})});
+    } catch (error) {
+        console.error('Error searching files:', error);
+    }
+};
+
+export const streamSearchFiles = async (keyword, type, onResult, signal, {ignoreCase = false, limit = 100, snippets = 3} = {}) => {
+    const params = new URLSearchParams(withWorkspace({keyword, type, ignoreCase, limit, snippets}));
+    return streamNdjson(`${API_URL}/keywordSearch/stream?${params}`, onResult, signal);
+};
+
+export const readFileRange = async (fileName, offset = 0, length = 1048576) => {
+    try {
+        return await axios.get(`${API_URL}/readFile`, {params: withWorkspace({fileName, offset, length}), responseType: 'text'});
+    } catch (error) {
+        console.error('Error reading file:', error);
+    }
+};
+
+export const readFileLines = async (fileName, fromLine = 1, lineCount = 100) => {
+    try {
+        return await axios.get(`${API_URL}/readFile/lines`, {params: withWorkspace({fileName, fromLine, lineCount}), responseType: 'text'});
+    } catch (error) {
+        console.error('Error reading file lines:', error);
+    }
+};
+
+export const countWords = async (fileName, numThreads, {topK = 10, memoryMapped = false, approximate = false} = {}) => {
+    try {
+        return await axios.get(`${API_URL}/countWords`, {params: withWorkspace({fileName, numThreads, topK, memoryMapped, approximate})});
     } catch (error) {
         console.error('Error counting words:', error);
     }
 };
 
+export const countCorpusWords = async (topK = 10) => {
+    try {
+        return await axios.get(`${API_URL}/countWords/corpus`, {params: withWorkspace({topK})});
+    } catch (error) {
+        console.error('Error counting corpus words:', error);
+    }
+};
+
+export const submitCountWordsJob = async (fileName, numThreads, {topK = 10, memoryMapped = false, approximate = false} = {}) => {
+    try {
+        return await axios.post(`${API_URL}/countWords/jobs`, null, {params: withWorkspace({fileName, numThreads, topK, memoryMapped, approximate})});
+    } catch (error) {
+        console.error('Error submitting word count job:', error);
+    }
+};
+
+export const getCountWordsJob = async (jobId) => {
+    try {
+        return await axios.get(`${API_URL}/countWords/jobs/${encodeURIComponent(jobId)}`);
+    } catch (error) {
+        console.error('Error getting word count job:', error);
+    }
+};
+
+export const getCountWordsJobResult = async (jobId) => {
+    try {
+        return await axios.get(`${API_URL}/countWords/jobs/${encodeURIComponent(jobId)}/result`);
+    } catch (error) {
+        console.error('Error getting word count job result:', error);
+    }
+};
+
+export const cancelCountWordsJob = async (jobId) => {
+    try {
+        return await axios.delete(`${API_URL}/countWords/jobs/${encodeURIComponent(jobId)}`);
+    } catch (error) {
+        console.error('Error cancelling word count job:', error);
+    }
+};
+
 export const writeFile = async (fileName, content) => {
     try {
-        return await axios.post(`${API_URL}/writeFile`, null, {params: {fileName, fileContent: content}});
+        return await axios.post(`${API_URL}/writeFile`, null, {params: withWorkspace({fileName, fileContent: content})});
     } catch (error) {
         console.error('Error writing to file:', error);
     }
@@ -0,0 +1,118 @@
+package dev.harshaan.FileScout;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates reproducible synthetic corpora for the benchmarks. Every corpus is derived from a fixed
+ * seed, so two runs on different machines benchmark the same bytes.
+ */
+public final class CorpusGenerator {
+    private static final long SEED = 0x46696c6553636f75L;
+    private static final int LINE_WORDS = 12;
+
+    /**
+     * The shapes of corpus the benchmarks run against.
+     */
+    public enum Shape {
+        /** Many small files with a natural, Zipf-distributed vocabulary. */
+        MANY_SMALL_FILES,
+        /** A few large files with a natural vocabulary. */
+        FEW_HUGE_FILES,
+        /** Files where most words are distinct, stressing the count tables. */
+        HIGH_CARDINALITY,
+        /** Many small files of which most are exact copies of a few originals. */
+        HIGH_DUPLICATE_RATIO
+    }
+
+    private CorpusGenerator() {
+    }
+
+    /**
+     * Generates a corpus into a new temporary directory.
+     *
+     * @param shape      the shape of the corpus
+     * @param totalBytes the approximate total size of the corpus
+     * @return the directory holding the corpus
+     * @throws IOException if the corpus cannot be written
+     */
+    public static Path generate(Shape shape, long totalBytes) throws IOException {
+        Path directory = Files.createTempDirectory("filescout-bench-" + shape.name().toLowerCase());
+        Random random = new Random(SEED ^ shape.ordinal());
+        switch (shape) {
+            case MANY_SMALL_FILES -> writeFiles(directory, random, (int) Math.max(1, totalBytes / 4096), 4096, false);
+            case FEW_HUGE_FILES -> writeFiles(directory, random, 4, totalBytes / 4, false);
+            case HIGH_CARDINALITY -> writeFiles(directory, random, 4, totalBytes / 4, true);
+            case HIGH_DUPLICATE_RATIO -> {
+                int originals = (int) Math.max(1, totalBytes / 4096 / 10);
+                writeFiles(directory, random, originals, 4096, false);
+                try (Stream<Path> files = Files.list(directory)) {
+                    Path[] sources = files.sorted().toArray(Path[]::new);
+                    for (int i = 0; i < originals * 9; i++) {
+                        Files.copy(sources[i % sources.length], directory.resolve("copy-" + i + ".txt"));
+                    }
+                }
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Deletes a generated corpus.
+     *
+     * @param directory the directory returned by {@link #generate(Shape, long)}
+     * @throws IOException if the corpus cannot be deleted
+     */
+    public static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static void writeFiles(Path directory, Random random, int count, long bytesPerFile, boolean distinctWords) throws IOException {
+        for (int i = 0; i < count; i++) {
+            try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(String.format("file-%06d.txt", i)), StandardCharsets.UTF_8)) {
+                long written = 0;
+                while (written < bytesPerFile) {
+                    StringBuilder line = new StringBuilder();
+                    for (int w = 0; w < LINE_WORDS; w++) {
+                        line.append(distinctWords ? randomWord(random) : zipfWord(random)).append(' ');
+                    }
+                    line.setCharAt(line.length() - 1, '\n');
+                    writer.write(line.toString());
+                    written += line.length();
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks a word from a 50,000-word vocabulary with a Zipf-like distribution, so a few words are
+     * very common and most are rare, like natural text.
+     */
+    private static String zipfWord(Random random) {
+        int rank = (int) Math.floor(Math.pow(50_000, random.nextDouble()));
+        StringBuilder word = new StringBuilder();
+        do {
+            word.append((char) ('a' + rank % 26));
+            rank /= 26;
+        } while (rank > 0);
+        return word.toString();
+    }
+
+    private static String randomWord(Random random) {
+        char[] word = new char[6 + random.nextInt(6)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,53 @@
+package dev.harshaan.FileScout;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks {@link EditableFile}: a full count of an existing file, and an append to a growing file,
+ * which should cost the size of the appended text rather than the size of the file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EditableFileBenchmark {
+    @Param({"1048576", "67108864"})
+    public long fileBytes;
+
+    private Path corpus;
+    private String filePath;
+    private EditableFile appendTarget;
+
+    @Setup(Level.Trial)
+    public void generateCorpus() throws IOException {
+        corpus = CorpusGenerator.generate(CorpusGenerator.Shape.FEW_HUGE_FILES, fileBytes * 4);
+        try (Stream<Path> files = Files.list(corpus)) {
+            filePath = files.sorted().findFirst().orElseThrow().toString();
+        }
+        appendTarget = new EditableFile(corpus.resolve("append-target.txt").toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        CorpusGenerator.delete(corpus);
+    }
+
+    @Benchmark
+    public int countExistingFile() {
+        return new EditableFile(filePath).getWordCount();
+    }
+
+    @Benchmark
+    public int appendLine() {
+        appendTarget.write("another line of appended log text\n");
+        return appendTarget.getWordCount();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package dev.harshaan.FileScout;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the directory-level operations of {@link FileScoutService}: a warm reload of a
+ * directory, keyword search through the index and through the scan fallback, and duplicate detection.
+ * Sidecar files are written to a temporary directory so runs start cold and do not interfere.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileScoutServiceBenchmark {
+    @Param({"MANY_SMALL_FILES", "HIGH_DUPLICATE_RATIO"})
+    public CorpusGenerator.Shape shape;
+
+    @Param({"33554432"})
+    public long corpusBytes;
+
+    private Path corpus;
+    private Path dataDirectory;
+    private FileScoutService service;
+    private final DuplicateFinder duplicateFinder = new DuplicateFinder();
+    private List<File> files;
+
+    @Setup(Level.Trial)
+    public void loadCorpus() throws IOException {
+        dataDirectory = Files.createTempDirectory("filescout-bench-data");
+        System.setProperty("filescout.dataDir", dataDirectory.toString());
+        corpus = CorpusGenerator.generate(shape, corpusBytes);
+        service = new FileScoutService();
+        service.loadFilesFromDirectory(corpus.toString());
+        try (var paths = Files.list(corpus)) {
+            files = paths.sorted().map(Path::toFile).toList();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        CorpusGenerator.delete(corpus);
+        CorpusGenerator.delete(dataDirectory);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> reloadUnchangedDirectory() {
+        return service.loadFilesFromDirectory(corpus.toString());
+    }
+
+    @Benchmark
+    public List<String> keywordSearchIndexed() throws Exception {
+        return service.keywordSearch(null, "ab");
+    }
+
+    @Benchmark
+    public List<String> keywordSearchScan() throws Exception {
+        return service.keywordSearch(null, "?");
+    }
+
+    @Benchmark
+    public List<List<File>> findDuplicates() throws IOException {
+        return duplicateFinder.findDuplicates(files, false);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package dev.harshaan.FileScout;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks {@link MultithreadedWordCounter} on one large file per corpus shape, across counting
+ * modes, thread counts and, for line-by-line counts, accumulators. Before measuring, the trial checks
+ * that its accumulator returns the same top words as the others.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class WordCounterBenchmark {
+    @Param({"FEW_HUGE_FILES", "HIGH_CARDINALITY"})
+    public CorpusGenerator.Shape shape;
+
+    @Param({"line", "mapped", "approximate"})
+    public String mode;
+
+    @Param({"1", "4", "8"})
+    public int threads;
+
+    @Param({"PER_THREAD", "STRIPED", "CONCURRENT_MAP"})
+    public WordCountAccumulator accumulator;
+
+    @Param({"67108864"})
+    public long corpusBytes;
+
+    private final WordCountPool pool = new WordCountPool();
+    private MultithreadedWordCounter counter;
+    private Path corpus;
+    private String fileName;
+
+    @Setup(Level.Trial)
+    public void generateCorpus() throws IOException {
+        corpus = CorpusGenerator.generate(shape, corpusBytes);
+        try (Stream<Path> files = Files.list(corpus)) {
+            fileName = files.sorted().findFirst().orElseThrow().toString();
+        }
+        counter = new MultithreadedWordCounter(pool, new FileScoutMetrics(), accumulator);
+        if (mode.equals("line")) {
+            List<Map.Entry<String, Integer>> expected = counter.countWords(fileName, threads, 100);
+            for (WordCountAccumulator other : WordCountAccumulator.values()) {
+                List<Map.Entry<String, Integer>> actual = new MultithreadedWordCounter(pool, new FileScoutMetrics(), other)
+                        .countWords(fileName, threads, 100);
+                if (!actual.equals(expected)) {
+                    throw new IllegalStateException(accumulator + " and " + other + " disagree: " + expected + " vs " + actual);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        CorpusGenerator.delete(corpus);
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, Integer>> countWords() throws IOException {
+        return switch (mode) {
+            case "mapped" -> counter.countWordsMapped(fileName, threads, 10);
+            case "approximate" -> counter.countWordsApproximate(fileName, threads, 10);
+            default -> counter.countWords(fileName, threads, 10);
+        };
+    }
+}
\ No newline at end of file
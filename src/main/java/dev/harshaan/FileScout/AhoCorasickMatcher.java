@@ -0,0 +1,135 @@
+package dev.harshaan.FileScout;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Finds several literal patterns in one pass with the Aho-Corasick algorithm.
+ * The patterns' trie is compiled into a complete transition table over the characters that occur
+ * in the patterns, so scanning costs one table lookup per character whatever the number of patterns.
+ */
+public class AhoCorasickMatcher implements PatternMatcher {
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final boolean ignoreCase;
+    private final int[] classOf = new int[Character.MAX_VALUE + 1];
+    private final int classes;
+    private final int[] transitions;
+    private final int[][] outputs;
+    private final int[] lengths;
+
+    /**
+     * Constructs a matcher.
+     *
+     * @param patterns   the patterns to find, each at least one character long
+     * @param ignoreCase whether to ignore case, see {@link PatternMatcher#fold(char)}
+     */
+    public AhoCorasickMatcher(List<String> patterns, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        this.lengths = new int[patterns.size()];
+        int nextClass = 1;
+        int maxNodes = 1;
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = charOf(pattern.charAt(i));
+                if (classOf[c] == 0) {
+                    classOf[c] = nextClass++;
+                }
+            }
+            maxNodes += pattern.length();
+        }
+        this.classes = nextClass;
+
+        int[] transitions = new int[maxNodes * classes];
+        int[][] outputs = new int[maxNodes][];
+        int nodes = 1;
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            lengths[p] = pattern.length();
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int edge = state * classes + classOf[charOf(pattern.charAt(i))];
+                if (transitions[edge] == 0) {
+                    transitions[edge] = nodes++;
+                }
+                state = transitions[edge];
+            }
+            outputs[state] = append(outputs[state], p);
+        }
+
+        // Breadth-first, each node's missing edges are filled in from its failure node, which is
+        // shallower and therefore already complete. The root's missing edges stay 0, i.e. the root.
+        int[] failure = new int[nodes];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int k = 1; k < classes; k++) {
+            int child = transitions[k];
+            if (child != 0) {
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = concat(outputs[state], outputs[failure[state]]);
+            for (int k = 1; k < classes; k++) {
+                int edge = state * classes + k;
+                int fallback = transitions[failure[state] * classes + k];
+                if (transitions[edge] != 0) {
+                    failure[transitions[edge]] = fallback;
+                    queue.add(transitions[edge]);
+                }
+                else {
+                    transitions[edge] = fallback;
+                }
+            }
+        }
+        for (int state = 0; state < nodes; state++) {
+            if (outputs[state] == null) {
+                outputs[state] = NO_OUTPUT;
+            }
+        }
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+
+    @Override
+    public int maxLength() {
+        int max = 0;
+        for (int length : lengths) {
+            max = Math.max(max, length);
+        }
+        return max;
+    }
+
+    @Override
+    public void find(char[] text, int from, int to, Occurrence occurrence) {
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            state = transitions[state * classes + classOf[charOf(text[i])]];
+            for (int pattern : outputs[state]) {
+                occurrence.found(pattern, i + 1 - lengths[pattern], i + 1);
+            }
+        }
+    }
+
+    private char charOf(char c) {
+        return ignoreCase ? PatternMatcher.fold(c) : c;
+    }
+
+    private static int[] append(int[] values, int value) {
+        return concat(values, new int[]{value});
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        if (first == null || first.length == 0) {
+            return second;
+        }
+        if (second == null || second.length == 0) {
+            return first;
+        }
+        int[] result = new int[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package dev.harshaan.FileScout;
+
+/**
+ * One operation of a batch applied by {@link BulkWriter}.
+ *
+ * @param op       what to do with the file
+ * @param fileName the name of the file, relative to the workspace's directory
+ * @param content  the content to create the file with or to append; ignored for deletes
+ */
+public record BulkOperation(Type op, String fileName, String content) {
+    /**
+     * The kinds of operations.
+     */
+    public enum Type {
+        /**
+         * Creates the file with the content, replacing any existing file.
+         */
+        CREATE,
+        /**
+         * Appends the content to the file, creating it if it does not exist.
+         */
+        APPEND,
+        /**
+         * Deletes the file.
+         */
+        DELETE
+    }
+}
\ No newline at end of file
@@ -0,0 +1,35 @@
+package dev.harshaan.FileScout;
+
+/**
+ * The outcome of one operation of a batch.
+ *
+ * @param index    the position of the operation in the batch
+ * @param op       the kind of operation
+ * @param fileName the name of the file
+ * @param success  whether the operation was applied
+ * @param error    why the operation failed, or null if it succeeded
+ */
+public record BulkResult(int index, BulkOperation.Type op, String fileName, boolean success, String error) {
+    /**
+     * Creates the result of a successful operation.
+     *
+     * @param index     the position of the operation in the batch
+     * @param operation the operation
+     * @return the result
+     */
+    public static BulkResult succeeded(int index, BulkOperation operation) {
+        return new BulkResult(index, operation.op(), operation.fileName(), true, null);
+    }
+
+    /**
+     * Creates the result of a failed operation.
+     *
+     * @param index     the position of the operation in the batch
+     * @param operation the operation
+     * @param error     why the operation failed
+     * @return the result
+     */
+    public static BulkResult failed(int index, BulkOperation operation, String error) {
+        return new BulkResult(index, operation.op(), operation.fileName(), false, error);
+    }
+}
\ No newline at end of file
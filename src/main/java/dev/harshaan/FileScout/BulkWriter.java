@@ -0,0 +1,297 @@
+package dev.harshaan.FileScout;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies batches of create, append and delete operations to a workspace's directory.
+ * Created files are written to a temporary file next to their target and moved into place atomically,
+ * so readers never see a half-written file. Content is written as UTF-8 through {@link FileChannel}s.
+ * When the batch is durable, every written file is synced before the moves and every touched directory
+ * once after them, so a batch costs one sync per file and directory instead of one per operation.
+ * Each operation succeeds or fails on its own; operations on the same file are applied in batch order.
+ * Compressed files, see {@link CompressedFiles}, can only be deleted.
+ */
+public class BulkWriter {
+    private static final Logger logger = Logger.getLogger(BulkWriter.class.getName());
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final FileScoutMetrics metrics;
+
+    /**
+     * Constructs a writer.
+     *
+     * @param metrics the metrics to record batch stages to
+     */
+    public BulkWriter(FileScoutMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * A file created by the batch, written to a temporary file until it is moved into place.
+     */
+    private static final class PendingCreate {
+        private final Path temp;
+        private final StringBuilder content = new StringBuilder();
+        private final List<Integer> operations = new ArrayList<>();
+
+        private PendingCreate(Path temp) {
+            this.temp = temp;
+        }
+    }
+
+    /**
+     * Applies a batch. The caller must hold the workspace's write lock.
+     *
+     * @param workspace  the workspace
+     * @param operations the operations, applied in order
+     * @param sync       whether to sync the written files and directories to disk before returning
+     * @return the result of each operation, in batch order
+     */
+    public List<BulkResult> apply(Workspace workspace, List<BulkOperation> operations, boolean sync) {
+        BulkResult[] results = new BulkResult[operations.size()];
+        Map<String, PendingCreate> creates = new LinkedHashMap<>();
+        Map<String, List<Integer>> appends = new LinkedHashMap<>();
+        Set<String> deletes = new LinkedHashSet<>();
+        Set<Path> directories = new LinkedHashSet<>();
+
+        Timer.Sample write = metrics.start();
+        for (int i = 0; i < operations.size(); i++) {
+            BulkOperation operation = operations.get(i);
+            try {
+                if (operation.op() == null || operation.fileName() == null || operation.fileName().isBlank()) {
+                    throw new IOException("Operation and file name are required");
+                }
+                String fileName = operation.fileName();
+                Path target = workspace.getFile(fileName).toPath();
+                if (operation.op() != BulkOperation.Type.DELETE && CompressedFiles.formatOf(target) != null) {
+                    throw new IOException("Compressed files are read-only: " + fileName);
+                }
+                String content = operation.content() == null ? "" : operation.content();
+                switch (operation.op()) {
+                    case CREATE -> {
+                        PendingCreate replaced = creates.remove(fileName);
+                        if (replaced != null) {
+                            Files.deleteIfExists(replaced.temp);
+                        }
+                        PendingCreate create = new PendingCreate(target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX));
+                        try {
+                            writeTo(create.temp, content, StandardOpenOption.CREATE_NEW);
+                        }
+                        catch (IOException e) {
+                            deleteQuietly(create.temp);
+                            throw e;
+                        }
+                        create.content.append(content);
+                        create.operations.add(i);
+                        creates.put(fileName, create);
+                        deletes.remove(fileName);
+                    }
+                    case APPEND -> {
+                        PendingCreate create = creates.get(fileName);
+                        if (create != null) {
+                            writeTo(create.temp, content, StandardOpenOption.APPEND);
+                            create.content.append(content);
+                            create.operations.add(i);
+                        }
+                        else {
+                            appendTo(workspace, fileName, target.toFile(), content);
+                            appends.computeIfAbsent(fileName, name -> new ArrayList<>()).add(i);
+                            deletes.remove(fileName);
+                        }
+                    }
+                    case DELETE -> {
+                        PendingCreate create = creates.remove(fileName);
+                        if (create != null) {
+                            Files.deleteIfExists(create.temp);
+                        }
+                        File file = target.toFile();
+                        if (file.isFile()) {
+                            if (!file.delete()) {
+                                throw new IOException("Failed to delete file: " + fileName);
+                            }
+                        }
+                        else if (create == null) {
+                            throw new IOException("File not found: " + fileName);
+                        }
+                        appends.remove(fileName);
+                        deletes.add(fileName);
+                        directories.add(target.getParent());
+                    }
+                }
+                results[i] = BulkResult.succeeded(i, operation);
+            }
+            catch (IOException | RuntimeException e) {
+                results[i] = BulkResult.failed(i, operation, String.valueOf(e.getMessage()));
+            }
+        }
+        metrics.stop(write, "bulk", "write");
+
+        if (sync) {
+            Timer.Sample force = metrics.start();
+            for (Iterator<PendingCreate> iterator = creates.values().iterator(); iterator.hasNext(); ) {
+                PendingCreate create = iterator.next();
+                try {
+                    force(create.temp);
+                }
+                catch (IOException e) {
+                    fail(results, operations, create.operations, e);
+                    deleteQuietly(create.temp);
+                    iterator.remove();
+                }
+            }
+            for (Map.Entry<String, List<Integer>> append : appends.entrySet()) {
+                try {
+                    force(workspace.getFile(append.getKey()).toPath());
+                }
+                catch (IOException e) {
+                    fail(results, operations, append.getValue(), e);
+                }
+            }
+            metrics.stop(force, "bulk", "sync");
+        }
+
+        Timer.Sample move = metrics.start();
+        for (Map.Entry<String, PendingCreate> entry : creates.entrySet()) {
+            PendingCreate create = entry.getValue();
+            File file = workspace.getFile(entry.getKey());
+            try {
+                moveIntoPlace(create.temp, file.toPath());
+            }
+            catch (IOException e) {
+                fail(results, operations, create.operations, e);
+                deleteQuietly(create.temp);
+                continue;
+            }
+            directories.add(file.toPath().getParent());
+            workspace.getStatsCache().put(entry.getKey(), new FileStatsCache.FileStats(file.lastModified(), file.length(),
+                    Tokenizer.countWords(create.content, false), create.content.length()));
+            indexChanged(workspace, file);
+        }
+        for (String fileName : appends.keySet()) {
+            indexAppended(workspace, workspace.getFile(fileName));
+        }
+        for (String fileName : deletes) {
+            workspace.getStatsCache().invalidate(fileName);
+            workspace.getIndex().remove(fileName);
+            workspace.fileDeleted(fileName);
+        }
+        metrics.stop(move, "bulk", "move");
+
+        if (sync) {
+            Timer.Sample force = metrics.start();
+            for (Path directory : directories) {
+                forceDirectory(directory);
+            }
+            metrics.stop(force, "bulk", "sync");
+        }
+        metrics.filesProcessed("bulk", operations.size());
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Appends content to a file and updates its cached stats from the appended content alone, as long
+     * as the cached stats still matched the file or the file is new; otherwise they are dropped and
+     * recounted when next needed.
+     */
+    private void appendTo(Workspace workspace, String fileName, File file, String content) throws IOException {
+        FileStatsCache statsCache = workspace.getStatsCache();
+        FileStatsCache.FileStats before = statsCache.get(fileName);
+        boolean existed = file.exists();
+        boolean known = existed && before != null && before.matches(file);
+        boolean endsInWord = known && EditableFile.lastByteIsWordByte(file);
+        writeTo(file.toPath(), content, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (known) {
+            statsCache.put(fileName, new FileStatsCache.FileStats(file.lastModified(), file.length(),
+                    before.wordCount() + Tokenizer.countWords(content, endsInWord), before.charCount() + content.length()));
+        }
+        else if (!existed) {
+            statsCache.put(fileName, new FileStatsCache.FileStats(file.lastModified(), file.length(),
+                    Tokenizer.countWords(content, false), content.length()));
+        }
+        else {
+            statsCache.invalidate(fileName);
+        }
+    }
+
+    private static void writeTo(Path path, String content, OpenOption... options) throws IOException {
+        Set<OpenOption> openOptions = new HashSet<>(Arrays.asList(options));
+        openOptions.add(StandardOpenOption.WRITE);
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(content);
+        try (FileChannel channel = FileChannel.open(path, openOptions)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    private static void force(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Syncs a directory so the names created, replaced or removed in it survive a crash. Not every
+     * platform can open a directory for syncing; there the sync is skipped.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        catch (IOException e) {
+            logger.log(Level.FINE, "Cannot sync directory: " + directory, e);
+        }
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void indexChanged(Workspace workspace, File file) {
+        if (workspace.isTextFile(file)) {
+            workspace.getIndex().update(file);
+        }
+        workspace.fileChanged(file);
+    }
+
+    /**
+     * Records appends to a file without re-reading it: the keyword index only marks the file as changed
+     * and reads it once before its next search.
+     */
+    private static void indexAppended(Workspace workspace, File file) {
+        if (workspace.isTextFile(file)) {
+            workspace.getIndex().invalidate(file);
+        }
+        workspace.fileChanged(file);
+    }
+
+    private static void fail(BulkResult[] results, List<BulkOperation> operations, List<Integer> indexes, IOException e) {
+        for (int index : indexes) {
+            results[index] = BulkResult.failed(index, operations.get(index), String.valueOf(e.getMessage()));
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to delete temporary file: " + path, e);
+        }
+    }
+}
\ No newline at end of file
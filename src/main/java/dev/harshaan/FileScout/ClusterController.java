@@ -0,0 +1,165 @@
+package dev.harshaan.FileScout;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * REST controller for the coordinator side of cluster mode, see {@link ClusterService}.
+ * Results gathered from the workers carry X-Partial-Results, true if some workers did not answer in
+ * time; their base URLs are then listed in X-Missing-Shards. If no worker answered, the status is 503.
+ */
+@RestController
+@RequestMapping("/api/cluster")
+public class ClusterController {
+    private static final String TRUNCATED_HEADER = "X-Search-Truncated";
+    private static final String PARTIAL_HEADER = "X-Partial-Results";
+    private static final String MISSING_HEADER = "X-Missing-Shards";
+
+    @Autowired
+    private ClusterService clusterService;
+
+    /**
+     * Checks which workers are up.
+     * @return each worker's base URL and whether it answered its health check
+     */
+    @GetMapping("/workers")
+    public ResponseEntity<List<Map<String, Object>>> workers() {
+        try {
+            return ResponseEntity.ok(clusterService.workers());
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    /**
+     * Searches every worker's shard of a directory for a keyword.
+     * @param directoryPath the path of the directory, as seen by the workers
+     * @param keyword       the keyword to search for
+     * @param maxDepth      the number of directory levels to descend; 1 only searches the directory itself
+     * @param extensions    the file extensions to search; txt and md if omitted
+     * @return the names of the files containing the keyword, sorted
+     */
+    @GetMapping("/keywordSearch")
+    public ResponseEntity<List<String>> keywordSearch(@RequestParam String directoryPath, @RequestParam String keyword,
+                                                      @RequestParam(defaultValue = "1") int maxDepth,
+                                                      @RequestParam(required = false) Set<String> extensions) {
+        try {
+            return gathered(clusterService.keywordSearch(directoryPath, DirectoryLoadOptions.of(maxDepth, extensions), keyword), new HttpHeaders());
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    /**
+     * Searches every worker's shard of a directory with a query of the given type, see {@link FileScoutController#search}.
+     * If more files match than the limit, the X-Search-Truncated header is true.
+     * @param directoryPath the path of the directory, as seen by the workers
+     * @param keyword       the text of the query
+     * @param type          the type of the query
+     * @param ignoreCase    whether matching ignores case
+     * @param limit         the maximum number of files to return; 0 for no limit
+     * @param snippets      the maximum number of snippets to return per file
+     * @param maxDepth      the number of directory levels to descend; 1 only searches the directory itself
+     * @param extensions    the file extensions to search; txt and md if omitted
+     * @return the matching files with their match counts and snippets, sorted by file name; 400 if the query is invalid
+     */
+    @GetMapping(value = "/keywordSearch", params = "type")
+    public ResponseEntity<List<SearchHit>> search(@RequestParam String directoryPath, @RequestParam String keyword,
+                                                  @RequestParam String type,
+                                                  @RequestParam(defaultValue = "false") boolean ignoreCase,
+                                                  @RequestParam(defaultValue = "100") int limit,
+                                                  @RequestParam(defaultValue = "3") int snippets,
+                                                  @RequestParam(defaultValue = "1") int maxDepth,
+                                                  @RequestParam(required = false) Set<String> extensions) {
+        try {
+            SearchQuery query = SearchQuery.of(type, keyword, ignoreCase, limit, snippets);
+            AtomicBoolean truncated = new AtomicBoolean();
+            ClusterService.Gathered<List<SearchHit>> hits = clusterService.search(directoryPath, DirectoryLoadOptions.of(maxDepth, extensions), query, truncated);
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(TRUNCATED_HEADER, String.valueOf(truncated.get()));
+            return gathered(hits, headers);
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    /**
+     * Counts words in a file on the worker that owns it.
+     * @param directoryPath the path of the directory, as seen by the workers
+     * @param fileName      the name of the file, relative to the directory
+     * @param numThreads    the number of threads the worker uses
+     * @param topK          the number of top words to return
+     * @param memoryMapped  whether to memory-map the file and count byte ranges in parallel
+     * @param approximate   whether to estimate the top words within a fixed memory budget
+     * @return a list of word counts
+     */
+    @GetMapping("/countWords")
+    public ResponseEntity<List<String>> countWords(@RequestParam String directoryPath, @RequestParam String fileName,
+                                                   @RequestParam int numThreads,
+                                                   @RequestParam(defaultValue = "10") int topK,
+                                                   @RequestParam(defaultValue = "false") boolean memoryMapped,
+                                                   @RequestParam(defaultValue = "false") boolean approximate) {
+        try {
+            WordCountOptions options = new WordCountOptions(topK, memoryMapped, approximate);
+            return ResponseEntity.ok(clusterService.countWords(directoryPath, fileName, numThreads, options));
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    /**
+     * Counts words across every text file of a directory, each worker counting its own shard.
+     * @param directoryPath the path of the directory, as seen by the workers
+     * @param topK          the number of top words to return
+     * @param maxDepth      the number of directory levels to descend; 1 only counts the directory itself
+     * @param extensions    the file extensions to count; txt and md if omitted
+     * @return a list of word counts
+     */
+    @GetMapping("/countWords/corpus")
+    public ResponseEntity<List<String>> countCorpusWords(@RequestParam String directoryPath,
+                                                         @RequestParam(defaultValue = "10") int topK,
+                                                         @RequestParam(defaultValue = "1") int maxDepth,
+                                                         @RequestParam(required = false) Set<String> extensions) {
+        try {
+            return gathered(clusterService.countCorpusWords(directoryPath, DirectoryLoadOptions.of(maxDepth, extensions), WordCountOptions.checkTopK(topK)), new HttpHeaders());
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    /**
+     * Answers with gathered results, marking them as partial if some workers did not answer.
+     * @param gathered the merged results and the workers that did not answer
+     * @param headers  any further headers of the response
+     * @return 200 with the results, or 503 if every worker is missing
+     */
+    private <T> ResponseEntity<T> gathered(ClusterService.Gathered<T> gathered, HttpHeaders headers) {
+        headers.set(PARTIAL_HEADER, String.valueOf(gathered.isPartial()));
+        if (gathered.isPartial()) {
+            headers.set(MISSING_HEADER, String.join(",", gathered.missingWorkers()));
+        }
+        return new ResponseEntity<>(gathered.value(), headers, gathered.answeredWorkers() == 0 ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,508 @@
+package dev.harshaan.FileScout;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Coordinates a cluster of FileScout instances that each read one shard of a directory, so searches and
+ * corpus word counts are spread over the disks and cores of several workers.
+ * <ul>
+ *     <li>The directory's top-level subtrees are assigned to the workers by consistent hashing, see
+ *     {@link HashRing} and {@link Shard}. Each request tells the worker the ring, and the worker only loads,
+ *     watches and reads the files of its own shard, see {@link FileScoutService#openShard}.</li>
+ *     <li>Searches and corpus counts are scattered to every worker in parallel and their answers gathered:
+ *     file names are merged in order, search hits are sorted and cut to the limit, and word counts are
+ *     summed, see {@link #countCorpusWords}. A word count of one file is sent to the worker owning the file,
+ *     and waited for with a separate, longer timeout.</li>
+ *     <li>A worker that does not answer within the timeout, or cannot be reached, is left out and the result
+ *     names it as missing. It is then skipped for a while, so its subtrees move to the other workers until
+ *     it is back. This assumes every worker sees the same directory, e.g. several instances on one machine
+ *     or mounts of one shared file system.</li>
+ * </ul>
+ * Workers are ordinary instances; an instance coordinates the workers listed in {@code filescout.cluster.workers}.
+ */
+@Service
+public class ClusterService {
+    private static final Logger logger = Logger.getLogger(ClusterService.class.getName());
+    private static final int CANDIDATE_FACTOR = 4;
+    private static final TypeReference<List<String>> STRINGS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<SearchHit>> HITS = new TypeReference<>() {
+    };
+
+    private final HashRing ring;
+    private final long timeoutMillis;
+    private final long countTimeoutMillis;
+    private final long retryAfterMillis;
+    private final ObjectMapper objectMapper;
+    private final FileScoutMetrics metrics;
+    private final HttpClient httpClient;
+    private final Map<String, Long> downUntil = new ConcurrentHashMap<>();
+
+    /**
+     * The merged answers of the workers.
+     *
+     * @param value           the merged answers
+     * @param answeredWorkers the number of workers that answered
+     * @param missingWorkers  the workers that did not answer, whose shards are missing from the value
+     * @param <T>             the type of the merged answers
+     */
+    public record Gathered<T>(T value, int answeredWorkers, List<String> missingWorkers) {
+        /**
+         * Checks if any shard is missing from the value.
+         *
+         * @return true if some worker did not answer
+         */
+        public boolean isPartial() {
+            return !missingWorkers.isEmpty();
+        }
+    }
+
+    /**
+     * Constructs a coordinator.
+     *
+     * @param workers            the base URLs of the workers, e.g. {@code http://localhost:8081}; none if this
+     *                           instance is not a coordinator
+     * @param timeoutMillis      how long to wait for the workers' answers to a request
+     * @param countTimeoutMillis how long to wait for a worker to count the words of one file
+     * @param retryAfterMillis   how long to leave out a worker that did not answer before trying it again
+     * @param virtualNodes       the number of points per worker on the hash ring
+     * @param objectMapper       reads the workers' answers
+     * @param metrics            the metrics to record stage timings and partial results to
+     */
+    @Autowired
+    public ClusterService(@Value("${filescout.cluster.workers:}") String[] workers,
+                          @Value("${filescout.cluster.timeoutMillis:5000}") long timeoutMillis,
+                          @Value("${filescout.cluster.countTimeoutMillis:120000}") long countTimeoutMillis,
+                          @Value("${filescout.cluster.retryAfterMillis:10000}") long retryAfterMillis,
+                          @Value("${filescout.cluster.virtualNodes:128}") int virtualNodes,
+                          ObjectMapper objectMapper, FileScoutMetrics metrics) {
+        List<String> baseUrls = new ArrayList<>();
+        for (String worker : workers) {
+            String baseUrl = worker.trim().replaceAll("/+$", "");
+            if (!baseUrl.isEmpty()) {
+                baseUrls.add(baseUrl);
+            }
+        }
+        this.ring = baseUrls.isEmpty() ? null : new HashRing(baseUrls, virtualNodes);
+        this.timeoutMillis = Math.max(1, timeoutMillis);
+        this.countTimeoutMillis = Math.max(1, countTimeoutMillis);
+        this.retryAfterMillis = Math.max(0, retryAfterMillis);
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(this.timeoutMillis))
+                .executor(command -> Thread.ofVirtual().start(command))
+                .build();
+        metrics.gauge("filescout.cluster.workers.down", "Workers left out after they did not answer", downUntil::size);
+    }
+
+    /**
+     * Checks every worker's health endpoint. Workers that answer are used again right away; workers that
+     * do not are left out like workers that miss a request.
+     *
+     * @return each worker's base URL and whether it is up
+     * @throws Exception if no workers are configured or the calling thread is interrupted
+     */
+    public List<Map<String, Object>> workers() throws Exception {
+        HashRing ring = requireRing();
+        Map<String, HttpResponse<byte[]>> responses = scatter("clusterWorkers", ring.nodes(),
+                worker -> HttpRequest.newBuilder(URI.create(worker + "/actuator/health")).timeout(Duration.ofMillis(timeoutMillis)).build(),
+                new ArrayList<>());
+        List<Map<String, Object>> workers = new ArrayList<>();
+        for (String worker : ring.nodes()) {
+            boolean up = responses.containsKey(worker);
+            if (up) {
+                downUntil.remove(worker);
+            }
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("worker", worker);
+            status.put("up", up);
+            workers.add(status);
+        }
+        return workers;
+    }
+
+    /**
+     * Searches every shard of a directory for a keyword, see {@link FileScoutService#keywordSearch(String, String)}.
+     *
+     * @param directoryPath the URL-encoded path of the directory, as seen by the workers
+     * @param options       the depth and extensions of the files to search
+     * @param keyword       the keyword to search for
+     * @return the names of the files containing the keyword, sorted, and the workers that did not answer
+     * @throws Exception if no workers are configured, an answer cannot be read or the calling thread is interrupted
+     */
+    public Gathered<List<String>> keywordSearch(String directoryPath, DirectoryLoadOptions options, String keyword) throws Exception {
+        HashRing active = activeRing();
+        List<String> missing = new ArrayList<>();
+        Map<String, HttpResponse<byte[]>> responses = scatter("clusterKeywordSearch", active.nodes(),
+                worker -> get(worker, "/api/shard/keywordSearch", shardParams(directoryPath, options, active, worker, "keyword", keyword)),
+                missing);
+
+        Timer.Sample merge = metrics.start();
+        Set<String> fileNames = new TreeSet<>();
+        for (HttpResponse<byte[]> response : responses.values()) {
+            fileNames.addAll(objectMapper.readValue(response.body(), STRINGS));
+        }
+        metrics.stop(merge, "clusterKeywordSearch", "merge");
+        return gathered("clusterKeywordSearch", new ArrayList<>(fileNames), responses.size(), missing);
+    }
+
+    /**
+     * Searches every shard of a directory for the matches of a query, see
+     * {@link FileScoutService#search(String, SearchQuery, AtomicBoolean)}. Each worker returns up to the
+     * query's limit, and the merged hits are cut to the limit again.
+     *
+     * @param directoryPath the URL-encoded path of the directory, as seen by the workers
+     * @param options       the depth and extensions of the files to search
+     * @param query         the query
+     * @param truncated     set to true if more files match than the query's limit
+     * @return the matching files sorted by file name, and the workers that did not answer
+     * @throws Exception if no workers are configured, an answer cannot be read or the calling thread is interrupted
+     */
+    public Gathered<List<SearchHit>> search(String directoryPath, DirectoryLoadOptions options, SearchQuery query,
+                                            AtomicBoolean truncated) throws Exception {
+        HashRing active = activeRing();
+        List<String> missing = new ArrayList<>();
+        Map<String, HttpResponse<byte[]>> responses = scatter("clusterSearch", active.nodes(),
+                worker -> get(worker, "/api/shard/keywordSearch", shardParams(directoryPath, options, active, worker,
+                        "keyword", query.text(),
+                        "type", query.type().name().toLowerCase(Locale.ROOT),
+                        "ignoreCase", query.ignoreCase(),
+                        "limit", query.limit() == Integer.MAX_VALUE ? 0 : query.limit(),
+                        "snippets", query.maxSnippets())),
+                missing);
+
+        Timer.Sample merge = metrics.start();
+        List<SearchHit> hits = new ArrayList<>();
+        for (HttpResponse<byte[]> response : responses.values()) {
+            hits.addAll(objectMapper.readValue(response.body(), HITS));
+            if (Boolean.parseBoolean(response.headers().firstValue(ShardController.TRUNCATED_HEADER).orElse("false"))) {
+                truncated.set(true);
+            }
+        }
+        hits.sort(Comparator.comparing(SearchHit::fileName));
+        if (hits.size() > query.limit()) {
+            hits = new ArrayList<>(hits.subList(0, query.limit()));
+            truncated.set(true);
+        }
+        metrics.stop(merge, "clusterSearch", "merge");
+        return gathered("clusterSearch", hits, responses.size(), missing);
+    }
+
+    /**
+     * Counts the words of one file on the worker that owns it, see
+     * {@link FileScoutService#countWords(String, String, int, WordCountOptions)}. If that worker cannot be
+     * reached, the file's subtree moves to the next worker on the ring, which counts it instead. A worker
+     * that is reached but does not finish the count within the count timeout is neither left out nor
+     * replaced, as another worker would only have to count the same file again.
+     *
+     * @param directoryPath the URL-encoded path of the directory, as seen by the workers
+     * @param fileName      the name of the file, relative to the directory
+     * @param numThreads    the number of threads the worker uses
+     * @param options       how to count and how many top words to return
+     * @return a list of word counts in the format "word: count"
+     * @throws Exception if no workers are configured, no worker could count the file or a worker failed to
+     */
+    public List<String> countWords(String directoryPath, String fileName, int numThreads, WordCountOptions options) throws Exception {
+        HashRing active = activeRing();
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("directoryPath", directoryPath);
+        params.put("fileName", fileName);
+        params.put("numThreads", numThreads);
+        params.put("topK", options.topK());
+        params.put("memoryMapped", options.memoryMapped());
+        params.put("approximate", options.approximate());
+        Timer.Sample route = metrics.start();
+        while (true) {
+            String worker = active.nodeFor(Shard.keyOf(fileName));
+            HttpResponse<byte[]> response;
+            try {
+                response = httpClient.send(get(worker, "/api/shard/countWords", params, countTimeoutMillis),
+                        HttpResponse.BodyHandlers.ofByteArray());
+            }
+            catch (IOException e) {
+                if (e instanceof HttpTimeoutException && !(e instanceof HttpConnectTimeoutException)) {
+                    throw new Exception("Worker " + worker + " did not count the words of the file within "
+                            + countTimeoutMillis + " ms: " + fileName, e);
+                }
+                markDown(worker, e);
+                if (active.nodes().size() == 1) {
+                    throw new Exception("No worker could count the words of the file: " + fileName, e);
+                }
+                active = active.without(List.of(worker));
+                continue;
+            }
+            if (response.statusCode() != 200) {
+                throw new Exception("Worker " + worker + " failed to count the words of the file: " + fileName
+                        + " (status " + response.statusCode() + ")");
+            }
+            metrics.stop(route, "clusterCountWords", "route");
+            return objectMapper.readValue(response.body(), STRINGS);
+        }
+    }
+
+    /**
+     * Counts the words of every shard of a directory as one corpus, see
+     * {@link FileScoutService#countCorpusWords(String, int)}. The top words of the whole corpus need not be
+     * the top words of any shard, so the merge takes two rounds:
+     * <ol>
+     *     <li>each worker returns its {@value #CANDIDATE_FACTOR} times K top words (at most
+     *     {@value WordCountOptions#MAX_TOP_K}), which are summed;</li>
+     *     <li>the best summed words are counted exactly on the workers that returned a full list without
+     *     them, as their counts there are below the lists' ends but need not be zero.</li>
+     * </ol>
+     * The result is exact unless a word is in the corpus' top K without being among any worker's
+     * candidates, which takes counts spread almost evenly over words and shards.
+     *
+     * @param directoryPath the URL-encoded path of the directory, as seen by the workers
+     * @param options       the depth and extensions of the files to count
+     * @param topK          the number of top words to return
+     * @return a list of word counts in the format "word: count", and the workers that did not answer
+     * @throws Exception if no workers are configured, an answer cannot be read or the calling thread is interrupted
+     */
+    public Gathered<List<String>> countCorpusWords(String directoryPath, DirectoryLoadOptions options, int topK) throws Exception {
+        HashRing active = activeRing();
+        int candidates = (int) Math.min(WordCountOptions.MAX_TOP_K, (long) topK * CANDIDATE_FACTOR);
+        List<String> missing = new ArrayList<>();
+        Map<String, HttpResponse<byte[]>> responses = scatter("clusterCountCorpusWords", active.nodes(),
+                worker -> get(worker, "/api/shard/countWords/corpus", shardParams(directoryPath, options, active, worker, "topK", candidates)),
+                missing);
+
+        Timer.Sample merge = metrics.start();
+        Map<String, Long> totals = new HashMap<>();
+        Map<String, Set<String>> listed = new HashMap<>();
+        for (Map.Entry<String, HttpResponse<byte[]>> response : responses.entrySet()) {
+            List<String> wordCounts = objectMapper.readValue(response.getValue().body(), STRINGS);
+            Set<String> words = new HashSet<>();
+            addWordCounts(totals, wordCounts, words);
+            if (wordCounts.size() >= candidates) {
+                listed.put(response.getKey(), words);
+            }
+        }
+        List<String> best = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : TopKSelector.select(toEntries(totals), candidates)) {
+            best.add(entry.getKey());
+        }
+        Map<String, byte[]> lookups = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> worker : listed.entrySet()) {
+            List<String> unlisted = best.stream().filter(word -> !worker.getValue().contains(word)).toList();
+            if (!unlisted.isEmpty()) {
+                lookups.put(worker.getKey(), objectMapper.writeValueAsBytes(unlisted));
+            }
+        }
+        metrics.stop(merge, "clusterCountCorpusWords", "merge");
+
+        if (!lookups.isEmpty()) {
+            Map<String, HttpResponse<byte[]>> completions = scatter("clusterCountCorpusWords", lookups.keySet(),
+                    worker -> post(worker, "/api/shard/countWords/corpus/lookup",
+                            shardParams(directoryPath, options, active, worker), lookups.get(worker)),
+                    missing);
+            for (HttpResponse<byte[]> response : completions.values()) {
+                addWordCounts(totals, objectMapper.readValue(response.body(), STRINGS), null);
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : TopKSelector.select(toEntries(totals), topK)) {
+            result.add(entry.getKey() + ": " + entry.getValue());
+        }
+        return gathered("clusterCountCorpusWords", result, responses.size(), missing);
+    }
+
+    /**
+     * Sends a request to each of the workers at once and waits for the answers until the timeout.
+     * Workers that cannot be reached or do not answer in time are added to the missing workers and left
+     * out of later requests for a while; workers that answer with an error are only added to the missing
+     * workers. Requests still running at the timeout are cancelled.
+     *
+     * @param operation the operation the scatter is recorded under
+     * @param workers   the workers to send the request to
+     * @param requests  builds the request for each worker
+     * @param missing   receives the workers without an answer
+     * @return the answers with status 200, by worker
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    private Map<String, HttpResponse<byte[]>> scatter(String operation, Collection<String> workers, Function<String, HttpRequest> requests,
+                                                      List<String> missing) throws InterruptedException {
+        Timer.Sample scatter = metrics.start();
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> futures = new LinkedHashMap<>();
+        for (String worker : workers) {
+            futures.put(worker, httpClient.sendAsync(requests.apply(worker), HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Map<String, HttpResponse<byte[]>> responses = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, CompletableFuture<HttpResponse<byte[]>>> entry : futures.entrySet()) {
+                String worker = entry.getKey();
+                try {
+                    HttpResponse<byte[]> response = entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (response.statusCode() == 200) {
+                        responses.put(worker, response);
+                    }
+                    else {
+                        logger.warning("Worker " + worker + " answered " + operation + " with status " + response.statusCode());
+                        addMissing(missing, worker);
+                    }
+                }
+                catch (TimeoutException e) {
+                    markDown(worker, e);
+                    addMissing(missing, worker);
+                }
+                catch (ExecutionException e) {
+                    markDown(worker, e.getCause());
+                    addMissing(missing, worker);
+                }
+            }
+        }
+        finally {
+            for (CompletableFuture<HttpResponse<byte[]>> future : futures.values()) {
+                future.cancel(true);
+            }
+        }
+        metrics.stop(scatter, operation, "scatter");
+        return responses;
+    }
+
+    /**
+     * Gets the ring of the workers that are not left out. If every worker is left out, all are tried.
+     *
+     * @return the ring to assign shards with
+     * @throws IllegalStateException if no workers are configured
+     */
+    private HashRing activeRing() {
+        HashRing ring = requireRing();
+        long now = System.currentTimeMillis();
+        downUntil.values().removeIf(until -> until <= now);
+        Set<String> down = downUntil.keySet();
+        return ring.nodes().stream().allMatch(down::contains) ? ring : ring.without(down);
+    }
+
+    private HashRing requireRing() {
+        if (ring == null) {
+            throw new IllegalStateException("No workers configured, set filescout.cluster.workers to run as a coordinator");
+        }
+        return ring;
+    }
+
+    private void markDown(String worker, Throwable cause) {
+        logger.warning("Leaving out worker " + worker + " for " + retryAfterMillis + " ms: " + cause);
+        downUntil.put(worker, System.currentTimeMillis() + retryAfterMillis);
+    }
+
+    private <T> Gathered<T> gathered(String operation, T value, int answered, List<String> missing) {
+        if (!missing.isEmpty()) {
+            metrics.truncated(operation);
+        }
+        return new Gathered<>(value, answered, List.copyOf(missing));
+    }
+
+    private static void addMissing(List<String> missing, String worker) {
+        if (!missing.contains(worker)) {
+            missing.add(worker);
+        }
+    }
+
+    /**
+     * Builds the parameters that tell a worker which shard to answer for.
+     *
+     * @param directoryPath the URL-encoded path of the directory
+     * @param options       the depth and extensions of the files
+     * @param ring          the workers the directory is split between
+     * @param worker        the worker the parameters are for
+     * @param extra         further parameters, as alternating names and values
+     * @return the parameters
+     */
+    private static Map<String, Object> shardParams(String directoryPath, DirectoryLoadOptions options, HashRing ring, String worker,
+                                                   Object... extra) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("directoryPath", directoryPath);
+        params.put("maxDepth", options.maxDepth());
+        params.put("extensions", new TreeSet<>(options.extensions()));
+        params.put("nodes", ring.nodes());
+        params.put("node", worker);
+        params.put("virtualNodes", ring.virtualNodes());
+        for (int i = 0; i + 1 < extra.length; i += 2) {
+            params.put((String) extra[i], extra[i + 1]);
+        }
+        return params;
+    }
+
+    private HttpRequest get(String worker, String path, Map<String, Object> params) {
+        return get(worker, path, params, timeoutMillis);
+    }
+
+    private HttpRequest get(String worker, String path, Map<String, Object> params, long timeoutMillis) {
+        return HttpRequest.newBuilder(uri(worker, path, params)).timeout(Duration.ofMillis(timeoutMillis)).GET().build();
+    }
+
+    private HttpRequest post(String worker, String path, Map<String, Object> params, byte[] jsonBody) {
+        return HttpRequest.newBuilder(uri(worker, path, params)).timeout(Duration.ofMillis(timeoutMillis))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(jsonBody))
+                .build();
+    }
+
+    /**
+     * Builds the URI of a worker's endpoint. Collection values are sent as repeated parameters.
+     */
+    private static URI uri(String worker, String path, Map<String, Object> params) {
+        StringBuilder uri = new StringBuilder(worker).append(path);
+        char separator = '?';
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            Collection<?> values = param.getValue() instanceof Collection<?> collection ? collection : List.of(param.getValue());
+            for (Object value : values) {
+                uri.append(separator).append(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8))
+                        .append('=').append(URLEncoder.encode(String.valueOf(value), StandardCharsets.UTF_8));
+                separator = '&';
+            }
+        }
+        return URI.create(uri.toString());
+    }
+
+    /**
+     * Adds word counts in the format "word: count" to the totals.
+     */
+    private static void addWordCounts(Map<String, Long> totals, List<String> wordCounts, Set<String> words) {
+        for (String wordCount : wordCounts) {
+            int colon = wordCount.lastIndexOf(": ");
+            String word = wordCount.substring(0, colon);
+            totals.merge(word, Long.parseLong(wordCount.substring(colon + 2)), Long::sum);
+            if (words != null) {
+                words.add(word);
+            }
+        }
+    }
+
+    private static List<Map.Entry<String, Integer>> toEntries(Map<String, Long> totals) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(totals.size());
+        for (Map.Entry<String, Long> total : totals.entrySet()) {
+            entries.add(Map.entry(total.getKey(), (int) Math.min(Integer.MAX_VALUE, total.getValue())));
+        }
+        return entries;
+    }
+}
\ No newline at end of file
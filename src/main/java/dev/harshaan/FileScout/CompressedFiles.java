@@ -0,0 +1,362 @@
+package dev.harshaan.FileScout;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads compressed text files ({@code .gz} and {@code .zst}) as if they were plain, so every operation
+ * that reads file content sees the text without it being decompressed to disk first.
+ * Content is decompressed as a stream and never held in memory whole. A compressed file is named by
+ * its text extension followed by the compression suffix, e.g. {@code app.log.gz} is a {@code log} file.
+ * <p>
+ * Large files can be split into units that decompress independently, at the boundaries the format
+ * records without decompressing: the members of a BGZF file (gzip whose members carry their own size,
+ * as written by {@code bgzip}) and the frames of a zstd file (as written by {@code pzstd}, in the seekable
+ * format or by concatenating files). Other gzip files, including plain multi-member ones, are one unit,
+ * as a member's end is only found by inflating it; so is a zstd file of a single frame.
+ */
+final class CompressedFiles {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MIN_UNIT_SIZE = 1L << 20;
+
+    /**
+     * A compression format, recognised by the file's suffix.
+     */
+    enum Format {
+        GZIP(".gz") {
+            @Override
+            InputStream decompress(InputStream in) throws IOException {
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            }
+
+            @Override
+            long nextUnit(FileChannel channel, long position, long size) throws IOException {
+                return nextBgzfMember(channel, position, size);
+            }
+        },
+        ZSTD(".zst") {
+            @Override
+            InputStream decompress(InputStream in) throws IOException {
+                return new ZstdInputStream(in);
+            }
+
+            @Override
+            long nextUnit(FileChannel channel, long position, long size) throws IOException {
+                return nextZstdFrame(channel, position, size);
+            }
+        };
+
+        private final String suffix;
+
+        Format(String suffix) {
+            this.suffix = suffix;
+        }
+
+        /**
+         * Wraps compressed input in a stream of the decompressed content.
+         *
+         * @param in the compressed input, positioned at the start of a member or frame
+         * @return the decompressed content
+         * @throws IOException if the input does not start with a valid header
+         */
+        abstract InputStream decompress(InputStream in) throws IOException;
+
+        /**
+         * Finds where the member or frame starting at a position ends, from its headers alone.
+         *
+         * @param channel  the channel of the file
+         * @param position the start of a member or frame
+         * @param size     the size of the file
+         * @return the start of the next member or frame, or -1 if its end is not recorded
+         * @throws IOException if an I/O error occurs
+         */
+        abstract long nextUnit(FileChannel channel, long position, long size) throws IOException;
+    }
+
+    /**
+     * A run of whole members or frames of a compressed file.
+     *
+     * @param offset the position of the first compressed byte
+     * @param length the number of compressed bytes
+     */
+    record Unit(long offset, long length) {
+    }
+
+    private CompressedFiles() {
+    }
+
+    /**
+     * Gets the compression format of a file from its suffix.
+     *
+     * @param file the file
+     * @return the format, or null if the file is not compressed
+     */
+    static Format formatOf(Path file) {
+        String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (Format format : Format.values()) {
+            if (fileName.endsWith(format.suffix) && fileName.length() > format.suffix.length()) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a file is compressed, based on its suffix.
+     *
+     * @param file the file
+     * @return true if the file is read through a decompressor
+     */
+    static boolean isCompressed(File file) {
+        return formatOf(file.toPath()) != null;
+    }
+
+    /**
+     * Gets the name of a file without its compression suffix, e.g. {@code app.log} for {@code app.log.gz}.
+     *
+     * @param fileName the name of the file
+     * @return the name of the decompressed file, or the name itself if the file is not compressed
+     */
+    static String textName(String fileName) {
+        Format format = formatOf(Path.of(fileName));
+        return format == null ? fileName : fileName.substring(0, fileName.length() - format.suffix.length());
+    }
+
+    /**
+     * Opens the content of a file, decompressing it if it is compressed.
+     *
+     * @param file the file
+     * @return the content, to be closed by the caller
+     * @throws IOException if the file cannot be opened or is not valid for its format
+     */
+    static InputStream open(File file) throws IOException {
+        Format format = formatOf(file.toPath());
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        if (format == null) {
+            return Channels.newInputStream(channel);
+        }
+        return decompress(format, channel, new Unit(0, channel.size()), null);
+    }
+
+    /**
+     * Opens the content of a file as a channel, decompressing it if it is compressed. A plain file's
+     * channel is a {@link FileChannel}.
+     *
+     * @param file the file
+     * @return the content, to be closed by the caller
+     * @throws IOException if the file cannot be opened or is not valid for its format
+     */
+    static ReadableByteChannel openChannel(File file) throws IOException {
+        return isCompressed(file) ? Channels.newChannel(open(file)) : FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Opens the decompressed content of one unit of a compressed file.
+     *
+     * @param file          the compressed file
+     * @param unit          the unit, see {@link #split(File, int)}
+     * @param bytesConsumed receives the number of compressed bytes read each time more are read, or null
+     * @return the content of the unit, to be closed by the caller
+     * @throws IOException if the file cannot be opened or the unit is not valid for the format
+     */
+    static InputStream open(File file, Unit unit, LongConsumer bytesConsumed) throws IOException {
+        Format format = formatOf(file.toPath());
+        if (format == null) {
+            throw new IOException("Not a compressed file: " + file);
+        }
+        return decompress(format, FileChannel.open(file.toPath(), StandardOpenOption.READ), unit, bytesConsumed);
+    }
+
+    /**
+     * Splits a compressed file into about the given number of units of similar compressed size, never
+     * smaller than a megabyte. Only the headers of the members or frames are read.
+     *
+     * @param file  the compressed file
+     * @param units the number of units wanted
+     * @return the units, in file order; one if the format records no boundaries or the file is small
+     * @throws IOException if an I/O error occurs
+     */
+    static List<Unit> split(File file, int units) throws IOException {
+        Format format = formatOf(file.toPath());
+        List<Unit> result = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long target = Math.max(MIN_UNIT_SIZE, size / Math.max(1, units));
+            long start = 0;
+            long position = 0;
+            while (format != null && size - start > target) {
+                long next = format.nextUnit(channel, position, size);
+                if (next <= position || next > size) {
+                    break;
+                }
+                position = next;
+                if (position - start >= target && position < size) {
+                    result.add(new Unit(start, position - start));
+                    start = position;
+                }
+            }
+            result.add(new Unit(start, size - start));
+        }
+        return result;
+    }
+
+    private static InputStream decompress(Format format, FileChannel channel, Unit unit, LongConsumer bytesConsumed) throws IOException {
+        InputStream raw = new RangeInputStream(channel, unit.offset(), unit.offset() + unit.length(), bytesConsumed);
+        try {
+            return format.decompress(raw);
+        }
+        catch (IOException | RuntimeException e) {
+            raw.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the end of a BGZF member from the block size in its extra field ({@code BC} subfield).
+     */
+    private static long nextBgzfMember(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer header = readAt(channel, position, 12);
+        if (header == null || (header.get(0) & 0xff) != 0x1f || (header.get(1) & 0xff) != 0x8b
+                || header.get(2) != 8 || (header.get(3) & 0x04) == 0) {
+            return -1;
+        }
+        int extraLength = header.getShort(10) & 0xffff;
+        ByteBuffer extra = readAt(channel, position + 12, extraLength);
+        if (extra == null) {
+            return -1;
+        }
+        for (int i = 0; i + 4 <= extraLength; ) {
+            int fieldLength = extra.getShort(i + 2) & 0xffff;
+            if (extra.get(i) == 'B' && extra.get(i + 1) == 'C' && fieldLength == 2 && i + 6 <= extraLength) {
+                return position + (extra.getShort(i + 4) & 0xffff) + 1;
+            }
+            i += 4 + fieldLength;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the end of a zstd frame by walking its block headers, or of a skippable frame from its size.
+     */
+    private static long nextZstdFrame(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer header = readAt(channel, position, 8);
+        if (header == null) {
+            return -1;
+        }
+        int magic = header.getInt(0);
+        if ((magic & 0xfffffff0) == 0x184d2a50) {
+            return position + 8 + (header.getInt(4) & 0xffffffffL);
+        }
+        if (magic != 0xfd2fb528) {
+            return -1;
+        }
+        int descriptor = header.get(4) & 0xff;
+        boolean singleSegment = (descriptor & 0x20) != 0;
+        int[] dictionaryIdSizes = {0, 1, 2, 4};
+        int[] contentSizeSizes = {singleSegment ? 1 : 0, 2, 4, 8};
+        long block = position + 5 + (singleSegment ? 0 : 1) + dictionaryIdSizes[descriptor & 0x03] + contentSizeSizes[descriptor >>> 6];
+        while (true) {
+            ByteBuffer blockHeader = readAt(channel, block, 3);
+            if (blockHeader == null) {
+                return -1;
+            }
+            int bits = (blockHeader.get(0) & 0xff) | (blockHeader.get(1) & 0xff) << 8 | (blockHeader.get(2) & 0xff) << 16;
+            int type = (bits >>> 1) & 0x03;
+            if (type == 3) {
+                return -1;
+            }
+            block += 3 + (type == 1 ? 1 : bits >>> 3);
+            if ((bits & 1) != 0) {
+                break;
+            }
+            if (block >= size) {
+                return -1;
+            }
+        }
+        return block + ((descriptor & 0x04) != 0 ? 4 : 0);
+    }
+
+    /**
+     * Reads a little-endian header of the given length.
+     *
+     * @return the header, or null if the file ends before it
+     */
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                return null;
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads a byte range of a file with positional reads, reporting how many bytes it read.
+     * Reports the bytes left as available, which {@link GZIPInputStream} relies on to read the members
+     * that follow the first.
+     */
+    private static final class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private final LongConsumer bytesConsumed;
+        private long position;
+
+        private RangeInputStream(FileChannel channel, long start, long end, LongConsumer bytesConsumed) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+            this.bytesConsumed = bytesConsumed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, end - position)), position);
+            if (read == -1) {
+                return -1;
+            }
+            position += read;
+            if (bytesConsumed != null) {
+                bytesConsumed.accept(read);
+            }
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,201 @@
+package dev.harshaan.FileScout;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Counts the words of every text file of a workspace as one corpus.
+ * Files whose counts are missing or out of date are counted as a fork-join map-reduce: each file is
+ * tokenized into its own {@link WordCountTable}, which is kept as the file's partial counts, and the
+ * tables are summed pairwise up the task tree into one delta that is added to the corpus totals.
+ * Files that did not change since the last count are not read again, see {@link CorpusWordCounts}.
+ * A count leases every thread of the shared {@link WordCountPool}, so it waits for, and holds back,
+ * other word counts instead of oversubscribing the machine.
+ */
+public class CorpusWordCounter {
+    private static final Logger logger = Logger.getLogger(CorpusWordCounter.class.getName());
+    private static final int LEAF_FILES = 8;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final WordCountPool pool;
+    private final ForkJoinPool forkJoinPool;
+    private final FileScoutMetrics metrics;
+    private final Tokenizer tokenizer;
+
+    /**
+     * Constructs a counter with as many fork-join threads as the shared pool has.
+     *
+     * @param pool      the shared pool whose threads a count leases
+     * @param metrics   the metrics to record stage timings to
+     * @param tokenizer how words are split and normalized
+     */
+    public CorpusWordCounter(WordCountPool pool, FileScoutMetrics metrics, Tokenizer tokenizer) {
+        this.pool = pool;
+        this.forkJoinPool = new ForkJoinPool(pool.parallelism());
+        this.metrics = metrics;
+        this.tokenizer = tokenizer;
+    }
+
+    /**
+     * Brings a workspace's corpus counts up to date with its files and selects the top words.
+     *
+     * @param counts the corpus counts of the workspace
+     * @param files  the text files of the workspace
+     * @param namer  gives the name of a file, relative to the workspace's directory
+     * @param topK   the number of top words to return
+     * @return the top words of the corpus and their counts
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the pool
+     */
+    public List<Map.Entry<String, Integer>> count(CorpusWordCounts counts, List<File> files, Function<File, String> namer,
+                                                  int topK) throws InterruptedException {
+        counts.updateLock().lockInterruptibly();
+        try {
+            Timer.Sample validate = metrics.start();
+            Map<String, File> byName = new LinkedHashMap<>();
+            for (File file : files) {
+                byName.put(namer.apply(file), file);
+            }
+            counts.retainAll(byName.keySet());
+            List<String> staleNames = new ArrayList<>();
+            List<File> stale = new ArrayList<>();
+            for (Map.Entry<String, File> entry : byName.entrySet()) {
+                if (!counts.isCurrent(entry.getKey(), entry.getValue())) {
+                    staleNames.add(entry.getKey());
+                    stale.add(entry.getValue());
+                }
+            }
+            metrics.stop(validate, "countCorpusWords", "validate");
+
+            if (!stale.isEmpty()) {
+                CorpusWordCounts.Partial[] partials = new CorpusWordCounts.Partial[stale.size()];
+                WordCountTable delta;
+                Timer.Sample tokenize = metrics.start();
+                try (WordCountPool.Lease lease = pool.acquire(pool.parallelism())) {
+                    delta = forkJoinPool.invoke(new CountTask(stale, partials, 0, stale.size()));
+                }
+                metrics.stop(tokenize, "countCorpusWords", "tokenize");
+                metrics.filesProcessed("countCorpusWords", stale.size());
+
+                Timer.Sample merge = metrics.start();
+                counts.update(staleNames, Arrays.asList(partials), delta);
+                metrics.stop(merge, "countCorpusWords", "merge");
+            }
+        }
+        finally {
+            counts.updateLock().unlock();
+        }
+
+        Timer.Sample sort = metrics.start();
+        List<Map.Entry<String, Integer>> topWords = counts.topWords(topK);
+        metrics.stop(sort, "countCorpusWords", "sort");
+        return topWords;
+    }
+
+    /**
+     * Counts a range of files, splitting it in half until it has at most {@value #LEAF_FILES} files, and
+     * returns the sum of their counts. Each file's own counts are stored in the partials array.
+     */
+    private final class CountTask extends RecursiveTask<WordCountTable> {
+        private final List<File> files;
+        private final CorpusWordCounts.Partial[] partials;
+        private final int start;
+        private final int end;
+
+        private CountTask(List<File> files, CorpusWordCounts.Partial[] partials, int start, int end) {
+            this.files = files;
+            this.partials = partials;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected WordCountTable compute() {
+            if (end - start <= LEAF_FILES) {
+                WordCountTable sum = new WordCountTable();
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                for (int i = start; i < end; i++) {
+                    partials[i] = countFile(files.get(i), buffer);
+                    if (partials[i] != null) {
+                        sum.merge(partials[i].counts());
+                    }
+                }
+                return sum;
+            }
+            int middle = (start + end) >>> 1;
+            CountTask left = new CountTask(files, partials, start, middle);
+            left.fork();
+            WordCountTable right = new CountTask(files, partials, middle, end).compute();
+            WordCountTable leftSum = left.join();
+            if (leftSum.size() < right.size()) {
+                right.merge(leftSum);
+                return right;
+            }
+            leftSum.merge(right);
+            return leftSum;
+        }
+    }
+
+    /**
+     * Counts the words of one file, reading it in chunks that are cut after their last separator so no
+     * word is split between two chunks. A read may return fewer bytes than the buffer holds, e.g. from a
+     * decompressing channel, so a chunk without a separator is carried over and read into further.
+     * Compressed files are decompressed as they are read.
+     *
+     * @param file   the file to count
+     * @param buffer a scratch buffer
+     * @return the counts of the file, or null if it could not be read
+     */
+    private CorpusWordCounts.Partial countFile(File file, ByteBuffer buffer) {
+        long lastModified = file.lastModified();
+        long size = file.length();
+        WordCountTable table = new WordCountTable();
+        byte[] word = new byte[64];
+        long bytesRead = 0;
+        buffer.clear();
+        try (ReadableByteChannel channel = CompressedFiles.openChannel(file)) {
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                int read = channel.read(buffer);
+                endOfFile = read == -1;
+                bytesRead += Math.max(0, read);
+                buffer.flip();
+                int limit = buffer.limit();
+                int cut = limit;
+                if (!endOfFile) {
+                    while (cut > 0 && !Tokenizer.isSeparator(buffer.get(cut - 1))) {
+                        cut--;
+                    }
+                    // Without a separator the bytes are kept for the next read, unless they already fill
+                    // the buffer: only a word longer than the buffer is split.
+                    if (cut == 0 && limit == buffer.capacity()) {
+                        cut = limit;
+                    }
+                }
+                buffer.limit(cut);
+                word = tokenizer.tokenize(buffer, word, table);
+                buffer.position(cut).limit(limit);
+                buffer.compact();
+            }
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to count the words of the file: " + file, e);
+            return null;
+        }
+        metrics.bytesRead("countCorpusWords", CompressedFiles.isCompressed(file) ? size : bytesRead);
+        return new CorpusWordCounts.Partial(lastModified, size, table);
+    }
+}
\ No newline at end of file
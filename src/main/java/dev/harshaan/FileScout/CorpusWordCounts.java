@@ -0,0 +1,153 @@
+package dev.harshaan.FileScout;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The word counts of every text file of a workspace, see {@link CorpusWordCounter}.
+ * Each file's counts are kept as a partial table next to the corpus totals, so a changed or deleted file
+ * is subtracted from the totals on its own and only that file is counted again.
+ * Memory use is proportional to the sum of the files' vocabularies.
+ */
+public class CorpusWordCounts {
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private final Map<String, Partial> partials = new HashMap<>();
+    private WordCountTable totals = new WordCountTable();
+    private int emptied;
+
+    /**
+     * The word counts of one file, as of the given modification time and size.
+     *
+     * @param lastModified the modification time of the file when it was counted
+     * @param size         the size of the file in bytes when it was counted
+     * @param counts       the counts of the file's words
+     */
+    public record Partial(long lastModified, long size, WordCountTable counts) {
+        /**
+         * Checks whether these counts still describe the file.
+         *
+         * @param file the file to check
+         * @return true if the file's modification time and size are unchanged
+         */
+        public boolean matches(File file) {
+            return lastModified == file.lastModified() && size == file.length();
+        }
+    }
+
+    /**
+     * Gets the lock that serializes updates, held while stale files are counted so that two updates
+     * never count the same change twice. Reads and invalidations do not wait for it.
+     *
+     * @return the update lock
+     */
+    ReentrantLock updateLock() {
+        return updateLock;
+    }
+
+    /**
+     * Checks whether a file's counts are part of the totals and still describe it.
+     *
+     * @param fileName the path of the file, relative to the workspace's directory
+     * @param file     the file
+     * @return true if the file does not need to be counted again
+     */
+    public synchronized boolean isCurrent(String fileName, File file) {
+        Partial partial = partials.get(fileName);
+        return partial != null && partial.matches(file);
+    }
+
+    /**
+     * Removes the counts of every file that is not in the given set from the totals.
+     *
+     * @param fileNames the paths of the files still in the corpus
+     */
+    public synchronized void retainAll(Set<String> fileNames) {
+        for (Iterator<Map.Entry<String, Partial>> iterator = partials.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, Partial> entry = iterator.next();
+            if (!fileNames.contains(entry.getKey())) {
+                iterator.remove();
+                subtract(entry.getValue());
+            }
+        }
+        compactIfSparse();
+    }
+
+    /**
+     * Replaces the counts of files that were counted again.
+     *
+     * @param fileNames   the paths of the counted files
+     * @param newPartials the new counts of each file, or null for a file that could not be read
+     * @param delta       the sum of all new counts
+     */
+    public synchronized void update(List<String> fileNames, List<Partial> newPartials, WordCountTable delta) {
+        for (int i = 0; i < fileNames.size(); i++) {
+            Partial partial = newPartials.get(i);
+            Partial replaced = partial != null ? partials.put(fileNames.get(i), partial) : partials.remove(fileNames.get(i));
+            if (replaced != null) {
+                subtract(replaced);
+            }
+        }
+        totals.merge(delta);
+        compactIfSparse();
+    }
+
+    /**
+     * Removes a file's counts from the totals, e.g. after it was written or deleted. A file that still
+     * exists is counted again by the next update.
+     *
+     * @param fileName the path of the file, relative to the workspace's directory
+     */
+    public synchronized void invalidate(String fileName) {
+        Partial replaced = partials.remove(fileName);
+        if (replaced != null) {
+            subtract(replaced);
+            compactIfSparse();
+        }
+    }
+
+    /**
+     * Selects the top words of the corpus.
+     *
+     * @param k the number of top words to return
+     * @return at most {@code k} words and their counts, in descending order of count
+     */
+    public synchronized List<Map.Entry<String, Integer>> topWords(int k) {
+        return TopKSelector.select(totals, k);
+    }
+
+    /**
+     * Gets the corpus count of one word, e.g. to complete a top word of another part of the corpus.
+     *
+     * @param word the word, as returned by {@link #topWords(int)}
+     * @return the number of occurrences of the word, 0 if it does not occur
+     */
+    public synchronized long countOf(String word) {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        int hash = WordCountTable.initialHash();
+        for (byte b : bytes) {
+            hash = WordCountTable.updateHash(hash, b);
+        }
+        return totals.get(bytes, 0, bytes.length, hash);
+    }
+
+    private void subtract(Partial partial) {
+        emptied += totals.subtract(partial.counts());
+    }
+
+    /**
+     * Rebuilds the totals once more than half of their words dropped to zero, so deleting files
+     * eventually frees the memory of their words.
+     */
+    private void compactIfSparse() {
+        if (emptied > totals.size() / 2) {
+            totals = totals.compact();
+            emptied = 0;
+        }
+    }
+}
\ No newline at end of file
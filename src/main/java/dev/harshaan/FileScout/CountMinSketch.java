@@ -0,0 +1,92 @@
+package dev.harshaan.FileScout;
+
+/**
+ * Count-Min Sketch: a fixed-size frequency table that never underestimates a count and overestimates
+ * it by at most {@code 2N / width} with probability {@code 1 - 2^-depth}, where N is the total count.
+ * Sketches of the same dimensions can be merged by adding their tables.
+ */
+public class CountMinSketch {
+    private final int depth;
+    private final int width;
+    private final long[] table;
+
+    /**
+     * Constructs an empty sketch.
+     *
+     * @param depth the number of hash rows
+     * @param width the number of counters per row; must be a power of two
+     */
+    public CountMinSketch(int depth, int width) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Width must be a power of two: " + width);
+        }
+        this.depth = depth;
+        this.width = width;
+        this.table = new long[depth * width];
+    }
+
+    /**
+     * Adds occurrences of an item.
+     *
+     * @param hash  the hash of the item
+     * @param count the number of occurrences to add
+     * @return the estimated count of the item after the addition
+     */
+    public long add(int hash, long count) {
+        long estimate = Long.MAX_VALUE;
+        int h2 = secondHash(hash);
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + ((hash + row * h2) & (width - 1));
+            table[index] += count;
+            estimate = Math.min(estimate, table[index]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates the count of an item.
+     *
+     * @param hash the hash of the item
+     * @return the estimated count, never lower than the true count
+     */
+    public long estimate(int hash) {
+        long estimate = Long.MAX_VALUE;
+        int h2 = secondHash(hash);
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, table[row * width + ((hash + row * h2) & (width - 1))]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Adds the counts of another sketch of the same dimensions to this one.
+     *
+     * @param other the sketch to merge into this one
+     */
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Cannot merge sketches of different dimensions");
+        }
+        for (int i = 0; i < table.length; i++) {
+            table[i] += other.table[i];
+        }
+    }
+
+    /**
+     * Gets the memory used by the sketch's counters.
+     *
+     * @return the size of the counter table in bytes
+     */
+    public long sizeInBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    private static int secondHash(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash | 1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package dev.harshaan.FileScout;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Options controlling which files {@link DirectoryLoader} visits.
+ *
+ * @param maxDepth   the maximum number of directory levels to descend; 1 only visits the directory itself
+ * @param extensions the file extensions to include, lower-case and without the dot
+ * @param shard      the part of the directory to include in cluster mode, or null for all of it
+ */
+public record DirectoryLoadOptions(int maxDepth, Set<String> extensions, Shard shard) {
+    /**
+     * The extensions of the files FileScout treats as text.
+     */
+    public static final Set<String> TEXT_FILE_EXTENSIONS = Set.of("txt", "md");
+
+    /**
+     * The default options: text files directly inside the directory.
+     */
+    public static final DirectoryLoadOptions DEFAULTS = new DirectoryLoadOptions(1, TEXT_FILE_EXTENSIONS, null);
+
+    /**
+     * Creates options from request parameters.
+     *
+     * @param maxDepth   the maximum depth to descend, at least 1
+     * @param extensions the extensions to include, with or without a leading dot; the text extensions if null or empty
+     * @return the options
+     */
+    public static DirectoryLoadOptions of(int maxDepth, Set<String> extensions) {
+        Set<String> normalized = extensions == null ? Set.of() : extensions.stream()
+                .map(extension -> extension.trim().toLowerCase(Locale.ROOT).replaceFirst("^\\.", ""))
+                .filter(extension -> !extension.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        return new DirectoryLoadOptions(Math.max(1, maxDepth), normalized.isEmpty() ? TEXT_FILE_EXTENSIONS : normalized, null);
+    }
+
+    /**
+     * Gets the same options restricted to one shard of the directory.
+     *
+     * @param shard the shard, or null for the whole directory
+     * @return the options
+     */
+    public DirectoryLoadOptions withShard(Shard shard) {
+        return new DirectoryLoadOptions(maxDepth, extensions, shard);
+    }
+
+    /**
+     * Checks if a file of the directory is included: it has one of the extensions, see {@link #matches(Path)},
+     * and belongs to the shard, if any.
+     *
+     * @param root the directory
+     * @param file the file inside the directory
+     * @return true if the file is included
+     */
+    public boolean includes(Path root, Path file) {
+        return matches(file) && (shard == null || shard.owns(DirectoryLoader.relativeName(root, file)));
+    }
+
+    /**
+     * Checks if a subdirectory may contain included files, so that walks can skip the subtrees of other shards.
+     *
+     * @param root      the directory
+     * @param directory the subdirectory
+     * @return false if the subdirectory belongs to another shard
+     */
+    public boolean descends(Path root, Path directory) {
+        if (shard == null) {
+            return true;
+        }
+        String relativeName = DirectoryLoader.relativeName(root, directory);
+        return relativeName.isEmpty() || shard.owns(relativeName);
+    }
+
+    /**
+     * Checks if a file is included based on its extension. A compressed file is included if its own
+     * suffix is, or if the extension before the suffix is, e.g. {@code notes.txt.gz} is a text file,
+     * see {@link CompressedFiles}.
+     *
+     * @param file the file to check
+     * @return true if the file has one of the included extensions
+     */
+    public boolean matches(Path file) {
+        String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (extensions.contains(extensionOf(fileName))) {
+            return true;
+        }
+        String textName = CompressedFiles.textName(fileName);
+        return !textName.equals(fileName) && extensions.contains(extensionOf(textName));
+    }
+
+    private static String extensionOf(String fileName) {
+        int dotIndex = fileName.lastIndexOf('.');
+        if (dotIndex > 0 && dotIndex < fileName.length() - 1) {
+            return fileName.substring(dotIndex + 1);
+        }
+        return "";
+    }
+}
\ No newline at end of file
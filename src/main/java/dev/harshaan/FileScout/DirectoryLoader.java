@@ -0,0 +1,186 @@
+package dev.harshaan.FileScout;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Walks a directory tree and processes every matching file on its own virtual thread.
+ * The number of files processed at once is bounded, so a deep tree keeps the disk busy without
+ * opening an unbounded number of files. A walk can be cancelled, e.g. when the client disconnects.
+ */
+public class DirectoryLoader {
+    private static final Logger logger = Logger.getLogger(DirectoryLoader.class.getName());
+
+    /**
+     * The default maximum number of files processed concurrently.
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 64;
+
+    private final int maxConcurrency;
+
+    /**
+     * Processes one file found by the walk.
+     *
+     * @param <T> the type of the result of processing a file
+     */
+    public interface FileTask<T> {
+        /**
+         * Processes a file.
+         *
+         * @param file         the file
+         * @param relativeName the path of the file relative to the walked directory
+         * @return the result for the file
+         * @throws Exception if the file cannot be processed
+         */
+        T process(File file, String relativeName) throws Exception;
+    }
+
+    /**
+     * Constructs a loader.
+     *
+     * @param maxConcurrency the maximum number of files processed concurrently
+     */
+    public DirectoryLoader(int maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    /**
+     * Walks the directory and processes every regular file matching the options. The subtrees of other
+     * shards are not walked.
+     *
+     * @param root      the directory to walk
+     * @param options   the depth and extensions of the files to visit
+     * @param task      processes each file
+     * @param cancelled set to true to stop the walk; pending files are then skipped
+     * @param <T>       the type of the result of processing a file
+     * @return the results, in the order the files were visited
+     * @throws IOException           if the directory cannot be walked
+     * @throws ExecutionException    if processing a file fails
+     * @throws InterruptedException  if the calling thread is interrupted
+     * @throws CancellationException if the walk was cancelled
+     */
+    public <T> List<T> load(Path root, DirectoryLoadOptions options, FileTask<T> task, AtomicBoolean cancelled)
+            throws IOException, ExecutionException, InterruptedException {
+        List<Future<T>> futures = new ArrayList<>();
+        Semaphore permits = new Semaphore(maxConcurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), options.maxDepth(), new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                        return options.descends(root, directory) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                        if (cancelled.get()) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        if (attributes.isRegularFile() && options.includes(root, file)) {
+                            try {
+                                permits.acquire();
+                            }
+                            catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new WalkInterruptedException(e);
+                            }
+                            String relativeName = relativeName(root, file);
+                            futures.add(executor.submit(() -> {
+                                try {
+                                    return task.process(file.toFile(), relativeName);
+                                }
+                                finally {
+                                    permits.release();
+                                }
+                            }));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        logger.log(Level.WARNING, "Skipping unreadable path: " + file, e);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+
+                List<T> results = new ArrayList<>(futures.size());
+                for (Future<T> future : futures) {
+                    if (cancelled.get()) {
+                        throw new CancellationException("Directory load cancelled: " + root);
+                    }
+                    results.add(future.get());
+                }
+                if (cancelled.get()) {
+                    throw new CancellationException("Directory load cancelled: " + root);
+                }
+                return results;
+            }
+            catch (WalkInterruptedException e) {
+                throw (InterruptedException) e.getCause();
+            }
+            finally {
+                if (cancelled.get() || Thread.currentThread().isInterrupted()) {
+                    executor.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks the directory like {@link #load} but hands each result to the consumer as soon as it is
+     * computed instead of collecting them. The consumer is called from the worker threads, one call
+     * at a time per file; a slow consumer holds its worker's permit, so the walk slows down with it.
+     *
+     * @param root      the directory to walk
+     * @param options   the depth and extensions of the files to visit
+     * @param task      processes each file
+     * @param consumer  receives each result, in completion order
+     * @param cancelled set to true to stop the walk; pending files are then skipped
+     * @param <T>       the type of the result of processing a file
+     * @throws IOException           if the directory cannot be walked
+     * @throws ExecutionException    if processing a file or consuming its result fails
+     * @throws InterruptedException  if the calling thread is interrupted
+     * @throws CancellationException if the walk was cancelled
+     */
+    public <T> void stream(Path root, DirectoryLoadOptions options, FileTask<T> task, Consumer<T> consumer, AtomicBoolean cancelled)
+            throws IOException, ExecutionException, InterruptedException {
+        load(root, options, (file, relativeName) -> {
+            T result = task.process(file, relativeName);
+            if (!cancelled.get()) {
+                consumer.accept(result);
+            }
+            return null;
+        }, cancelled);
+    }
+
+    /**
+     * Gets the path of a file relative to the directory it was found in, as used for file names in the API.
+     *
+     * @param root the directory
+     * @param file the file inside the directory
+     * @return the relative path of the file
+     */
+    public static String relativeName(Path root, Path file) {
+        return root.toAbsolutePath().normalize().relativize(file.toAbsolutePath().normalize()).toString();
+    }
+
+    /**
+     * Carries an interruption out of a file visitor, whose methods may only throw {@link IOException}.
+     */
+    private static final class WalkInterruptedException extends IOException {
+        private WalkInterruptedException(InterruptedException cause) {
+            super(cause);
+        }
+    }
+}
\ No newline at end of file
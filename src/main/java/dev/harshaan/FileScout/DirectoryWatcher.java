@@ -0,0 +1,334 @@
+package dev.harshaan.FileScout;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the catalog of a workspace's files up to date from file system change events, so operations on
+ * a directory that rarely changes neither walk it nor stat its files again.
+ * The watcher is seeded with the files found by a completed load. Bursts of events are coalesced into
+ * one batch, applied once the directory has been quiet for {@value #DEBOUNCE_MILLIS} ms or at the latest
+ * {@value #MAX_BATCH_MILLIS} ms after the first event; each changed file's stats and index entry are
+ * refreshed as the batch is applied. If the event queue overflows, the catalog is rebuilt by a rescan
+ * that only re-reads files whose modification time or size changed.
+ */
+public class DirectoryWatcher implements Closeable {
+    private static final Logger logger = Logger.getLogger(DirectoryWatcher.class.getName());
+    static final long DEBOUNCE_MILLIS = 200;
+    static final long MAX_BATCH_MILLIS = 2000;
+
+    private final Path root;
+    private final DirectoryLoadOptions options;
+    private final InvertedIndex index;
+    private final FileStatsCache statsCache;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, File> files = new ConcurrentSkipListMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean current;
+    private volatile boolean closed;
+    private Thread thread;
+
+    /**
+     * Starts watching a directory tree. Events are queued until the watcher is seeded.
+     *
+     * @param root       the directory to watch
+     * @param options    the depth and extensions of the files to keep in the catalog
+     * @param index      the keyword index to refresh changed files in
+     * @param statsCache the stats cache to refresh changed files in
+     * @throws IOException if the directory cannot be watched
+     */
+    public DirectoryWatcher(Path root, DirectoryLoadOptions options, InvertedIndex index, FileStatsCache statsCache) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.options = options;
+        this.index = index;
+        this.statsCache = statsCache;
+        this.watchService = this.root.getFileSystem().newWatchService();
+        try {
+            walk(this.root, false);
+        }
+        catch (IOException | UncheckedIOException e) {
+            watchService.close();
+            throw e instanceof UncheckedIOException unchecked ? unchecked.getCause() : (IOException) e;
+        }
+    }
+
+    /**
+     * Gets the depth and extensions of the files the watcher keeps in its catalog.
+     *
+     * @return the load options
+     */
+    public DirectoryLoadOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Replaces the catalog with the files found by a completed load and starts applying events.
+     * Events that arrived since the watcher was started are applied on top.
+     *
+     * @param fileNames the relative names of the loaded files
+     */
+    public synchronized void seed(Set<String> fileNames) {
+        if (closed) {
+            return;
+        }
+        files.keySet().retainAll(fileNames);
+        for (String fileName : fileNames) {
+            files.put(fileName, root.resolve(fileName).toFile());
+        }
+        current = true;
+        generation.incrementAndGet();
+        if (thread == null) {
+            thread = Thread.ofVirtual().name("watch-" + root.getFileName()).start(this::run);
+        }
+    }
+
+    /**
+     * Checks if the catalog reflects the directory, i.e. the watcher was seeded and has not lost track of it.
+     *
+     * @return true if the catalog can be used instead of walking the directory
+     */
+    public boolean isCurrent() {
+        return current && !closed;
+    }
+
+    /**
+     * Gets a number that changes whenever the catalog or the files in it change. It is advanced after a
+     * batch of changes has been applied, so whoever reads a new generation also sees the refreshed
+     * stats and index entries.
+     *
+     * @return the generation of the catalog
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Gets the files of the catalog.
+     *
+     * @return the files, ordered by relative name
+     */
+    public List<File> files() {
+        return new ArrayList<>(files.values());
+    }
+
+    /**
+     * Adds a file the application just wrote to the catalog, ahead of its change event.
+     *
+     * @param file the file
+     */
+    public void fileChanged(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        if (depthOf(path) <= options.maxDepth() && options.includes(root, path)) {
+            files.put(DirectoryLoader.relativeName(root, path), file);
+        }
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Removes a file the application just deleted from the catalog, ahead of its change event.
+     *
+     * @param fileName the relative name of the file
+     */
+    public void fileDeleted(String fileName) {
+        files.remove(fileName);
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Collects events into batches until the watcher is closed.
+     */
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = drain(key, changed);
+                long deadline = System.currentTimeMillis() + MAX_BATCH_MILLIS;
+                while (System.currentTimeMillis() < deadline
+                        && (key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= drain(key, changed);
+                }
+                try {
+                    if (overflow) {
+                        rescan();
+                    }
+                    else {
+                        apply(changed);
+                    }
+                }
+                catch (IOException | RuntimeException e) {
+                    logger.log(Level.WARNING, "Failed to apply changes, the next load rescans: " + root, e);
+                    current = false;
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e) {
+            current = false;
+        }
+    }
+
+    /**
+     * Takes the events of a signalled key.
+     *
+     * @param key     the key
+     * @param changed collects the paths the events are about
+     * @return true if events were lost
+     */
+    private boolean drain(WatchKey key, Set<Path> changed) {
+        Path directory = directories.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            }
+            else if (directory != null) {
+                changed.add(directory.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+            if (root.equals(directory)) {
+                current = false;
+            }
+        }
+        return overflow;
+    }
+
+    /**
+     * Applies a batch of changes to the catalog, the stats cache and the index.
+     *
+     * @param changed the paths that were created, modified or deleted
+     * @throws IOException if a new directory cannot be watched
+     */
+    private void apply(Set<Path> changed) throws IOException {
+        for (Path path : changed) {
+            if (Files.isDirectory(path)) {
+                if (depthOf(path) < options.maxDepth()) {
+                    walk(path, true);
+                }
+            }
+            else if (Files.isRegularFile(path)) {
+                if (depthOf(path) <= options.maxDepth() && options.includes(root, path)) {
+                    add(path);
+                }
+            }
+            else {
+                String fileName = DirectoryLoader.relativeName(root, path);
+                remove(fileName);
+                for (String nested : new ArrayList<>(files.tailMap(fileName + File.separator).keySet())) {
+                    if (!nested.startsWith(fileName + File.separator)) {
+                        break;
+                    }
+                    remove(nested);
+                }
+            }
+        }
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Rebuilds the catalog after events were lost. Unchanged files are recognised by their
+     * modification time and size and are not read again.
+     *
+     * @throws IOException if the directory cannot be walked
+     */
+    private void rescan() throws IOException {
+        logger.info("Change events overflowed, rescanning: " + root);
+        current = false;
+        Set<String> found = walk(root, true);
+        for (String fileName : new ArrayList<>(files.keySet())) {
+            if (!found.contains(fileName)) {
+                remove(fileName);
+            }
+        }
+        current = true;
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Registers a directory and its subdirectories down to the watched depth.
+     *
+     * @param directory the directory
+     * @param addFiles  whether to also add the matching files found to the catalog
+     * @return the relative names of the files added
+     * @throws IOException if a directory cannot be registered
+     */
+    private Set<String> walk(Path directory, boolean addFiles) throws IOException {
+        Set<String> added = new HashSet<>();
+        int depth = depthOf(directory);
+        try (Stream<Path> paths = Files.walk(directory, options.maxDepth() - depth - (addFiles ? 0 : 1))) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(path)) {
+                    if (depthOf(path) < options.maxDepth()) {
+                        directories.put(path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), path);
+                    }
+                }
+                else if (addFiles && Files.isRegularFile(path) && options.includes(root, path)) {
+                    String fileName = add(path);
+                    if (fileName != null) {
+                        added.add(fileName);
+                    }
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Adds a file to the catalog, counting it and indexing it unless it is unchanged.
+     *
+     * @param path the file
+     * @return the relative name of the file, or null if it was deleted before it could be counted
+     */
+    private String add(Path path) {
+        File file = path.toFile();
+        String fileName = DirectoryLoader.relativeName(root, path);
+        if (statsCache.statsOf(file) == null) {
+            remove(fileName);
+            return null;
+        }
+        index.refresh(file);
+        files.put(fileName, file);
+        return fileName;
+    }
+
+    private void remove(String fileName) {
+        files.remove(fileName);
+        statsCache.invalidate(fileName);
+        index.remove(fileName);
+    }
+
+    private int depthOf(Path path) {
+        return root.relativize(path).getNameCount() - (path.equals(root) ? 1 : 0);
+    }
+
+    /**
+     * Stops watching the directory.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            current = false;
+        }
+        try {
+            watchService.close();
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close watch service: " + root, e);
+        }
+    }
+}
\ No newline at end of file
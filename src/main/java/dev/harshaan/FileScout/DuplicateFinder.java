@@ -0,0 +1,289 @@
+package dev.harshaan.FileScout;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Finds files with identical content without holding any content in memory.
+ * Candidates are narrowed down in stages, each more expensive than the last and each run only on
+ * the files the previous stage could not tell apart:
+ * <ol>
+ *     <li>group by file size, which costs only a stat per file;</li>
+ *     <li>hash the first and last 4 KB of each file;</li>
+ *     <li>hash the full content with a streaming SHA-256;</li>
+ *     <li>optionally, compare the bytes of each remaining file against the first of its group.</li>
+ * </ol>
+ * Compressed files are compared by their decompressed content, see {@link CompressedFiles}, so a
+ * compressed copy of a file is its duplicate. Their size is only known once they are decompressed, so
+ * each is decompressed once up front and its size and content hash are kept for the later stages.
+ * Hashing runs in parallel across files. Memory use is proportional to the number of files.
+ */
+public class DuplicateFinder {
+    private static final int EDGE_SIZE = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Finds groups of files with identical content.
+     *
+     * @param files  the files to compare
+     * @param verify whether to confirm hash matches with a byte-by-byte comparison
+     * @return the groups of identical files, each with at least two files, in the order the files were given
+     * @throws IOException if an I/O error occurs while reading a file
+     */
+    public List<List<File>> findDuplicates(List<File> files, boolean verify) throws IOException {
+        List<File> compressedFiles = new ArrayList<>();
+        for (File file : files) {
+            if (CompressedFiles.isCompressed(file)) {
+                compressedFiles.add(file);
+            }
+        }
+        Map<File, ContentDigest> compressed = new HashMap<>();
+        List<ContentDigest> digests = hashAll(compressedFiles, this::digestContent);
+        for (int i = 0; i < compressedFiles.size(); i++) {
+            compressed.put(compressedFiles.get(i), digests.get(i));
+        }
+
+        Map<Long, List<File>> bySize = new LinkedHashMap<>();
+        for (File file : files) {
+            ContentDigest digest = compressed.get(file);
+            bySize.computeIfAbsent(digest != null ? digest.size() : file.length(), size -> new ArrayList<>()).add(file);
+        }
+
+        List<List<File>> candidates = new ArrayList<>();
+        for (Map.Entry<Long, List<File>> group : bySize.entrySet()) {
+            if (group.getValue().size() < 2) {
+                continue;
+            }
+            if (group.getKey() == 0) {
+                candidates.add(group.getValue());
+                continue;
+            }
+            if (group.getValue().stream().anyMatch(compressed::containsKey)) {
+                candidates.addAll(regroup(group.getValue(), file -> compressed.containsKey(file)
+                        ? compressed.get(file).hash() : digestContent(file).hash()));
+                continue;
+            }
+            for (List<File> edgeGroup : regroup(group.getValue(), this::hashEdges)) {
+                if (group.getKey() <= 2L * EDGE_SIZE) {
+                    candidates.add(edgeGroup);
+                }
+                else {
+                    candidates.addAll(regroup(edgeGroup, file -> digestContent(file).hash()));
+                }
+            }
+        }
+
+        if (!verify) {
+            return candidates;
+        }
+        List<List<File>> duplicates = new ArrayList<>();
+        for (List<File> group : candidates) {
+            duplicates.addAll(confirm(group));
+        }
+        return duplicates;
+    }
+
+    /**
+     * Splits a group of files by a per-file hash computed in parallel, dropping files that end up alone.
+     *
+     * @param files  the files to split
+     * @param hasher computes the hash of one file
+     * @return the groups of files sharing a hash, in the order the files were given
+     * @throws IOException if an I/O error occurs while hashing a file
+     */
+    private List<List<File>> regroup(List<File> files, FileHasher<String> hasher) throws IOException {
+        List<String> hashes = hashAll(files, hasher);
+        Map<String, List<File>> byHash = new LinkedHashMap<>();
+        for (int i = 0; i < hashes.size(); i++) {
+            byHash.computeIfAbsent(hashes.get(i), hash -> new ArrayList<>()).add(files.get(i));
+        }
+        List<List<File>> groups = new ArrayList<>();
+        for (List<File> group : byHash.values()) {
+            if (group.size() > 1) {
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Hashes files in parallel.
+     *
+     * @param files  the files to hash
+     * @param hasher computes the hash of one file
+     * @param <T>    the type of the hashes
+     * @return the hash of each file, in the order the files were given
+     * @throws IOException if an I/O error occurs while hashing a file
+     */
+    private <T> List<T> hashAll(List<File> files, FileHasher<T> hasher) throws IOException {
+        List<T> hashes = new ArrayList<>(Collections.nCopies(files.size(), null));
+        try {
+            IntStream.range(0, files.size()).parallel().forEach(i -> {
+                try {
+                    hashes.set(i, hasher.hash(files.get(i)));
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return hashes;
+    }
+
+    /**
+     * Splits a group of files whose hashes match into groups whose bytes actually match.
+     *
+     * @param group the files to compare
+     * @return the groups of byte-identical files with at least two files
+     * @throws IOException if an I/O error occurs while reading a file
+     */
+    private List<List<File>> confirm(List<File> group) throws IOException {
+        List<List<File>> confirmed = new ArrayList<>();
+        List<File> remaining = new ArrayList<>(group);
+        while (remaining.size() > 1) {
+            File original = remaining.remove(0);
+            List<File> matches = new ArrayList<>(List.of(original));
+            for (Iterator<File> iterator = remaining.iterator(); iterator.hasNext(); ) {
+                File file = iterator.next();
+                if (sameContent(original, file)) {
+                    matches.add(file);
+                    iterator.remove();
+                }
+            }
+            if (matches.size() > 1) {
+                confirmed.add(matches);
+            }
+        }
+        return confirmed;
+    }
+
+    private String hashEdges(File file) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(EDGE_SIZE);
+            readFully(channel, buffer, 0);
+            digest.update(buffer.flip());
+            if (size > EDGE_SIZE) {
+                buffer.clear();
+                readFully(channel, buffer, Math.max(EDGE_SIZE, size - EDGE_SIZE));
+                digest.update(buffer.flip());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hashes the content of a file, decompressed if the file is compressed.
+     */
+    private ContentDigest digestContent(File file) throws IOException {
+        MessageDigest digest = sha256();
+        long size = 0;
+        try (ReadableByteChannel channel = CompressedFiles.openChannel(file)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                size += read;
+                digest.update(buffer.flip());
+                buffer.clear();
+            }
+        }
+        return new ContentDigest(size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private boolean sameContent(File first, File second) throws IOException {
+        if (CompressedFiles.isCompressed(first) || CompressedFiles.isCompressed(second)) {
+            return sameStreams(first, second);
+        }
+        try (FileChannel a = FileChannel.open(first.toPath(), StandardOpenOption.READ);
+             FileChannel b = FileChannel.open(second.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer bufferA = ByteBuffer.allocate(BUFFER_SIZE);
+            ByteBuffer bufferB = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = 0;
+            while (true) {
+                bufferA.clear();
+                bufferB.clear();
+                int read = readFully(a, bufferA, position);
+                if (readFully(b, bufferB, position) != read) {
+                    return false;
+                }
+                if (read == 0) {
+                    return true;
+                }
+                if (!bufferA.flip().equals(bufferB.flip())) {
+                    return false;
+                }
+                position += read;
+            }
+        }
+    }
+
+    private boolean sameStreams(File first, File second) throws IOException {
+        try (InputStream a = CompressedFiles.open(first);
+             InputStream b = CompressedFiles.open(second)) {
+            byte[] bufferA = new byte[BUFFER_SIZE];
+            byte[] bufferB = new byte[BUFFER_SIZE];
+            while (true) {
+                int read = a.readNBytes(bufferA, 0, BUFFER_SIZE);
+                if (b.readNBytes(bufferB, 0, BUFFER_SIZE) != read) {
+                    return false;
+                }
+                if (read == 0) {
+                    return true;
+                }
+                if (!Arrays.equals(bufferA, 0, read, bufferB, 0, read)) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * The size and hash of a file's content, decompressed if the file is compressed.
+     */
+    private record ContentDigest(long size, String hash) {
+    }
+
+    /**
+     * Reads from the channel at the given position until the buffer is full or the file ends.
+     *
+     * @return the number of bytes read
+     */
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private interface FileHasher<T> {
+        T hash(File file) throws IOException;
+    }
+}
\ No newline at end of file
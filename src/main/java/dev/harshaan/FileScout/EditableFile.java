@@ -2,15 +2,24 @@ package dev.harshaan.FileScout;
 
 import lombok.Getter;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 
 /**
  * Represents an editable file with functionalities to read, write, and count words and characters.
+ * Words are maximal runs of non-whitespace characters, split by {@link Tokenizer}. Counts are kept incrementally: appending text
+ * only scans the appended text, as long as the file was not changed by anyone else in between.
  */
 public class EditableFile {
    private final String filePath;
@@ -20,6 +29,9 @@ public class EditableFile {
    private int wordCount;
    @Getter
    private int charCount;
+   private boolean endsInWord;
+   private long knownSize;
+   private long knownLastModified;
 
    /**
     * Constructs an EditableFile with the specified file path.
@@ -32,6 +44,29 @@ public class EditableFile {
       updateBothCounts();
    }
 
+   /**
+    * Constructs an EditableFile with previously computed counts.
+    * The counts are trusted only if the file's modification time and size still match them;
+    * otherwise the file is counted from scratch.
+    * @param filePath the path of the file
+    * @param stats    the last known counts of the file, or null if there are none
+    */
+   public EditableFile(String filePath, FileStatsCache.FileStats stats) {
+      this.filePath = filePath;
+      this.fileName = new File(filePath).getName();
+      createFileIfNotExists();
+      File file = new File(filePath);
+      if (stats != null && stats.matches(file)) {
+         wordCount = stats.wordCount();
+         charCount = stats.charCount();
+         endsInWord = lastByteIsWordByte(file);
+         recordFileState();
+      }
+      else {
+         updateBothCounts();
+      }
+   }
+
    /**
     * Creates the file if it does not exist.
     */
@@ -50,51 +85,98 @@ public class EditableFile {
 
    /**
     * Appends the specified content to the end of the file.
-    * Updates wordCount and charCount accordingly.
+    * Updates wordCount and charCount from the appended content alone, unless the file was modified
+    * externally since it was last counted, in which case it is recounted.
     * @param contents The content to be written to the file.
     */
    public void write(String contents) {
-      try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, true))) {
+      boolean unchanged = isUnchanged();
+      try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, StandardCharsets.UTF_8, true))) {
          writer.write(contents);
       }
       catch (IOException e) {
          e.printStackTrace();
+         unchanged = false;
       }
 
-      updateBothCounts();
+      if (unchanged) {
+         countAppended(contents);
+         recordFileState();
+      }
+      else {
+         updateBothCounts();
+      }
    }
 
    /**
-    * Gets the content of the file.
+    * Gets the content of the file, decompressed if the file is compressed. The whole file is loaded
+    * into memory, so large files should be read with {@link #newReader()} or in pages, see {@link FileRange}.
     * @return the content of the file
     * @throws IOException if an I/O error occurs
     */
    public String getContent() throws IOException {
-      return Files.readString(Paths.get(filePath));
+      if (!CompressedFiles.isCompressed(new File(filePath))) {
+         return Files.readString(Paths.get(filePath));
+      }
+      try (InputStream in = CompressedFiles.open(new File(filePath))) {
+         return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      }
+   }
+
+   /**
+    * Opens a buffered UTF-8 reader over the file's content, decompressing it as it is read if the
+    * file is compressed, see {@link CompressedFiles}.
+    * @return the reader, to be closed by the caller
+    * @throws IOException if the file cannot be opened
+    */
+   public Reader newReader() throws IOException {
+      return new BufferedReader(new InputStreamReader(CompressedFiles.open(new File(filePath)), StandardCharsets.UTF_8));
    }
 
    /**
     * Checks if the file contains the specified keyword.
+    * The file is streamed in chunks, so it is never loaded into memory whole.
     * @param keyword the keyword to search for
     * @return true if the file contains the keyword, false otherwise
     * @throws IOException if an I/O error occurs
     */
    public boolean hasKeyword(String keyword) throws IOException {
-      return getContent().contains(keyword);
+      if (keyword.isEmpty()) {
+         return true;
+      }
+      HorspoolMatcher matcher = new HorspoolMatcher(keyword, false);
+      int overlap = keyword.length() - 1;
+      char[] buffer = new char[8192 + overlap];
+      boolean[] found = new boolean[1];
+      try (Reader reader = newReader()) {
+         int carried = 0;
+         int read;
+         while ((read = reader.read(buffer, carried, 8192)) != -1) {
+            int end = carried + read;
+            matcher.find(buffer, 0, end, (pattern, start, stop) -> found[0] = true);
+            if (found[0]) {
+               return true;
+            }
+            int keep = Math.min(overlap, end);
+            System.arraycopy(buffer, end - keep, buffer, 0, keep);
+            carried = keep;
+         }
+      }
+      return false;
    }
 
    /**
-    * Updates the word count and character count of the file.
+    * Updates the word count and character count of the file by streaming over its content.
     */
    private void updateBothCounts() {
-      try {
-         String content = getContent();
-         charCount = content.length();
-         if (content.isEmpty()) {
-            wordCount = 0;
-         }
-         else {
-            wordCount = content.split("\\s+").length;
+      wordCount = 0;
+      charCount = 0;
+      endsInWord = false;
+      try (Reader reader = newReader()) {
+         char[] buffer = new char[8192];
+         int read;
+         while ((read = reader.read(buffer)) != -1) {
+            countChars(buffer, read);
          }
       }
       catch (IOException e) {
@@ -102,5 +184,60 @@ public class EditableFile {
          charCount = 0;
          e.printStackTrace();
       }
+      recordFileState();
+   }
+
+   /**
+    * Adds the words and characters of text appended to the file. A word that continues across the
+    * append boundary is only counted once.
+    * @param appended the appended text
+    */
+   private void countAppended(String appended) {
+      countChars(appended.toCharArray(), appended.length());
+   }
+
+   private void countChars(char[] chars, int length) {
+      if (length == 0) {
+         return;
+      }
+      wordCount += Tokenizer.countWords(CharBuffer.wrap(chars, 0, length), endsInWord);
+      endsInWord = !Tokenizer.isSeparator(chars[length - 1]);
+      charCount += length;
+   }
+
+   /**
+    * Checks whether the file still has the size and modification time it had when it was last counted.
+    * @return true if the counts can be updated incrementally
+    */
+   private boolean isUnchanged() {
+      File file = new File(filePath);
+      return file.length() == knownSize && file.lastModified() == knownLastModified;
+   }
+
+   private void recordFileState() {
+      File file = new File(filePath);
+      knownSize = file.length();
+      knownLastModified = file.lastModified();
+   }
+
+   /**
+    * Checks whether the file ends inside a word. Whitespace is ASCII, so the last byte decides even
+    * for multi-byte UTF-8 text.
+    * @param file the file to check
+    * @return true if the last byte of the file is not whitespace
+    */
+   static boolean lastByteIsWordByte(File file) {
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+         long length = randomAccessFile.length();
+         if (length == 0) {
+            return false;
+         }
+         randomAccessFile.seek(length - 1);
+         return !Tokenizer.isSeparator(randomAccessFile.read());
+      }
+      catch (IOException e) {
+         e.printStackTrace();
+         return false;
+      }
    }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package dev.harshaan.FileScout;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A byte range of a file, sent to clients without loading it into memory.
+ *
+ * @param file     the file
+ * @param start    the offset of the first byte of the range
+ * @param end      the offset after the last byte of the range
+ * @param fileSize the size of the file when the range was resolved
+ */
+public record FileRange(File file, long start, long end, long fileSize) {
+    /**
+     * Gets the number of bytes in the range.
+     *
+     * @return the length of the range
+     */
+    public long length() {
+        return end - start;
+    }
+
+    /**
+     * Checks whether the range covers the whole file.
+     *
+     * @return true if the range starts at the beginning and ends at the end of the file
+     */
+    public boolean isWholeFile() {
+        return start == 0 && end == fileSize;
+    }
+
+    /**
+     * Copies the range to a stream with {@link FileChannel#transferTo}, which lets the operating system
+     * copy the bytes directly when the target supports it.
+     *
+     * @param out the stream to copy to; not closed
+     * @throws IOException if the file cannot be read or the stream cannot be written
+     */
+    public void transferTo(OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = start;
+            long limit = Math.min(end, channel.size());
+            while (position < limit) {
+                long transferred = channel.transferTo(position, limit - position, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+        out.flush();
+    }
+}
\ No newline at end of file
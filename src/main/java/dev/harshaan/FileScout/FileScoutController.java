@@ -1,11 +1,27 @@
 package dev.harshaan.FileScout;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * REST controller for managing file operations.
@@ -13,22 +29,166 @@ import java.util.Map;
 @RestController
 @RequestMapping("/api/files")
 public class FileScoutController {
+    private static final String WORKSPACE_HEADER = "X-Workspace-Id";
+    private static final String TRUNCATED_HEADER = "X-Search-Truncated";
+    private static final String TOTAL_LINES_HEADER = "X-Total-Lines";
+    private static final String PARTIAL_HEADER = "X-Partial-Results";
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
     @Autowired
     private FileScoutService fileScoutService;
+    @Autowired
+    private WordCountJobs wordCountJobs;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ResponseCache responseCache;
 
     /**
-     * Loads files from a specified directory.
+     * Loads files from a specified directory tree.
+     * The load runs on a virtual thread and is cancelled if the request fails, e.g. because the client
+     * disconnected, or times out after {@code spring.mvc.async.request-timeout}. The id of the directory's workspace is returned in the
+     * X-Workspace-Id header; pass it as {@code workspaceId} to the other endpoints.
+     * Once the directory is watched, the listing has an ETag that changes with the directory's files;
+     * a request whose If-None-Match holds the current one gets 304, and repeated loads are served
+     * from the response cache.
      * @param directoryPath the path of the directory to load files from
+     * @param maxDepth      the number of directory levels to descend; 1 loads only the directory itself
+     * @param extensions    the file extensions to load; txt and md if omitted
+     * @param ifNoneMatch   the ETags of the listings the client already has
      * @return a list of file details, including file name, word count, and character count
      */
     @GetMapping("/loadFiles")
-    public ResponseEntity<List<Map<String, Object>>> loadFilesFromDirectory(@RequestParam String directoryPath) {
+    public DeferredResult<ResponseEntity<byte[]>> loadFilesFromDirectory(@RequestParam String directoryPath,
+                                                                         @RequestParam(defaultValue = "1") int maxDepth,
+                                                                         @RequestParam(required = false) Set<String> extensions,
+                                                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        DeferredResult<ResponseEntity<byte[]>> result = new DeferredResult<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        result.onError(e -> cancelled.set(true));
+        result.onTimeout(() -> cancelled.set(true));
+        Thread.ofVirtual().start(() -> {
+            try {
+                DirectoryLoadOptions options = DirectoryLoadOptions.of(maxDepth, extensions);
+                String workspaceId = fileScoutService.openWorkspace(directoryPath);
+                String scope = scope(workspaceId, "loadFiles", options.maxDepth(), new TreeSet<>(options.extensions()));
+                HttpHeaders headers = new HttpHeaders();
+                headers.set(WORKSPACE_HEADER, workspaceId);
+                String version = fileScoutService.catalogVersion(workspaceId, options);
+                if (version != null) {
+                    result.setResult(cachedResponse(scope, version, ifNoneMatch, headers,
+                            cachedHeaders -> objectMapper.writeValueAsBytes(fileScoutService.loadFiles(workspaceId, options, cancelled))));
+                    return;
+                }
+                // A full load walks the directory anyway, so it is not fingerprinted first. The watcher it
+                // seeds is versioned from then on, and any change the walk missed advances that version.
+                byte[] body = objectMapper.writeValueAsBytes(fileScoutService.loadFiles(workspaceId, options, cancelled));
+                version = fileScoutService.catalogVersion(workspaceId, null);
+                if (version != null && !cancelled.get()) {
+                    ResponseCache.Entry entry = new ResponseCache.Entry(version, ResponseCache.etag(scope, version), body, Map.of());
+                    responseCache.put(scope, entry);
+                    headers.setETag(entry.etag());
+                }
+                headers.setContentType(MediaType.APPLICATION_JSON);
+                result.setResult(new ResponseEntity<>(body, headers, HttpStatus.OK));
+            }
+            catch (Exception e) {
+                result.setResult(ResponseEntity.status(500).body(null));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Streams the files of a specified directory tree as newline-delimited JSON, one line of file
+     * details per file as soon as it is computed. The load stops when the client disconnects.
+     * The id of the directory's workspace is returned in the X-Workspace-Id header.
+     * @param directoryPath the path of the directory to load files from
+     * @param maxDepth      the number of directory levels to descend; 1 loads only the directory itself
+     * @param extensions    the file extensions to load; txt and md if omitted
+     * @return a stream of file details, including file name, word count, and character count
+     */
+    @GetMapping(value = "/loadFiles/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamFilesFromDirectory(@RequestParam String directoryPath,
+                                                                          @RequestParam(defaultValue = "1") int maxDepth,
+                                                                          @RequestParam(required = false) Set<String> extensions) {
+        DirectoryLoadOptions options = DirectoryLoadOptions.of(maxDepth, extensions);
+        String workspaceId = fileScoutService.openWorkspace(directoryPath);
+        StreamingResponseBody body = out -> {
+            NdjsonWriter writer = new NdjsonWriter(out, objectMapper);
+            try {
+                fileScoutService.streamFiles(workspaceId, options, writer::write, writer.cancelled());
+            }
+            catch (Exception e) {
+                writeError(writer, e);
+            }
+        };
+        return ResponseEntity.ok().header(WORKSPACE_HEADER, workspaceId).contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Lists the loaded directories.
+     * @return the id and directory path of each workspace
+     */
+    @GetMapping("/workspaces")
+    public ResponseEntity<List<Map<String, Object>>> listWorkspaces() {
+        return ResponseEntity.ok(fileScoutService.listWorkspaces());
+    }
+
+    /**
+     * Reads a byte range of a file. The bytes are copied from the file to the response without being
+     * loaded into memory. A range that does not cover the whole file is answered with 206 and a
+     * Content-Range header. A range may end inside a multi-byte character; page by lines to avoid that.
+     * @param fileName    the name of the file to read
+     * @param offset      the offset of the first byte to read
+     * @param length      the number of bytes to read
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @return the bytes of the range, or 400 if the range is invalid or the file is outside the directory
+     */
+    @GetMapping("/readFile")
+    public ResponseEntity<StreamingResponseBody> readFile(@RequestParam String fileName,
+                                                          @RequestParam(defaultValue = "0") long offset,
+                                                          @RequestParam(defaultValue = "1048576") long length,
+                                                          @RequestParam(required = false) String workspaceId) {
         try {
-            List<Map<String, Object>> files = fileScoutService.loadFilesFromDirectory(directoryPath);
-            return ResponseEntity.ok(files);
+            return rangeResponse(fileScoutService.readBytes(workspaceId, fileName, offset, length), new HttpHeaders());
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
         catch (Exception e) {
-            return ResponseEntity.status(500).body(null);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Reads a page of lines of a file, including their line breaks. The start of the page is found
+     * through the file's line offset index, so deep pages cost no more than the first one.
+     * The X-Total-Lines header holds the number of lines of the file.
+     * @param fileName    the name of the file to read
+     * @param fromLine    the number of the first line to read, starting at 1
+     * @param lineCount   the number of lines to read
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @return the lines, or 400 if the range is invalid or the file is outside the directory
+     */
+    @GetMapping("/readFile/lines")
+    public ResponseEntity<StreamingResponseBody> readFileLines(@RequestParam String fileName,
+                                                               @RequestParam(defaultValue = "1") long fromLine,
+                                                               @RequestParam(defaultValue = "100") long lineCount,
+                                                               @RequestParam(required = false) String workspaceId) {
+        try {
+            FileRange range = fileScoutService.readLines(workspaceId, fileName, fromLine, lineCount);
+            long totalLines = fileScoutService.countLines(workspaceId, fileName);
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(TOTAL_LINES_HEADER, String.valueOf(totalLines));
+            return rangeResponse(range, headers);
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).build();
         }
     }
 
@@ -36,14 +196,18 @@ public class FileScoutController {
      * Creates a new file with the specified content.
      * @param fileName    the name of the file to create
      * @param fileContent the content to write to the file
-     * @return a response indicating success or failure
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @return a response indicating success or failure, or 400 if the file is outside the directory
      */
     @PostMapping("/createFile")
-    public ResponseEntity<String> createFile(@RequestParam String fileName, @RequestParam String fileContent) {
+    public ResponseEntity<String> createFile(@RequestParam String fileName, @RequestParam String fileContent, @RequestParam(required = false) String workspaceId) {
         try {
-            fileScoutService.createFile(fileName, fileContent);
+            fileScoutService.createFile(workspaceId, fileName, fileContent);
             return ResponseEntity.ok("File created successfully");
         }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error creating file: " + e.getMessage());
+        }
         catch (Exception e) {
             return ResponseEntity.status(500).body("Error creating file: " + e.getMessage());
         }
@@ -53,14 +217,18 @@ public class FileScoutController {
      * Writes content to an existing file.
      * @param fileName    the name of the file to write to
      * @param fileContent the content to write to the file
-     * @return a response indicating success or failure
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @return a response indicating success or failure, or 400 if the file is outside the directory
      */
     @PostMapping("/writeFile")
-    public ResponseEntity<String> writeFile(@RequestParam String fileName, @RequestParam String fileContent) {
+    public ResponseEntity<String> writeFile(@RequestParam String fileName, @RequestParam String fileContent, @RequestParam(required = false) String workspaceId) {
         try {
-            fileScoutService.writeFile(fileName, fileContent);
+            fileScoutService.writeFile(workspaceId, fileName, fileContent);
             return ResponseEntity.ok("File written successfully");
         }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error writing to file: " + e.getMessage());
+        }
         catch (Exception e) {
             return ResponseEntity.status(500).body("Error writing to file: " + e.getMessage());
         }
@@ -68,28 +236,58 @@ public class FileScoutController {
 
     /**
      * Deletes a file.
-     * @param fileName the name of the file to delete
-     * @return a response indicating success or failure
+     * @param fileName    the name of the file to delete
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @return a response indicating success or failure, or 400 if the file is outside the directory
      */
     @DeleteMapping("/deleteFile")
-    public ResponseEntity<String> deleteFile(@RequestParam String fileName) {
+    public ResponseEntity<String> deleteFile(@RequestParam String fileName, @RequestParam(required = false) String workspaceId) {
         try {
-            fileScoutService.deleteFile(fileName);
+            fileScoutService.deleteFile(workspaceId, fileName);
             return ResponseEntity.ok("File deleted successfully");
         }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error deleting file: " + e.getMessage());
+        }
         catch (Exception e) {
             return ResponseEntity.status(500).body("Error deleting file: " + e.getMessage());
         }
     }
 
+    /**
+     * Applies a batch of create, append and delete operations, e.g.
+     * {@code [{"op": "create", "fileName": "a.txt", "content": "..."}, {"op": "delete", "fileName": "b.txt"}]}.
+     * Created files appear atomically. Each operation succeeds or fails on its own.
+     * @param operations  the operations, applied in order
+     * @param sync        whether to sync the batch to disk before responding
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @return the result of each operation, or 400 if the batch is too large
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<List<BulkResult>> bulk(@RequestBody List<BulkOperation> operations,
+                                                 @RequestParam(defaultValue = "true") boolean sync,
+                                                 @RequestParam(required = false) String workspaceId) {
+        try {
+            return ResponseEntity.ok(fileScoutService.bulk(workspaceId, operations, sync));
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
     /**
      * Deletes duplicate files based on content.
+     * @param verify      whether to confirm content hash matches byte by byte before deleting
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
      * @return a response indicating success or failure
      */
     @DeleteMapping("/deleteDuplicates")
-    public ResponseEntity<String> deleteDuplicates() {
+    public ResponseEntity<String> deleteDuplicates(@RequestParam(defaultValue = "false") boolean verify, @RequestParam(required = false) String workspaceId) {
         try {
-            fileScoutService.deleteDuplicates();
+            fileScoutService.deleteDuplicates(workspaceId, verify);
             return ResponseEntity.ok("Duplicate files deleted successfully");
         }
         catch (Exception e) {
@@ -97,36 +295,475 @@ public class FileScoutController {
         }
     }
 
+    /**
+     * Finds clusters of nearly identical files.
+     * @param threshold   the lowest estimated Jaccard similarity of the files' word shingles
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @return the clusters, or 400 if the threshold is not above 0 and at most 1
+     */
+    @GetMapping("/nearDuplicates")
+    public ResponseEntity<List<NearDuplicateCluster>> nearDuplicates(@RequestParam(defaultValue = "0.9") double threshold,
+                                                                     @RequestParam(required = false) String workspaceId) {
+        return findNearDuplicates(threshold, false, workspaceId);
+    }
+
+    /**
+     * Deletes the copies of the first file of each cluster of nearly identical files: the members at least
+     * as similar to it as the threshold. Members only linked to it through other members are kept.
+     * @param threshold   the lowest estimated Jaccard similarity of the files' word shingles
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @return the clusters whose copies were deleted, or 400 if the threshold is not above 0 and at most 1
+     */
+    @DeleteMapping("/nearDuplicates")
+    public ResponseEntity<List<NearDuplicateCluster>> deleteNearDuplicates(@RequestParam(defaultValue = "0.9") double threshold,
+                                                                           @RequestParam(required = false) String workspaceId) {
+        return findNearDuplicates(threshold, true, workspaceId);
+    }
+
+    private ResponseEntity<List<NearDuplicateCluster>> findNearDuplicates(double threshold, boolean delete, String workspaceId) {
+        try {
+            return ResponseEntity.ok(fileScoutService.nearDuplicates(workspaceId, threshold, delete));
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
     /**
      * Searches for files containing the specified keyword.
-     * @param keyword the keyword to search for
+     * The result has an ETag that changes with the directory's files; a request whose If-None-Match
+     * holds the current one gets 304, and repeated searches are served from the response cache.
+     * @param keyword     the keyword to search for
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @param ifNoneMatch the ETags of the results the client already has
      * @return a list of file names containing the keyword
      */
     @GetMapping("/keywordSearch")
-    public ResponseEntity<List<String>> keywordSearch(@RequestParam String keyword) {
+    public ResponseEntity<byte[]> keywordSearch(@RequestParam String keyword, @RequestParam(required = false) String workspaceId,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            List<String> results = fileScoutService.keywordSearch(keyword);
-            return ResponseEntity.ok(results);
+            return cachedResponse(scope(workspaceId, "keywordSearch", keyword), fileScoutService.version(workspaceId), ifNoneMatch,
+                    new HttpHeaders(), headers -> objectMapper.writeValueAsBytes(fileScoutService.keywordSearch(workspaceId, keyword)));
         }
         catch (Exception e) {
             return ResponseEntity.status(500).body(null);
         }
     }
 
+    /**
+     * Streams the names of the files containing the specified keyword as newline-delimited JSON,
+     * one JSON string per line as soon as each file is found.
+     * @param keyword     the keyword to search for
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @return a stream of file names containing the keyword
+     */
+    @GetMapping(value = "/keywordSearch/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamKeywordSearch(@RequestParam String keyword, @RequestParam(required = false) String workspaceId) {
+        StreamingResponseBody body = out -> {
+            NdjsonWriter writer = new NdjsonWriter(out, objectMapper);
+            try {
+                fileScoutService.keywordSearch(workspaceId, keyword, writer::write, writer.cancelled());
+            }
+            catch (Exception e) {
+                writeError(writer, e);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Searches the files with a query of the given type: {@code literal}, {@code phrase},
+     * {@code boolean} (terms with AND, OR, NOT, -term and "quoted text") or {@code regex}.
+     * If more files match than the limit, the X-Search-Truncated header is true.
+     * Results are versioned and cached like those of {@link #keywordSearch}.
+     * @param keyword     the text of the query
+     * @param type        the type of the query
+     * @param ignoreCase  whether matching ignores case
+     * @param limit       the maximum number of files to return; 0 for no limit
+     * @param snippets    the maximum number of snippets to return per file
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @param ifNoneMatch the ETags of the results the client already has
+     * @return the matching files with their match counts and snippets, 400 if the query is invalid
+     */
+    @GetMapping(value = "/keywordSearch", params = "type")
+    public ResponseEntity<byte[]> search(@RequestParam String keyword, @RequestParam String type,
+                                         @RequestParam(defaultValue = "false") boolean ignoreCase,
+                                         @RequestParam(defaultValue = "100") int limit,
+                                         @RequestParam(defaultValue = "3") int snippets,
+                                         @RequestParam(required = false) String workspaceId,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            SearchQuery query = SearchQuery.of(type, keyword, ignoreCase, limit, snippets);
+            String scope = scope(workspaceId, "search", query.type(), query.text(), query.ignoreCase(), query.limit(), query.maxSnippets());
+            return cachedResponse(scope, fileScoutService.version(workspaceId), ifNoneMatch, new HttpHeaders(), headers -> {
+                AtomicBoolean truncated = new AtomicBoolean();
+                List<SearchHit> results = fileScoutService.search(workspaceId, query, truncated);
+                headers.put(TRUNCATED_HEADER, String.valueOf(truncated.get()));
+                return objectMapper.writeValueAsBytes(results);
+            });
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    /**
+     * Streams the files matching a query as newline-delimited JSON, one line per file as soon as it
+     * has been scanned. If more files match than the limit, the last line is {@code {"truncated": true}}.
+     * @param keyword     the text of the query
+     * @param type        the type of the query, see {@link #search}
+     * @param ignoreCase  whether matching ignores case
+     * @param limit       the maximum number of files to return; 0 for no limit
+     * @param snippets    the maximum number of snippets to return per file
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @return a stream of matching files, or 400 if the query is invalid
+     */
+    @GetMapping(value = "/keywordSearch/stream", params = "type", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSearch(@RequestParam String keyword, @RequestParam String type,
+                                                              @RequestParam(defaultValue = "false") boolean ignoreCase,
+                                                              @RequestParam(defaultValue = "100") int limit,
+                                                              @RequestParam(defaultValue = "3") int snippets,
+                                                              @RequestParam(required = false) String workspaceId) {
+        SearchQuery query;
+        try {
+            query = SearchQuery.of(type, keyword, ignoreCase, limit, snippets);
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> {
+            NdjsonWriter writer = new NdjsonWriter(out, objectMapper);
+            try {
+                if (fileScoutService.search(workspaceId, query, writer::write, writer.cancelled())) {
+                    writer.write(Map.of("truncated", true));
+                }
+            }
+            catch (Exception e) {
+                writeError(writer, e);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     /**
      * Counts words in a file using the specified number of threads.
-     * @param fileName   the name of the file to count words in
-     * @param numThreads the number of threads to use
-     * @return a list of word counts
+     * @param fileName     the name of the file to count words in
+     * @param numThreads   the number of threads to use
+     * @param topK         the number of top words to return
+     * @param memoryMapped whether to memory-map the file and count byte ranges in parallel
+     * @param approximate  whether to estimate the top words within a fixed memory budget
+     * @param workspaceId  the id of the workspace, or the most recently loaded one if omitted
+     * @param ifNoneMatch  the ETags of the counts the client already has
+     * @return a list of word counts, with an ETag that changes with the file's modification time and size;
+     *         the partial counts with X-Partial-Results set and no ETag if the count timed out;
+     *         400 if topK is not between 1 and {@value WordCountOptions#MAX_TOP_K}
      */
     @GetMapping("/countWords")
-    public ResponseEntity<List<String>> countWords(@RequestParam String fileName, @RequestParam int numThreads) {
+    public ResponseEntity<byte[]> countWords(@RequestParam String fileName, @RequestParam int numThreads,
+                                             @RequestParam(defaultValue = "10") int topK,
+                                             @RequestParam(defaultValue = "false") boolean memoryMapped,
+                                             @RequestParam(defaultValue = "false") boolean approximate,
+                                             @RequestParam(required = false) String workspaceId,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            WordCountOptions options = new WordCountOptions(topK, memoryMapped, approximate);
+            String scope = scope(workspaceId, "countWords", fileName, numThreads, topK, memoryMapped, approximate);
+            try {
+                return cachedResponse(scope, fileScoutService.fileVersion(workspaceId, fileName), ifNoneMatch, new HttpHeaders(),
+                        headers -> objectMapper.writeValueAsBytes(fileScoutService.countWords(workspaceId, fileName, numThreads, options)));
+            }
+            catch (WordCountTruncatedException e) {
+                // Partial counts are neither cached nor tagged, so the next request counts the file again.
+                HttpHeaders headers = new HttpHeaders();
+                headers.set(PARTIAL_HEADER, "true");
+                headers.setContentType(MediaType.APPLICATION_JSON);
+                return new ResponseEntity<>(objectMapper.writeValueAsBytes(FileScoutService.format(e.getPartialCounts())), headers, HttpStatus.OK);
+            }
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    /**
+     * Counts words across every text file of the loaded directory. Only files changed since the last
+     * corpus count are read again.
+     * @param topK        the number of top words to return
+     * @param workspaceId the id of the workspace, or the most recently loaded one if omitted
+     * @return a list of word counts, 400 if topK is not between 1 and {@value WordCountOptions#MAX_TOP_K}
+     */
+    @GetMapping("/countWords/corpus")
+    public ResponseEntity<List<String>> countCorpusWords(@RequestParam(defaultValue = "10") int topK,
+                                                         @RequestParam(required = false) String workspaceId) {
         try {
-            List<String> results = fileScoutService.countWords(fileName, numThreads);
-            return ResponseEntity.ok(results);
+            return ResponseEntity.ok(fileScoutService.countCorpusWords(workspaceId, WordCountOptions.checkTopK(topK)));
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
         }
         catch (Exception e) {
             return ResponseEntity.status(500).body(null);
         }
     }
+
+    /**
+     * Streams the word counts of a file as newline-delimited JSON. While the count runs, a progress
+     * object with bytesCounted, totalBytes and progress (between 0 and 1) is written every half second;
+     * once it completes, the word counts follow, one "word: count" string per line. If the client
+     * disconnects, the count is stopped.
+     * @param fileName     the name of the file to count words in
+     * @param numThreads   the number of threads to use
+     * @param topK         the number of top words to return
+     * @param memoryMapped whether to memory-map the file and count byte ranges in parallel
+     * @param approximate  whether to estimate the top words within a fixed memory budget
+     * @param workspaceId  the id of the workspace, or the most recently loaded one if omitted
+     * @return a stream of word counts, 400 if topK is not between 1 and {@value WordCountOptions#MAX_TOP_K}
+     */
+    @GetMapping(value = "/countWords/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamCountWords(@RequestParam String fileName, @RequestParam int numThreads,
+                                                                  @RequestParam(defaultValue = "10") int topK,
+                                                                  @RequestParam(defaultValue = "false") boolean memoryMapped,
+                                                                  @RequestParam(defaultValue = "false") boolean approximate,
+                                                                  @RequestParam(required = false) String workspaceId) {
+        WordCountOptions options;
+        try {
+            options = new WordCountOptions(topK, memoryMapped, approximate);
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        StreamingResponseBody body = out -> {
+            NdjsonWriter writer = new NdjsonWriter(out, objectMapper);
+            AtomicLong bytesCounted = new AtomicLong();
+            FutureTask<List<String>> count = new FutureTask<>(
+                    () -> fileScoutService.countWords(workspaceId, fileName, numThreads, options, bytesCounted));
+            Thread counter = Thread.ofVirtual().start(count);
+            try {
+                long totalBytes = fileScoutService.getFile(workspaceId, fileName).length();
+                List<String> results = null;
+                while (results == null) {
+                    try {
+                        results = count.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    }
+                    catch (TimeoutException e) {
+                        writer.write(progress(bytesCounted.get(), totalBytes));
+                    }
+                }
+                for (String result : results) {
+                    writer.write(result);
+                }
+            }
+            catch (ExecutionException e) {
+                writeError(writer, e.getCause() instanceof Exception cause ? cause : e);
+            }
+            catch (Exception e) {
+                writeError(writer, e);
+            }
+            finally {
+                // Stops a count whose client went away; it ends with a WordCountTruncatedException no one reads.
+                counter.interrupt();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Starts counting words in a file in the background. Poll the returned job for its progress and
+     * fetch its result once its state is SUCCEEDED.
+     * @param fileName     the name of the file to count words in
+     * @param numThreads   the number of threads to use
+     * @param topK         the number of top words to return
+     * @param memoryMapped whether to memory-map the file and count byte ranges in parallel
+     * @param approximate  whether to estimate the top words within a fixed memory budget
+     * @param workspaceId  the id of the workspace, or the most recently loaded one if omitted
+     * @return the status of the new job, 400 if topK is not between 1 and {@value WordCountOptions#MAX_TOP_K}
+     */
+    @PostMapping("/countWords/jobs")
+    public ResponseEntity<Map<String, Object>> submitCountWordsJob(@RequestParam String fileName, @RequestParam int numThreads,
+                                                                   @RequestParam(defaultValue = "10") int topK,
+                                                                   @RequestParam(defaultValue = "false") boolean memoryMapped,
+                                                                   @RequestParam(defaultValue = "false") boolean approximate,
+                                                                   @RequestParam(required = false) String workspaceId) {
+        try {
+            WordCountOptions options = new WordCountOptions(topK, memoryMapped, approximate);
+            WordCountJob job = wordCountJobs.submit(workspaceId, fileName, numThreads, options);
+            return ResponseEntity.accepted().body(job.status());
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Gets the status and progress of a word count job.
+     * @param jobId the id of the job
+     * @return the status of the job, or 404 if there is no such job
+     */
+    @GetMapping("/countWords/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getCountWordsJob(@PathVariable String jobId) {
+        WordCountJob job = wordCountJobs.get(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job.status());
+    }
+
+    /**
+     * Gets the word counts of a succeeded word count job.
+     * @param jobId the id of the job
+     * @return a list of word counts, 404 if there is no such job, or 409 if the job has not succeeded
+     */
+    @GetMapping("/countWords/jobs/{jobId}/result")
+    public ResponseEntity<List<String>> getCountWordsJobResult(@PathVariable String jobId) {
+        WordCountJob job = wordCountJobs.get(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getState() != WordCountJob.State.SUCCEEDED) {
+            return ResponseEntity.status(409).body(null);
+        }
+        return ResponseEntity.ok(job.getResult());
+    }
+
+    /**
+     * Cancels a running word count job.
+     * @param jobId the id of the job
+     * @return the status of the job, or 404 if there is no such job
+     */
+    @DeleteMapping("/countWords/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> cancelCountWordsJob(@PathVariable String jobId) {
+        WordCountJob job = wordCountJobs.cancel(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job.status());
+    }
+
+    /**
+     * Builds the response for a byte range of a file, streaming the range as its body.
+     * @param range   the range
+     * @param headers any further headers of the response
+     * @return 200 if the range is the whole file, otherwise 206 with a Content-Range header
+     */
+    private ResponseEntity<StreamingResponseBody> rangeResponse(FileRange range, HttpHeaders headers) {
+        headers.setContentType(TEXT_PLAIN_UTF8);
+        headers.setContentLength(range.length());
+        if (range.isWholeFile()) {
+            return new ResponseEntity<>(range::transferTo, headers, HttpStatus.OK);
+        }
+        headers.set(HttpHeaders.CONTENT_RANGE, range.length() == 0
+                ? "bytes */" + range.fileSize()
+                : "bytes " + range.start() + "-" + (range.end() - 1) + "/" + range.fileSize());
+        return new ResponseEntity<>(range::transferTo, headers, HttpStatus.PARTIAL_CONTENT);
+    }
+
+    /**
+     * Identifies the response of a read endpoint: the workspace's directory, the endpoint and its parameters.
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param endpoint    the name of the endpoint
+     * @param params      the parameters the response depends on
+     * @return the scope of the response in the response cache
+     * @throws Exception if no directory was loaded or the workspace is unknown
+     */
+    private String scope(String workspaceId, String endpoint, Object... params) throws Exception {
+        return fileScoutService.directoryOf(workspaceId) + "\n" + endpoint + "\n" + objectMapper.writeValueAsString(params);
+    }
+
+    /**
+     * Answers a read request with the response of the current version. If the client already has it,
+     * 304 is returned without computing it; otherwise it is served from the response cache, and
+     * computed and cached on a miss. Without a version, the response is computed and not cached.
+     * @param scope       the directory, endpoint and parameters of the response
+     * @param version     the current version of the directory or file, or null if there is none
+     * @param ifNoneMatch the If-None-Match header of the request, or null
+     * @param headers     any further headers of the response
+     * @param loader      computes the JSON body of the response and its headers
+     * @return 304 with the ETag, or 200 with the ETag and the body
+     * @throws Exception if the response cannot be computed
+     */
+    private ResponseEntity<byte[]> cachedResponse(String scope, String version, String ifNoneMatch, HttpHeaders headers,
+                                                  ResponseCache.Loader loader) throws Exception {
+        if (version == null) {
+            Map<String, String> loadedHeaders = new LinkedHashMap<>();
+            byte[] body = loader.load(loadedHeaders);
+            loadedHeaders.forEach(headers::set);
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            return new ResponseEntity<>(body, headers, HttpStatus.OK);
+        }
+        ResponseCache.Entry entry = responseCache.get(scope, version);
+        String etag = entry != null ? entry.etag() : ResponseCache.etag(scope, version);
+        headers.setETag(etag);
+        if (isNotModified(ifNoneMatch, etag)) {
+            if (entry != null) {
+                entry.headers().forEach(headers::set);
+            }
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+        if (entry == null) {
+            entry = responseCache.get(scope, version, loader);
+        }
+        entry.headers().forEach(headers::set);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new ResponseEntity<>(entry.body(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Checks if the client already has the current response, comparing entity tags weakly.
+     * @param ifNoneMatch the If-None-Match header of the request, or null
+     * @param etag        the ETag of the current response
+     * @return true if the header lists the ETag or is {@code *}
+     */
+    private static boolean isNotModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds a progress line of a word count stream.
+     * @param bytesCounted the number of bytes counted so far
+     * @param totalBytes   the size of the file
+     * @return the bytes counted, the size and the fraction counted, between 0 and 1
+     */
+    private static Map<String, Object> progress(long bytesCounted, long totalBytes) {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("bytesCounted", Math.min(bytesCounted, totalBytes));
+        progress.put("totalBytes", totalBytes);
+        progress.put("progress", totalBytes == 0 ? 1.0 : Math.min(1.0, (double) bytesCounted / totalBytes));
+        return progress;
+    }
+
+    /**
+     * Reports a failure at the end of a stream whose status line has already been sent.
+     * Nothing is written if the failure was the client disconnecting.
+     * @param writer the writer of the stream
+     * @param e      the failure
+     */
+    private void writeError(NdjsonWriter writer, Exception e) {
+        if (!writer.cancelled().get()) {
+            writer.write(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+package dev.harshaan.FileScout;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Records the FileScout-specific meters, exposed with the rest of the application's metrics through
+ * the Actuator Prometheus endpoint. Per-endpoint latency comes from Spring's {@code http.server.requests};
+ * these meters break the work of an operation down further:
+ * <ul>
+ *     <li>{@code filescout.stage}: time per stage of an operation (list, read, tokenize, merge, sort, ...);</li>
+ *     <li>{@code filescout.bytes.read} and {@code filescout.files.processed}: work done per operation;</li>
+ *     <li>{@code filescout.results.truncated}: operations that gave up and returned partial results;</li>
+ *     <li>{@code filescout.operations.failed}: operations that failed and returned no results;</li>
+ *     <li>gauges registered by the components that own a pool, e.g. its queue depth and active threads.</li>
+ * </ul>
+ */
+@Component
+public class FileScoutMetrics {
+    private final MeterRegistry registry;
+
+    /**
+     * Constructs metrics that are recorded in memory only, for use outside the application, e.g. in benchmarks.
+     */
+    public FileScoutMetrics() {
+        this(new SimpleMeterRegistry());
+    }
+
+    /**
+     * Constructs metrics recorded to the specified registry.
+     *
+     * @param registry the registry to record to
+     */
+    @Autowired
+    public FileScoutMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Starts timing a stage.
+     *
+     * @return the sample to pass to {@link #stop(Timer.Sample, String, String)} when the stage ends
+     */
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * Records the time of a stage since the sample was started.
+     *
+     * @param sample    the sample returned by {@link #start()}
+     * @param operation the operation the stage belongs to, e.g. "loadFiles"
+     * @param stage     the stage, e.g. "read"
+     */
+    public void stop(Timer.Sample sample, String operation, String stage) {
+        sample.stop(Timer.builder("filescout.stage")
+                .description("Time spent in one stage of a FileScout operation")
+                .tag("operation", operation)
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    /**
+     * Records bytes read from disk by an operation.
+     *
+     * @param operation the operation that read the bytes
+     * @param bytes     the number of bytes read
+     */
+    public void bytesRead(String operation, long bytes) {
+        Counter.builder("filescout.bytes.read")
+                .description("Bytes read from disk")
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .register(registry)
+                .increment(bytes);
+    }
+
+    /**
+     * Records files processed by an operation.
+     *
+     * @param operation the operation that processed the files
+     * @param count     the number of files processed
+     */
+    public void filesProcessed(String operation, long count) {
+        Counter.builder("filescout.files.processed")
+                .description("Files processed")
+                .tag("operation", operation)
+                .register(registry)
+                .increment(count);
+    }
+
+    /**
+     * Records that an operation timed out or was interrupted and returned partial results.
+     *
+     * @param operation the operation that was truncated
+     */
+    public void truncated(String operation) {
+        Counter.builder("filescout.results.truncated")
+                .description("Operations that returned partial results after a timeout or interruption")
+                .tag("operation", operation)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Records that an operation failed and returned no results instead of its error.
+     *
+     * @param operation the operation that failed
+     */
+    public void failed(String operation) {
+        Counter.builder("filescout.operations.failed")
+                .description("Operations that failed and returned no results")
+                .tag("operation", operation)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Registers a gauge that samples the specified value whenever metrics are scraped.
+     *
+     * @param name        the name of the gauge
+     * @param description what the gauge measures
+     * @param value       supplies the current value
+     */
+    public void gauge(String name, String description, Supplier<Number> value) {
+        Gauge.builder(name, value)
+                .description(description)
+                .register(registry);
+    }
+}
\ No newline at end of file
@@ -1,199 +1,822 @@
 package dev.harshaan.FileScout;
 
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.util.*;
-import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Service for managing files in a specified directory.
+ * Service for managing files in loaded directories.
+ * Every loaded directory is a {@link Workspace}; all operations name the workspace they work on,
+ * or use the most recently loaded one when the workspace id is null.
  */
 @Service
 public class FileScoutService {
-    private static final List<String> TEXT_FILE_EXTENSIONS = Arrays.asList("txt", "md");
-    private final WordCounterService wordCounterService = new WordCounterService();
-    private String directoryPath;
+    private static final Logger logger = Logger.getLogger(FileScoutService.class.getName());
+    static final int MAX_BATCH_OPERATIONS = 10_000;
+
+    private final WordCounterService wordCounterService;
+    private final FileScoutMetrics metrics;
+    private final WorkspaceRegistry workspaces;
+    private final SearchEngine searchEngine;
+    private final BulkWriter bulkWriter;
+    private final DuplicateFinder duplicateFinder = new DuplicateFinder();
+    private final NearDuplicateFinder nearDuplicateFinder = new NearDuplicateFinder();
+    private final DirectoryLoader directoryLoader = new DirectoryLoader(DirectoryLoader.DEFAULT_MAX_CONCURRENCY);
+
+    /**
+     * Constructs a service whose metrics are recorded in memory only.
+     */
+    public FileScoutService() {
+        this(new WordCounterService(), new FileScoutMetrics(), new WorkspaceRegistry());
+    }
+
+    /**
+     * Constructs a service.
+     *
+     * @param wordCounterService the service that counts the words of a file
+     * @param metrics            the metrics to record operation stages to
+     * @param workspaces         the registry of loaded directories
+     */
+    @Autowired
+    public FileScoutService(WordCounterService wordCounterService, FileScoutMetrics metrics, WorkspaceRegistry workspaces) {
+        this.wordCounterService = wordCounterService;
+        this.metrics = metrics;
+        this.workspaces = workspaces;
+        this.searchEngine = new SearchEngine(metrics);
+        this.bulkWriter = new BulkWriter(metrics);
+    }
+
+    /**
+     * Opens the workspace of a directory, reusing it if the directory was loaded before.
+     *
+     * @param directoryPath the URL-encoded path of the directory
+     * @return the id of the workspace
+     */
+    public String openWorkspace(String directoryPath) {
+        return workspaces.open(directoryPath).getId();
+    }
+
+    /**
+     * Opens the workspace of a directory to answer for one shard of it in cluster mode, see {@link ClusterService}.
+     * The workspace's load options become the shard's, and the shard's files are loaded unless the
+     * workspace's watcher already follows them, so searches and counts only read this shard's files.
+     *
+     * @param directoryPath the URL-encoded path of the directory
+     * @param options       the depth and extensions of the files, and the shard
+     * @return the id of the workspace
+     * @throws Exception if the directory cannot be loaded
+     */
+    public String openShard(String directoryPath, DirectoryLoadOptions options) throws Exception {
+        String workspaceId = openWorkspace(directoryPath);
+        if (catalogVersion(workspaceId, options) == null) {
+            loadFiles(workspaceId, options, new AtomicBoolean());
+        }
+        return workspaceId;
+    }
+
+    /**
+     * Resolves the id of the workspace an operation would use.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @return the id of the workspace
+     * @throws Exception if no directory was loaded or the workspace is unknown
+     */
+    public String resolveWorkspace(String workspaceId) throws Exception {
+        return workspaces.get(workspaceId).getId();
+    }
+
+    /**
+     * Lists the open workspaces.
+     *
+     * @return the id and directory path of each workspace
+     */
+    public List<Map<String, Object>> listWorkspaces() {
+        return workspaces.list();
+    }
+
+    /**
+     * Gets the directory of the workspace an operation would use.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @return the decoded path of the directory
+     * @throws Exception if no directory was loaded or the workspace is unknown
+     */
+    public String directoryOf(String workspaceId) throws Exception {
+        return workspaces.get(workspaceId).getDirectoryPath();
+    }
+
+    /**
+     * Gets the version of a workspace's text files from its watcher, without touching the disk.
+     * The workspace's load options are not changed; a watcher only ever watches with the options of the
+     * last load, so a version for other options is only found once a load with them completes.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param options     the depth and extensions of a load, or null for those of the last load
+     * @return the version, or null if the directory is not watched with the options
+     * @throws Exception if no directory was loaded or the workspace is unknown
+     */
+    public String catalogVersion(String workspaceId, DirectoryLoadOptions options) throws Exception {
+        return workspaces.get(workspaceId).read(workspace -> workspace.version(options != null ? options : workspace.getLoadOptions()));
+    }
 
     /**
-     * Loads text files from the specified directory.
+     * Gets a version of a workspace's text files that changes whenever a file is added, changed or deleted.
+     * The watcher's version is used when it is current; otherwise the directory is walked and the version
+     * is a fingerprint of each file's name, modification time and size. File contents are never read.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @return the version, or null if the directory does not exist
+     * @throws Exception if no directory was loaded, the workspace is unknown or the directory cannot be walked
+     */
+    public String version(String workspaceId) throws Exception {
+        return workspaces.get(workspaceId).read(workspace -> {
+            String version = workspace.version(workspace.getLoadOptions());
+            if (version != null) {
+                return version;
+            }
+            File directory = workspace.getRoot().toFile();
+            if (!directory.isDirectory()) {
+                return null;
+            }
+            Timer.Sample list = metrics.start();
+            List<String> entries = directoryLoader.load(directory.toPath(), workspace.getLoadOptions(),
+                    (file, relativeName) -> relativeName + '\0' + file.lastModified() + '\0' + file.length(), new AtomicBoolean());
+            Collections.sort(entries);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String entry : entries) {
+                digest.update(entry.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            metrics.stop(list, "version", "list");
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        });
+    }
+
+    /**
+     * Gets a version of a file of a workspace's directory from its modification time and size.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param fileName    the name of the file, relative to the directory
+     * @return the version, or null if the file does not exist
+     * @throws Exception if no directory was loaded or the workspace is unknown
+     */
+    public String fileVersion(String workspaceId, String fileName) throws Exception {
+        File file = getFile(workspaceId, fileName);
+        return file.isFile() ? file.lastModified() + ":" + file.length() : null;
+    }
+
+    /**
+     * Loads text files directly inside the specified directory, see
+     * {@link #loadFiles(String, DirectoryLoadOptions, AtomicBoolean)}.
      *
      * @param directoryPath the path of the directory to load files from
      * @return a list of file details, including file name, word count, and character count
      */
     public List<Map<String, Object>> loadFilesFromDirectory(String directoryPath) {
+        return loadFiles(openWorkspace(directoryPath), DirectoryLoadOptions.DEFAULTS, new AtomicBoolean());
+    }
+
+    /**
+     * Loads the matching files of a workspace's directory tree and brings its keyword index up to date.
+     * Files are processed in parallel on virtual threads. Word and character counts come from the
+     * workspace's stats cache, so unchanged files are not read. Once a load completes the directory is
+     * watched, and later loads with the same options are answered from the watcher's catalog without
+     * walking the directory, under the workspace's read lock. A load that walks the directory changes the
+     * workspace's load options and replaces its watcher, so it holds the write lock and runs alone.
+     *
+     * @param workspaceId the id of the workspace, see {@link #openWorkspace(String)}
+     * @param options     the depth and extensions of the files to load
+     * @param cancelled   set to true to abandon the load, e.g. when the client disconnects
+     * @return a list of file details, including file name (relative to the directory), word count, and character count
+     */
+    public List<Map<String, Object>> loadFiles(String workspaceId, DirectoryLoadOptions options, AtomicBoolean cancelled) {
         try {
-            String decodedPath = URLDecoder.decode(directoryPath, StandardCharsets.UTF_8);
-            this.directoryPath = decodedPath;
-            File directory = new File(decodedPath);
+            Workspace loaded = workspaces.get(workspaceId);
             List<Map<String, Object>> fileDetailsList = new ArrayList<>();
-            if (directory.isDirectory()) {
-                File[] files = directory.listFiles();
-                if (files != null) {
-                    for (File file : files) {
-                        if (isTextFile(file)) {
-                            Map<String, Object> fileDetails = new HashMap<>();
-                            EditableFile editableFile = new EditableFile(file.getAbsolutePath());
-                            fileDetails.put("fileName", file.getName());
-                            fileDetails.put("wordCount", editableFile.getWordCount());
-                            fileDetails.put("charCount", editableFile.getCharCount());
-                            fileDetailsList.add(fileDetails);
-                        }
-                    }
-                }
+            if (loaded.read(workspace -> fromCatalog(workspace, options, fileDetailsList::add, cancelled))) {
+                return fileDetailsList;
             }
-            return fileDetailsList;
+            return loaded.write(workspace -> {
+                // Another load with the same options may have completed while this one waited for the lock.
+                if (fromCatalog(workspace, options, fileDetailsList::add, cancelled)) {
+                    return fileDetailsList;
+                }
+                workspace.setLoadOptions(options);
+                if (!workspace.getRoot().toFile().isDirectory()) {
+                    return Collections.<Map<String, Object>>emptyList();
+                }
+
+                DirectoryWatcher watcher = workspace.watch(options);
+                Set<String> loadedNames = ConcurrentHashMap.newKeySet();
+                List<Map<String, Object>> walked = directoryLoader.load(workspace.getRoot(), options,
+                        (file, relativeName) -> fileDetails(workspace, file, relativeName, loadedNames), cancelled);
+                walked.removeIf(Objects::isNull);
+                finishLoad(workspace, watcher, loadedNames);
+                return walked;
+            });
+        }
+        catch (CancellationException e) {
+            logger.fine("Directory load cancelled: " + workspaceId);
+            return Collections.emptyList();
         }
         catch (Exception e) {
-            e.printStackTrace();
+            logger.log(Level.SEVERE, "Failed to load the files of workspace " + workspaceId, e);
+            metrics.failed("loadFiles");
             return Collections.emptyList();
         }
     }
 
     /**
-     * Checks if a file is a text file based on its extension.
+     * Loads the matching files of a workspace's directory tree like
+     * {@link #loadFiles(String, DirectoryLoadOptions, AtomicBoolean)}, but hands each file's details
+     * to the consumer as soon as they are computed, in completion order.
+     *
+     * @param workspaceId the id of the workspace, see {@link #openWorkspace(String)}
+     * @param options     the depth and extensions of the files to load
+     * @param consumer    receives the details of each file; called from several threads
+     * @param cancelled   set to true to abandon the load, e.g. when the client disconnects
+     * @throws Exception if the directory cannot be walked or the load is cancelled
+     */
+    public void streamFiles(String workspaceId, DirectoryLoadOptions options,
+                            Consumer<Map<String, Object>> consumer, AtomicBoolean cancelled) throws Exception {
+        Workspace loaded = workspaces.get(workspaceId);
+        if (loaded.read(workspace -> fromCatalog(workspace, options, consumer, cancelled))) {
+            return;
+        }
+        loaded.write(workspace -> {
+            if (fromCatalog(workspace, options, consumer, cancelled)) {
+                return null;
+            }
+            workspace.setLoadOptions(options);
+            if (!workspace.getRoot().toFile().isDirectory()) {
+                return null;
+            }
+
+            DirectoryWatcher watcher = workspace.watch(options);
+            Set<String> loadedNames = ConcurrentHashMap.newKeySet();
+            directoryLoader.stream(workspace.getRoot(), options,
+                    (file, relativeName) -> fileDetails(workspace, file, relativeName, loadedNames),
+                    fileDetails -> {
+                        if (fileDetails != null) {
+                            consumer.accept(fileDetails);
+                        }
+                    }, cancelled);
+            finishLoad(workspace, watcher, loadedNames);
+            return null;
+        });
+    }
+
+    /**
+     * Hands the details of a workspace's files to the consumer from its watcher's catalog, if the
+     * directory is watched with the options. The workspace's load options then already are the options,
+     * so this only needs the workspace's read lock.
+     *
+     * @param workspace the workspace being loaded
+     * @param options   the depth and extensions of the files to load
+     * @param consumer  receives the details of each file
+     * @param cancelled set to true to abandon the load
+     * @return true if the catalog was used, false if the directory must be walked
+     * @throws CancellationException if the load was cancelled
+     */
+    private boolean fromCatalog(Workspace workspace, DirectoryLoadOptions options,
+                                Consumer<Map<String, Object>> consumer, AtomicBoolean cancelled) {
+        List<File> catalog = workspace.catalog(options);
+        if (catalog == null) {
+            return false;
+        }
+        Timer.Sample read = metrics.start();
+        for (File file : catalog) {
+            if (cancelled.get()) {
+                throw new CancellationException("Directory load cancelled: " + workspace.getDirectoryPath());
+            }
+            Map<String, Object> fileDetails = catalogDetails(workspace, file);
+            if (fileDetails != null) {
+                consumer.accept(fileDetails);
+            }
+        }
+        metrics.stop(read, "loadFiles", "catalog");
+        return true;
+    }
+
+    /**
+     * Gets the details of one loaded file and brings its index entry up to date.
+     *
+     * @param workspace    the workspace being loaded
+     * @param file         the file
+     * @param relativeName the path of the file relative to the workspace's directory
+     * @param loadedNames  collects the names of the loaded files
+     * @return the file name, word count, and character count of the file, or null if it was deleted before it could be read
+     */
+    private Map<String, Object> fileDetails(Workspace workspace, File file, String relativeName, Set<String> loadedNames) {
+        Timer.Sample read = metrics.start();
+        FileStatsCache.FileStats stats = workspace.getStatsCache().statsOf(file);
+        if (stats == null) {
+            return null;
+        }
+        loadedNames.add(relativeName);
+        workspace.getIndex().refresh(file);
+        metrics.stop(read, "loadFiles", "read");
+        metrics.filesProcessed("loadFiles", 1);
+        return fileDetails(relativeName, stats);
+    }
+
+    /**
+     * Gets the details of a file from the watcher's catalog. The watcher keeps the file's stats and
+     * index entry up to date, so its cached stats are used without checking the file.
+     *
+     * @param workspace the workspace being loaded
+     * @param file      the file
+     * @return the file name, word count, and character count of the file, or null if it was deleted before it could be read
+     */
+    private Map<String, Object> catalogDetails(Workspace workspace, File file) {
+        String relativeName = workspace.relativeName(file);
+        FileStatsCache.FileStats stats = workspace.getStatsCache().get(relativeName);
+        if (stats == null) {
+            stats = workspace.getStatsCache().statsOf(file);
+            if (stats == null) {
+                return null;
+            }
+        }
+        metrics.filesProcessed("loadFiles", 1);
+        return fileDetails(relativeName, stats);
+    }
+
+    private Map<String, Object> fileDetails(String relativeName, FileStatsCache.FileStats stats) {
+        Map<String, Object> fileDetails = new HashMap<>();
+        fileDetails.put("fileName", relativeName);
+        fileDetails.put("wordCount", stats.wordCount());
+        fileDetails.put("charCount", stats.charCount());
+        return fileDetails;
+    }
+
+    /**
+     * Drops index entries of files that were not found by a completed load, saves the sidecars and
+     * seeds the workspace's watcher with the loaded files.
+     *
+     * @param workspace   the workspace that was loaded
+     * @param watcher     the watcher started for the load, or null if the directory is not watched
+     * @param loadedNames the names of the loaded files
+     */
+    private void finishLoad(Workspace workspace, DirectoryWatcher watcher, Set<String> loadedNames) {
+        workspace.getIndex().retainOnly(loadedNames);
+        workspace.getStatsCache().flush();
+        if (watcher != null) {
+            watcher.seed(loadedNames);
+        }
+    }
+
+    /**
+     * Lists the text files of a workspace, with the depth and extensions of its last load.
+     * The watcher's catalog is used when it is current, so the directory is only walked when it is not watched.
+     *
+     * @param workspace the workspace
+     * @param operation the operation the listing is recorded under
+     * @return the text files
+     * @throws Exception if the directory is invalid or cannot be walked
+     */
+    private List<File> listTextFiles(Workspace workspace, String operation) throws Exception {
+        Timer.Sample list = metrics.start();
+        List<File> files = workspace.catalog();
+        if (files != null) {
+            metrics.stop(list, operation, "catalog");
+            return files;
+        }
+        File directory = workspace.getRoot().toFile();
+        if (!directory.exists() || !directory.isDirectory()) {
+            throw new Exception("Invalid directory path");
+        }
+        files = directoryLoader.load(directory.toPath(), workspace.getLoadOptions(), (file, relativeName) -> file, new AtomicBoolean());
+        metrics.stop(list, operation, "list");
+        return files;
+    }
+
+    /**
+     * Gets a file of a workspace's directory.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param fileName    the name of the file, relative to the directory
+     * @return the file
+     * @throws Exception if no directory was loaded or the workspace is unknown
+     */
+    public File getFile(String workspaceId, String fileName) throws Exception {
+        return workspaces.get(workspaceId).read(workspace -> workspace.getFile(fileName));
+    }
+
+    /**
+     * Resolves a byte range of a file. The range is clamped to the file, so reading past its end
+     * returns an empty range.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param fileName    the name of the file, relative to the directory
+     * @param offset      the offset of the first byte to read
+     * @param length      the number of bytes to read
+     * @return the range, to be sent with {@link FileRange#transferTo}
+     * @throws IllegalArgumentException if the offset or length is negative, or the file is outside the directory
+     * @throws Exception                if the directory path is not set or the file does not exist
+     */
+    public FileRange readBytes(String workspaceId, String fileName, long offset, long length) throws Exception {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Offset and length must not be negative");
+        }
+        return workspaces.get(workspaceId).read(workspace -> {
+            File file = existingFile(workspace, fileName);
+            long size = file.length();
+            long start = Math.min(offset, size);
+            return new FileRange(file, start, start + Math.min(length, size - start), size);
+        });
+    }
+
+    /**
+     * Resolves the byte range of a run of lines of a file. The line offsets come from the file's
+     * {@link LineOffsetIndex}, so a page deep into a large file is found without reading up to it.
      *
-     * @param file the file to check
-     * @return true if the file is a text file, false otherwise
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param fileName    the name of the file, relative to the directory
+     * @param fromLine    the number of the first line to read, starting at 1
+     * @param lineCount   the number of lines to read
+     * @return the range, to be sent with {@link FileRange#transferTo}
+     * @throws IllegalArgumentException if the first line is not positive, the line count is negative or the file
+     *                                  is outside the directory
+     * @throws Exception                if the directory path is not set or the file does not exist
      */
-    private boolean isTextFile(File file) {
-        String fileName = file.getName().toLowerCase();
-        int dotIndex = fileName.lastIndexOf('.');
-        if (dotIndex > 0 && dotIndex < fileName.length() - 1) {
-            String extension = fileName.substring(dotIndex + 1);
-            return TEXT_FILE_EXTENSIONS.contains(extension);
+    public FileRange readLines(String workspaceId, String fileName, long fromLine, long lineCount) throws Exception {
+        if (fromLine < 1 || lineCount < 0) {
+            throw new IllegalArgumentException("Lines start at 1 and the line count must not be negative");
         }
-        return false;
+        return workspaces.get(workspaceId).read(workspace -> {
+            File file = existingFile(workspace, fileName);
+            Timer.Sample seek = metrics.start();
+            LineOffsetIndex lineIndex = workspace.lineIndex(fileName);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long start = lineIndex.offsetOf(channel, fromLine);
+                long end = lineIndex.offsetOf(channel, fromLine + Math.min(lineCount, Long.MAX_VALUE - fromLine));
+                metrics.stop(seek, "readFile", "seek");
+                return new FileRange(file, start, end, lineIndex.size());
+            }
+        });
     }
 
     /**
-     * Checks if the directory path is set.
+     * Counts the lines of a file, from its {@link LineOffsetIndex}.
      *
-     * @throws Exception if the directory path is not set
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param fileName    the name of the file, relative to the directory
+     * @return the number of lines; a last line without a line break counts as a line
+     * @throws Exception if the directory path is not set or the file does not exist
      */
-    private void checkDirectorySet() throws Exception {
-        if (directoryPath == null) {
-            throw new Exception("Directory path not set");
+    public long countLines(String workspaceId, String fileName) throws Exception {
+        return workspaces.get(workspaceId).read(workspace -> {
+            existingFile(workspace, fileName);
+            return workspace.lineIndex(fileName).lineCount();
+        });
+    }
+
+    private File existingFile(Workspace workspace, String fileName) throws Exception {
+        File file = workspace.getFile(fileName);
+        if (!file.isFile()) {
+            throw new Exception("File not found: " + fileName);
         }
+        return file;
     }
 
     /**
-     * Creates a new file with the specified content in the set directory.
+     * Creates a new file with the specified content in a workspace's directory, replacing any existing file.
+     * The content is written to a temporary file and moved into place, see {@link BulkWriter}.
      *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
      * @param fileName    the name of the file to create
      * @param fileContent the content to write to the file
-     * @throws Exception if the directory path is not set or an error occurs during file creation
+     * @throws IllegalArgumentException if the file is outside the directory
+     * @throws Exception                if the directory path is not set or an error occurs during file creation
      */
-    public void createFile(String fileName, String fileContent) throws Exception {
-        checkDirectorySet();
-        File file = new File(directoryPath, fileName);
-        try (FileWriter writer = new FileWriter(file)) {
-            writer.write(fileContent);
-        }
+    public void createFile(String workspaceId, String fileName, String fileContent) throws Exception {
+        applyOne(workspaceId, new BulkOperation(BulkOperation.Type.CREATE, fileName, fileContent));
     }
 
     /**
-     * Writes content to an existing file in the set directory.
+     * Writes content to an existing file in a workspace's directory.
+     * The file's cached counts are updated from the appended content alone, and its keyword index entry is
+     * only marked as changed, so the write does not re-read the file; the index reads it once before the
+     * next keyword search.
      *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
      * @param fileName    the name of the file to write to
      * @param fileContent the content to write to the file
-     * @throws Exception if the directory path is not set or an error occurs during file writing
+     * @throws IllegalArgumentException if the file is outside the directory
+     * @throws Exception                if the directory path is not set or an error occurs during file writing
      */
-    public void writeFile(String fileName, String fileContent) throws Exception {
-        checkDirectorySet();
-        EditableFile editableFile = new EditableFile(directoryPath + File.separator + fileName);
-        editableFile.write(fileContent);
+    public void writeFile(String workspaceId, String fileName, String fileContent) throws Exception {
+        applyOne(workspaceId, new BulkOperation(BulkOperation.Type.APPEND, fileName, fileContent));
     }
 
     /**
-     * Deletes a file in the set directory.
+     * Deletes a file in a workspace's directory.
      *
-     * @param fileName the name of the file to delete
-     * @throws Exception if the directory path is not set or an error occurs during file deletion
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param fileName    the name of the file to delete
+     * @throws IllegalArgumentException if the file is outside the directory
+     * @throws Exception                if the directory path is not set or an error occurs during file deletion
      */
-    public void deleteFile(String fileName) throws Exception {
-        checkDirectorySet();
-        File file = new File(directoryPath, fileName);
-        if (!file.exists() || !file.isFile()) {
-            throw new Exception("File not found: " + fileName);
-        }
-        if (!file.delete()) {
-            throw new Exception("Failed to delete file: " + fileName);
+    public void deleteFile(String workspaceId, String fileName) throws Exception {
+        applyOne(workspaceId, new BulkOperation(BulkOperation.Type.DELETE, fileName, null));
+    }
+
+    private void applyOne(String workspaceId, BulkOperation operation) throws Exception {
+        BulkResult result = workspaces.get(workspaceId).write(workspace -> {
+            workspace.getFile(operation.fileName());
+            return bulkWriter.apply(workspace, List.of(operation), false).get(0);
+        });
+        if (!result.success()) {
+            throw new Exception(result.error());
         }
     }
 
     /**
-     * Deletes duplicate files in the set directory based on file content.
+     * Applies a batch of create, append and delete operations to a workspace's directory under a single
+     * acquisition of its write lock, see {@link BulkWriter}.
      *
-     * @throws Exception if the directory path is not set or an error occurs during file deletion
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param operations  the operations, applied in order
+     * @param sync        whether to sync the written files and directories to disk before returning
+     * @return the result of each operation, in batch order
+     * @throws IllegalArgumentException if the batch has more than {@value #MAX_BATCH_OPERATIONS} operations
+     * @throws Exception                if the directory path is not set
      */
-    public void deleteDuplicates() throws Exception {
-        checkDirectorySet();
-        File directory = new File(directoryPath);
-        if (!directory.exists() || !directory.isDirectory()) {
-            throw new Exception("Invalid directory path");
+    public List<BulkResult> bulk(String workspaceId, List<BulkOperation> operations, boolean sync) throws Exception {
+        if (operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new IllegalArgumentException("A batch may have at most " + MAX_BATCH_OPERATIONS + " operations");
         }
+        return workspaces.get(workspaceId).write(workspace -> bulkWriter.apply(workspace, operations, sync));
+    }
 
-        Map<String, EditableFile> uniqueFiles = new HashMap<>();
-        for (File file : Objects.requireNonNull(directory.listFiles())) {
-            if (file.isFile() && isTextFile(file)) {
-                EditableFile editableFile = new EditableFile(file.getAbsolutePath());
-                String fileContent = editableFile.getContent();
-                if (uniqueFiles.containsKey(fileContent)) {
+    /**
+     * Deletes duplicate files in a workspace's directory based on file content.
+     * The first file of each group of identical files is kept.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param verify      whether to confirm content hash matches byte by byte before deleting
+     * @throws IllegalArgumentException if the file is outside the directory
+     * @throws Exception                if the directory path is not set or an error occurs during file deletion
+     */
+    public void deleteDuplicates(String workspaceId, boolean verify) throws Exception {
+        workspaces.get(workspaceId).write(workspace -> {
+            List<File> files = listTextFiles(workspace, "deleteDuplicates");
+            Timer.Sample hash = metrics.start();
+            List<List<File>> duplicateGroups = duplicateFinder.findDuplicates(files, verify);
+            metrics.stop(hash, "deleteDuplicates", "hash");
+            metrics.filesProcessed("deleteDuplicates", files.size());
+            for (List<File> duplicates : duplicateGroups) {
+                for (File file : duplicates.subList(1, duplicates.size())) {
+                    String fileName = workspace.relativeName(file);
                     if (!file.delete()) {
-                        throw new Exception("Failed to delete duplicate file: " + file.getName());
+                        throw new Exception("Failed to delete duplicate file: " + fileName);
                     }
-                }
-                else {
-                    uniqueFiles.put(fileContent, editableFile);
+                    workspace.getStatsCache().invalidate(fileName);
+                    workspace.getIndex().remove(fileName);
+                    workspace.fileDeleted(fileName);
                 }
             }
+            return null;
+        });
+    }
+
+    /**
+     * Finds clusters of text files in a workspace's directory whose content is nearly the same, see
+     * {@link NearDuplicateFinder}, and optionally deletes the copies of the first file of each cluster.
+     * Only members at least as similar to the first file as the threshold are deleted; members that are
+     * only linked to it through other members are reported but kept. Only files that changed since the
+     * last check are read.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param threshold   the lowest estimated Jaccard similarity of the files' word shingles
+     * @param delete      whether to delete the copies of each cluster's first file
+     * @return the clusters, in name order
+     * @throws IllegalArgumentException if the threshold is not above 0 and at most 1
+     * @throws Exception                if the directory path is not set or an error occurs during file deletion
+     */
+    public List<NearDuplicateCluster> nearDuplicates(String workspaceId, double threshold, boolean delete) throws Exception {
+        if (!(threshold > 0 && threshold <= 1)) {
+            throw new IllegalArgumentException("threshold must be above 0 and at most 1");
         }
+        Workspace.Action<List<NearDuplicateCluster>> action = workspace -> {
+            List<File> files = new ArrayList<>(listTextFiles(workspace, "nearDuplicates"));
+            files.sort(Comparator.comparing(workspace::relativeName));
+            Timer.Sample hash = metrics.start();
+            List<NearDuplicateCluster> clusters = nearDuplicateFinder.findClusters(files, workspace::relativeName, workspace.getMinHashCache(), threshold);
+            metrics.stop(hash, "nearDuplicates", "hash");
+            metrics.filesProcessed("nearDuplicates", files.size());
+            if (delete) {
+                for (NearDuplicateCluster cluster : clusters) {
+                    for (String fileName : cluster.copies()) {
+                        if (!workspace.getFile(fileName).delete()) {
+                            throw new Exception("Failed to delete duplicate file: " + fileName);
+                        }
+                        workspace.getStatsCache().invalidate(fileName);
+                        workspace.getMinHashCache().invalidate(fileName);
+                        workspace.getIndex().remove(fileName);
+                        workspace.fileDeleted(fileName);
+                    }
+                }
+            }
+            return clusters;
+        };
+        Workspace workspace = workspaces.get(workspaceId);
+        return delete ? workspace.write(action) : workspace.read(action);
     }
 
     /**
-     * Searches for files containing a specified keyword in the set directory.
+     * Searches for files containing a specified keyword in a workspace's directory.
+     * Keywords made of words are answered from the inverted index as a whole-word phrase lookup;
+     * keywords without any letters or digits fall back to a literal scan of the files, see {@link SearchEngine}.
      *
-     * @param keyword the keyword to search for
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param keyword     the keyword to search for
      * @return a list of file names containing the keyword
      * @throws Exception if the directory path is not set or an error occurs during the file search
      */
-    public List<String> keywordSearch(String keyword) throws Exception {
-        checkDirectorySet();
-        File directory = new File(directoryPath);
-        if (!directory.exists() || !directory.isDirectory()) {
-            throw new Exception("Invalid directory path");
-        }
-
+    public List<String> keywordSearch(String workspaceId, String keyword) throws Exception {
         List<String> searchResults = new ArrayList<>();
-        for (File file : Objects.requireNonNull(directory.listFiles())) {
-            if (file.isFile() && isTextFile(file)) {
-                EditableFile editableFile = new EditableFile(file.getAbsolutePath());
-                if (editableFile.hasKeyword(keyword)) {
-                    searchResults.add(editableFile.getFileName());
+        keywordSearch(workspaceId, keyword, searchResults::add, new AtomicBoolean());
+        return searchResults;
+    }
+
+    /**
+     * Searches for files containing a specified keyword like {@link #keywordSearch(String, String)},
+     * handing each matching file name to the consumer as soon as it is found.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param keyword     the keyword to search for
+     * @param consumer    receives the name of each file containing the keyword
+     * @param cancelled   set to true to stop the search, e.g. when the client disconnects
+     * @throws Exception if the directory path is not set or an error occurs during the file search
+     */
+    public void keywordSearch(String workspaceId, String keyword, Consumer<String> consumer, AtomicBoolean cancelled) throws Exception {
+        workspaces.get(workspaceId).read(workspace -> {
+            if (InvertedIndex.isSearchable(keyword)) {
+                Timer.Sample search = metrics.start();
+                List<String> fileNames = workspace.getIndex().search(keyword);
+                metrics.stop(search, "keywordSearch", "index");
+                for (String fileName : fileNames) {
+                    if (cancelled.get()) {
+                        return null;
+                    }
+                    consumer.accept(fileName);
                 }
+                return null;
             }
-        }
-        return searchResults;
+
+            SearchQuery query = new SearchQuery(SearchQuery.Type.LITERAL, keyword, false, Integer.MAX_VALUE, 0);
+            searchEngine.search(listTextFiles(workspace, "keywordSearch"), workspace::relativeName, query, "keywordSearch",
+                    hit -> consumer.accept(hit.fileName()), cancelled);
+            return null;
+        });
+    }
+
+    /**
+     * Searches the files of a workspace's directory for the matches of a query.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param query       the query
+     * @param truncated   set to true if more files match than the query's limit
+     * @return the matching files with their match counts and first snippets, sorted by file name
+     * @throws Exception if the directory path is not set or an error occurs during the search
+     */
+    public List<SearchHit> search(String workspaceId, SearchQuery query, AtomicBoolean truncated) throws Exception {
+        List<SearchHit> hits = Collections.synchronizedList(new ArrayList<>());
+        truncated.set(search(workspaceId, query, hits::add, new AtomicBoolean()));
+        hits.sort(Comparator.comparing(SearchHit::fileName));
+        return hits;
+    }
+
+    /**
+     * Searches the files of a workspace's directory for the matches of a query, handing each matching
+     * file to the consumer as soon as it has been scanned. Case-sensitive phrase queries only scan the
+     * files the inverted index lists for the phrase.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param query       the query
+     * @param consumer    receives each matching file, at most the query's limit; called from several threads
+     * @param cancelled   set to true to stop the search, e.g. when the client disconnects
+     * @return true if the search stopped because the query's limit was reached
+     * @throws Exception if the directory path is not set or an error occurs during the search
+     */
+    public boolean search(String workspaceId, SearchQuery query, Consumer<SearchHit> consumer, AtomicBoolean cancelled) throws Exception {
+        return workspaces.get(workspaceId).read(workspace -> {
+            List<File> files;
+            if (query.type() == SearchQuery.Type.PHRASE && !query.ignoreCase() && InvertedIndex.isSearchable(query.text())) {
+                Timer.Sample search = metrics.start();
+                files = new ArrayList<>();
+                for (String fileName : workspace.getIndex().search(query.text())) {
+                    files.add(workspace.getFile(fileName));
+                }
+                metrics.stop(search, "search", "index");
+            }
+            else {
+                files = listTextFiles(workspace, "search");
+            }
+            return searchEngine.search(files, workspace::relativeName, query, "search", consumer, cancelled);
+        });
     }
 
     /**
      * Counts words in a specified file using a specified number of threads.
      *
-     * @param fileName   the name of the file to count words in
-     * @param numThreads the number of threads to use for counting words
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param fileName    the name of the file to count words in
+     * @param numThreads  the number of threads to use for counting words
+     * @param options     how to count and how many top words to return
+     * @return a list of word counts in the format "word: count"
+     * @throws WordCountTruncatedException if the count timed out or was interrupted
+     * @throws Exception                   if the directory path is not set or an error occurs during word counting
+     */
+    public List<String> countWords(String workspaceId, String fileName, int numThreads, WordCountOptions options) throws Exception {
+        return countWords(workspaceId, fileName, numThreads, options, new AtomicLong());
+    }
+
+    /**
+     * Counts words in a specified file, reporting how far the count has got.
+     * The count only reads one file, so it does not hold the workspace's lock while it runs.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param fileName    the name of the file to count words in
+     * @param numThreads  the number of threads to use for counting words
+     * @param options     how to count and how many top words to return
+     * @param progress    incremented by the approximate number of bytes counted so far
      * @return a list of word counts in the format "word: count"
-     * @throws Exception if the directory path is not set or an error occurs during word counting
+     * @throws WordCountTruncatedException if the count timed out or was interrupted
+     * @throws Exception                   if the directory path is not set or an error occurs during word counting
      */
-    public List<String> countWords(String fileName, int numThreads) throws Exception {
-        checkDirectorySet();
-        List<Map.Entry<String, Integer>> wordCounts = wordCounterService.countWords(new File(directoryPath, fileName).getPath(), numThreads);
+    public List<String> countWords(String workspaceId, String fileName, int numThreads, WordCountOptions options, AtomicLong progress) throws Exception {
+        File file = getFile(workspaceId, fileName);
+        return format(wordCounterService.countWords(file.getPath(), numThreads, options, progress));
+    }
+
+    /**
+     * Formats word counts as the API reports them.
+     *
+     * @param wordCounts the words and their counts
+     * @return the word counts in the format "word: count", in the same order
+     */
+    static List<String> format(List<Map.Entry<String, Integer>> wordCounts) {
         List<String> result = new ArrayList<>();
         for (Map.Entry<String, Integer> entry : wordCounts) {
             result.add(entry.getKey() + ": " + entry.getValue());
         }
         return result;
     }
+
+    /**
+     * Counts the words of every text file in a workspace's directory as one corpus.
+     * Each file's counts are kept, so later calls only count the files that were written, added or
+     * changed since, and deleted files are subtracted from the totals.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param topK        the number of top words to return
+     * @return a list of word counts in the format "word: count"
+     * @throws Exception if the directory path is not set or the count is interrupted
+     */
+    public List<String> countCorpusWords(String workspaceId, int topK) throws Exception {
+        return workspaces.get(workspaceId).read(workspace -> {
+            List<File> files = listTextFiles(workspace, "countCorpusWords");
+            return format(wordCounterService.countCorpus(workspace.getCorpusCounts(), files, workspace::relativeName, topK));
+        });
+    }
+
+    /**
+     * Counts given words across every text file in a workspace's directory, bringing the corpus counts
+     * up to date first like {@link #countCorpusWords(String, int)}.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param words       the words to count, as returned by a corpus count
+     * @return the counts of the words that occur, in the format "word: count"
+     * @throws Exception if the directory path is not set or the count is interrupted
+     */
+    public List<String> countCorpusWords(String workspaceId, List<String> words) throws Exception {
+        return workspaces.get(workspaceId).read(workspace -> {
+            List<File> files = listTextFiles(workspace, "countCorpusWords");
+            wordCounterService.countCorpus(workspace.getCorpusCounts(), files, workspace::relativeName, 0);
+            List<String> result = new ArrayList<>();
+            for (String word : words) {
+                long count = workspace.getCorpusCounts().countOf(word);
+                if (count > 0) {
+                    result.add(word + ": " + count);
+                }
+            }
+            return result;
+        });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,225 @@
+package dev.harshaan.FileScout;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded LRU cache of per-file word and character counts for one directory.
+ * Entries are validated against the file's modification time and size, so an unchanged file costs
+ * a single stat instead of a full read. The cache is persisted as a sidecar file so a restart starts warm.
+ */
+public class FileStatsCache {
+    private static final Logger logger = Logger.getLogger(FileStatsCache.class.getName());
+    private static final int MAGIC = 0x46535343;
+    private static final int FORMAT_VERSION = 1;
+    private static final int DEFAULT_MAX_ENTRIES = 250_000;
+
+    private final Path root;
+    private final Path cacheFile;
+    private final LinkedHashMap<String, FileStats> entries;
+    private boolean dirty;
+
+    /**
+     * Word and character counts of a file, as of the given modification time and size.
+     *
+     * @param lastModified the modification time of the file when it was counted
+     * @param size         the size of the file in bytes when it was counted
+     * @param wordCount    the number of words in the file
+     * @param charCount    the number of characters in the file
+     */
+    public record FileStats(long lastModified, long size, int wordCount, int charCount) {
+        /**
+         * Checks whether these stats still describe the file.
+         *
+         * @param file the file to check
+         * @return true if the file's modification time and size are unchanged
+         */
+        public boolean matches(File file) {
+            return lastModified == file.lastModified() && size == file.length();
+        }
+    }
+
+    private FileStatsCache(Path root, Path cacheFile, int maxEntries) {
+        this.root = root;
+        this.cacheFile = cacheFile;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FileStats> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Opens the stats cache of the specified directory, loading its sidecar file if one exists.
+     *
+     * @param directoryPath the directory the cache covers
+     * @return the cache, empty if no usable sidecar was found
+     */
+    public static FileStatsCache open(String directoryPath) {
+        FileStatsCache cache = new FileStatsCache(Paths.get(directoryPath), SidecarFiles.forDirectory(directoryPath, "stats"), DEFAULT_MAX_ENTRIES);
+        if (Files.isRegularFile(cache.cacheFile)) {
+            try {
+                cache.load();
+            }
+            catch (IOException e) {
+                logger.log(Level.WARNING, "Discarding unreadable stats cache: " + cache.cacheFile, e);
+                cache.entries.clear();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Gets the stats of a file, counting its words and characters only if the cached entry is
+     * missing or no longer matches the file's modification time and size. The file is only read, never
+     * created: a file that was deleted before it could be counted is dropped from the cache.
+     *
+     * @param file the file to get the stats of
+     * @return the stats of the file, or null if the file no longer exists
+     */
+    public FileStats statsOf(File file) {
+        String fileName = DirectoryLoader.relativeName(root, file.toPath());
+        synchronized (this) {
+            FileStats cached = entries.get(fileName);
+            if (cached != null && cached.matches(file)) {
+                return cached;
+            }
+        }
+        long lastModified = file.lastModified();
+        long size = file.length();
+        if (!file.isFile()) {
+            invalidate(fileName);
+            return null;
+        }
+        FileStats stats;
+        try {
+            stats = count(file, lastModified, size);
+        }
+        catch (NoSuchFileException | FileNotFoundException e) {
+            invalidate(fileName);
+            return null;
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to count file: " + file, e);
+            return new FileStats(lastModified, size, 0, 0);
+        }
+        put(fileName, stats);
+        return stats;
+    }
+
+    /**
+     * Counts the words and characters of a file by streaming over its content, decompressed if the
+     * file is compressed. Words are split like {@link EditableFile} splits them.
+     *
+     * @param file         the file to count
+     * @param lastModified the modification time of the file before it was read
+     * @param size         the size of the file before it was read
+     * @return the stats of the file
+     * @throws IOException if the file cannot be read
+     */
+    private static FileStats count(File file, long lastModified, long size) throws IOException {
+        int wordCount = 0;
+        int charCount = 0;
+        boolean inWord = false;
+        try (Reader reader = new InputStreamReader(CompressedFiles.open(file), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                if (read == 0) {
+                    continue;
+                }
+                wordCount += Tokenizer.countWords(CharBuffer.wrap(buffer, 0, read), inWord);
+                inWord = !Tokenizer.isSeparator(buffer[read - 1]);
+                charCount += read;
+            }
+        }
+        return new FileStats(lastModified, size, wordCount, charCount);
+    }
+
+    /**
+     * Gets the cached stats of a file without validating them against the file.
+     *
+     * @param fileName the path of the file, relative to the cached directory
+     * @return the cached stats, or null if there are none
+     */
+    public synchronized FileStats get(String fileName) {
+        return entries.get(fileName);
+    }
+
+    /**
+     * Records freshly computed stats of a file.
+     *
+     * @param fileName the path of the file, relative to the cached directory
+     * @param stats    the stats of the file
+     */
+    public synchronized void put(String fileName, FileStats stats) {
+        entries.put(fileName, stats);
+        dirty = true;
+    }
+
+    /**
+     * Drops the cached stats of a file, e.g. after it was modified or deleted.
+     *
+     * @param fileName the path of the file, relative to the cached directory
+     */
+    public synchronized void invalidate(String fileName) {
+        if (entries.remove(fileName) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Saves the cache to its sidecar file if it has changes that are not yet on disk.
+     */
+    public synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            SidecarFiles.writeAtomically(cacheFile, out -> {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, FileStats> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().lastModified());
+                    out.writeLong(entry.getValue().size());
+                    out.writeInt(entry.getValue().wordCount());
+                    out.writeInt(entry.getValue().charCount());
+                }
+            });
+            dirty = false;
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save stats cache: " + cacheFile, e);
+        }
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported stats cache format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                entries.put(in.readUTF(), new FileStats(in.readLong(), in.readLong(), in.readInt(), in.readInt()));
+            }
+        }
+    }
+}
\ No newline at end of file
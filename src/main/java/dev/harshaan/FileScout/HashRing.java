@@ -0,0 +1,120 @@
+package dev.harshaan.FileScout;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Assigns keys to nodes by consistent hashing. Every node is placed on a ring of 64-bit hashes at a
+ * number of virtual points, and a key belongs to the node of the first point at or after the key's hash.
+ * Adding or removing a node only moves the keys of the points it gains or loses, so the other nodes keep
+ * their keys, and the caches they built for them.
+ * The assignment only depends on the set of nodes and the number of virtual points, so every instance
+ * that is given the same nodes computes the same assignment.
+ */
+public final class HashRing {
+    private final List<String> nodes;
+    private final int virtualNodes;
+    private final long[] points;
+    private final String[] owners;
+
+    /**
+     * Constructs a ring.
+     *
+     * @param nodes        the names of the nodes, e.g. their base URLs; duplicates are ignored
+     * @param virtualNodes the number of points per node, at least 1; more points spread keys more evenly
+     * @throws IllegalArgumentException if there are no nodes
+     */
+    public HashRing(Collection<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        this.nodes = List.copyOf(new TreeSet<>(nodes));
+        this.virtualNodes = Math.max(1, virtualNodes);
+        TreeMap<Long, String> ring = new TreeMap<>();
+        for (String node : this.nodes) {
+            for (int i = 0; i < this.virtualNodes; i++) {
+                // On the rare collision of two points, the node that sorts first keeps the point on every instance.
+                ring.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+        points = new long[ring.size()];
+        owners = new String[ring.size()];
+        int i = 0;
+        for (Map.Entry<Long, String> point : ring.entrySet()) {
+            points[i] = point.getKey();
+            owners[i++] = point.getValue();
+        }
+    }
+
+    /**
+     * Gets the nodes of the ring.
+     *
+     * @return the nodes, sorted
+     */
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets the number of points per node.
+     *
+     * @return the number of virtual nodes
+     */
+    public int virtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * Gets the node a key belongs to.
+     *
+     * @param key the key
+     * @return the node
+     */
+    public String nodeFor(String key) {
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * Gets the ring without some of its nodes. The keys of the remaining nodes stay where they are.
+     *
+     * @param removed the nodes to remove
+     * @return the ring of the remaining nodes, this ring if none is removed
+     * @throws IllegalArgumentException if no node would remain
+     */
+    public HashRing without(Collection<String> removed) {
+        List<String> remaining = new ArrayList<>(nodes);
+        return remaining.removeAll(removed) ? new HashRing(remaining, virtualNodes) : this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HashRing other && virtualNodes == other.virtualNodes && nodes.equals(other.nodes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * nodes.hashCode() + virtualNodes;
+    }
+
+    @Override
+    public String toString() {
+        return "HashRing" + nodes;
+    }
+
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
\ No newline at end of file
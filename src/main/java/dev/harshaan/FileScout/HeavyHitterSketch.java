@@ -0,0 +1,205 @@
+package dev.harshaan.FileScout;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Approximate heavy-hitter tracker with a fixed memory budget.
+ * Every word is counted in a {@link CountMinSketch}; a Space-Saving summary of at most
+ * {@code capacity} words keeps the current heavy-hitter candidates. A word that is not monitored
+ * only replaces the weakest candidate once its sketch estimate exceeds that candidate's count, so
+ * the long tail of rare words never allocates. The candidates are kept in an indexed min-heap, so the
+ * weakest is found in O(1) and a hit or an admission costs O(log capacity).
+ * Per-thread sketches are combined with {@link #merge}.
+ */
+public class HeavyHitterSketch implements WordSink {
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 1 << 16;
+
+    private final CountMinSketch sketch = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private final Map<WordKey, Candidate> candidates = new HashMap<>();
+    private final WordKey probe = new WordKey(null, 0, 0);
+    private final int capacity;
+    private Candidate[] heap = new Candidate[16];
+
+    /**
+     * Constructs an empty tracker.
+     *
+     * @param capacity the maximum number of candidate words to monitor
+     */
+    public HeavyHitterSketch(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    @Override
+    public void accept(byte[] word, int length, int hash) {
+        long estimate = sketch.add(hash, 1);
+        probe.set(word, length, hash);
+        Candidate candidate = candidates.get(probe);
+        if (candidate != null) {
+            // Sketch estimates never decrease, so a hit can only move the candidate down the heap.
+            candidate.count = estimate;
+            siftDown(candidate.index);
+            return;
+        }
+        if (candidates.size() < capacity) {
+            admit(word, length, hash, estimate);
+            return;
+        }
+        Candidate weakest = heap[0];
+        if (estimate > weakest.count) {
+            candidates.remove(weakest.key);
+            WordKey key = new WordKey(Arrays.copyOf(word, length), length, hash);
+            Candidate admitted = new Candidate(key, estimate);
+            candidates.put(key, admitted);
+            place(admitted, 0);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Merges another tracker into this one: the sketches are added, the candidates of both are
+     * re-estimated against the merged sketch, and the strongest of them are kept, up to this
+     * tracker's capacity.
+     *
+     * @param other the tracker to merge into this one
+     */
+    public void merge(HeavyHitterSketch other) {
+        sketch.merge(other.sketch);
+        for (Candidate candidate : other.candidates.values()) {
+            candidates.putIfAbsent(candidate.key, candidate);
+        }
+        List<Candidate> merged = new ArrayList<>(candidates.values());
+        for (Candidate candidate : merged) {
+            candidate.count = sketch.estimate(candidate.key.hash);
+        }
+        if (merged.size() > capacity) {
+            merged.sort(Comparator.comparingLong((Candidate c) -> c.count).reversed());
+            for (Candidate dropped : merged.subList(capacity, merged.size())) {
+                candidates.remove(dropped.key);
+            }
+            merged = merged.subList(0, capacity);
+        }
+        heap = new Candidate[Math.max(16, merged.size())];
+        for (int i = 0; i < merged.size(); i++) {
+            heap[i] = merged.get(i);
+            heap[i].index = i;
+        }
+        for (int i = merged.size() / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Gets the top candidates with their estimated counts. Estimates may exceed the true counts by
+     * the sketch's error bound but are never lower.
+     *
+     * @param k the number of words to return
+     * @return at most {@code k} words, in descending order of estimated count
+     */
+    public List<Map.Entry<String, Integer>> topWords(int k) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates.values()) {
+            entries.add(Map.entry(candidate.key.toString(), (int) Math.min(Integer.MAX_VALUE, candidate.count)));
+        }
+        return TopKSelector.select(entries, k);
+    }
+
+    private void admit(byte[] word, int length, int hash, long estimate) {
+        WordKey key = new WordKey(Arrays.copyOf(word, length), length, hash);
+        Candidate candidate = new Candidate(key, estimate);
+        int index = candidates.size();
+        candidates.put(key, candidate);
+        if (index == heap.length) {
+            heap = Arrays.copyOf(heap, (int) Math.min(capacity, 2L * heap.length));
+        }
+        heap[index] = candidate;
+        candidate.index = index;
+        siftUp(index);
+    }
+
+    private void siftUp(int index) {
+        Candidate candidate = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= candidate.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(candidate, index);
+    }
+
+    private void siftDown(int index) {
+        int size = candidates.size();
+        Candidate candidate = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (candidate.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(candidate, index);
+    }
+
+    private void place(Candidate candidate, int index) {
+        heap[index] = candidate;
+        candidate.index = index;
+    }
+
+    private static final class Candidate {
+        private final WordKey key;
+        private long count;
+        private int index;
+
+        private Candidate(WordKey key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Hash key over a word's bytes. The tracker reuses one mutable instance as a lookup probe so
+     * that checking whether a word is monitored does not allocate.
+     */
+    private static final class WordKey {
+        private byte[] bytes;
+        private int length;
+        private int hash;
+
+        private WordKey(byte[] bytes, int length, int hash) {
+            set(bytes, length, hash);
+        }
+
+        private void set(byte[] bytes, int length, int hash) {
+            this.bytes = bytes;
+            this.length = length;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof WordKey other && other.hash == hash && other.length == length
+                    && Arrays.equals(bytes, 0, length, other.bytes, 0, other.length);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package dev.harshaan.FileScout;
+
+import java.util.Arrays;
+
+/**
+ * Finds a single literal pattern with the Boyer-Moore-Horspool algorithm, which skips ahead by up to
+ * the pattern's length after each mismatch instead of testing every position.
+ * The shift table is indexed by the low byte of the character; characters sharing a low byte share
+ * the smallest shift of any of them, which is always safe.
+ */
+public class HorspoolMatcher implements PatternMatcher {
+    private final char[] pattern;
+    private final boolean ignoreCase;
+    private final int[] shift = new int[256];
+
+    /**
+     * Constructs a matcher.
+     *
+     * @param pattern    the pattern to find, at least one character long
+     * @param ignoreCase whether to ignore case, see {@link PatternMatcher#fold(char)}
+     */
+    public HorspoolMatcher(String pattern, boolean ignoreCase) {
+        this.pattern = pattern.toCharArray();
+        this.ignoreCase = ignoreCase;
+        if (ignoreCase) {
+            for (int i = 0; i < this.pattern.length; i++) {
+                this.pattern[i] = PatternMatcher.fold(this.pattern[i]);
+            }
+        }
+        int last = this.pattern.length - 1;
+        Arrays.fill(shift, this.pattern.length);
+        for (int i = 0; i < last; i++) {
+            shift[this.pattern[i] & 0xFF] = last - i;
+        }
+    }
+
+    @Override
+    public int maxLength() {
+        return pattern.length;
+    }
+
+    @Override
+    public void find(char[] text, int from, int to, Occurrence occurrence) {
+        int last = pattern.length - 1;
+        int i = from;
+        while (i + last < to) {
+            char c = charAt(text, i + last);
+            if (c == pattern[last]) {
+                int j = last - 1;
+                while (j >= 0 && charAt(text, i + j) == pattern[j]) {
+                    j--;
+                }
+                if (j < 0) {
+                    occurrence.found(0, i, i + pattern.length);
+                }
+            }
+            i += shift[c & 0xFF];
+        }
+    }
+
+    private char charAt(char[] text, int index) {
+        return ignoreCase ? PatternMatcher.fold(text[index]) : text[index];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,416 @@
+package dev.harshaan.FileScout;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent inverted index of the text files in a directory.
+ * Maps every term to a posting list of the files it occurs in, together with the word positions
+ * of each occurrence, so keyword and phrase lookups never have to read the files themselves.
+ * The index is stored as a sidecar file and revalidated against each file's modification time and
+ * size, so only files that changed since the last run are re-read.
+ */
+public class InvertedIndex {
+    private static final Logger logger = Logger.getLogger(InvertedIndex.class.getName());
+    private static final int MAGIC = 0x46534958;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_TERM_LENGTH = 256;
+
+    private final Path root;
+    private final Path indexFile;
+    private final Map<String, Integer> fileIds = new HashMap<>();
+    private final Map<Integer, IndexedFile> indexedFiles = new HashMap<>();
+    private final Map<String, Map<Integer, int[]>> postings = new HashMap<>();
+    private final Set<String> stale = new HashSet<>();
+    private int nextFileId;
+    private boolean dirty;
+
+    private InvertedIndex(Path root, Path indexFile) {
+        this.root = root;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Opens the index of the specified directory, loading its sidecar file if one exists.
+     *
+     * @param directoryPath the directory the index covers
+     * @return the index, empty if no usable sidecar was found
+     */
+    public static InvertedIndex open(String directoryPath) {
+        InvertedIndex index = new InvertedIndex(Paths.get(directoryPath), SidecarFiles.forDirectory(directoryPath, "index"));
+        if (Files.isRegularFile(index.indexFile)) {
+            try {
+                index.load();
+            }
+            catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Discarding unreadable index, files are indexed again as they are loaded: " + index.indexFile, e);
+                index.clear();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Indexes the specified file if it is new or was modified since it was last indexed.
+     * The file is read outside the index lock, so several files can be refreshed in parallel.
+     *
+     * @param file the file to refresh
+     */
+    public void refresh(File file) {
+        String name = nameOf(file);
+        synchronized (this) {
+            Integer id = fileIds.get(name);
+            IndexedFile indexed = id == null ? null : indexedFiles.get(id);
+            if (indexed != null && indexed.lastModified() == file.lastModified() && indexed.size() == file.length()) {
+                return;
+            }
+        }
+        update(file);
+    }
+
+    /**
+     * Indexes the specified file, replacing any previous postings for it.
+     *
+     * @param file the file to index
+     */
+    public void update(File file) {
+        String name = nameOf(file);
+        long lastModified = file.lastModified();
+        long size = file.length();
+        Map<String, IntList> positions = new HashMap<>();
+        try (Reader reader = new BufferedReader(new InputStreamReader(CompressedFiles.open(file), StandardCharsets.UTF_8))) {
+            tokenize(reader, (term, position) -> positions.computeIfAbsent(term, t -> new IntList()).add(position));
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to index file: " + file, e);
+            remove(name);
+            return;
+        }
+
+        synchronized (this) {
+            remove(name);
+            stale.remove(name);
+            int id = nextFileId++;
+            fileIds.put(name, id);
+            indexedFiles.put(id, new IndexedFile(name, lastModified, size, positions.keySet()));
+            for (Map.Entry<String, IntList> entry : positions.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), t -> new HashMap<>()).put(id, entry.getValue().toArray());
+            }
+            dirty = true;
+        }
+    }
+
+    /**
+     * Marks a file as changed without reading it, e.g. after an append. The file is indexed again before
+     * the next search, so a run of writes to it costs one read instead of one per write.
+     *
+     * @param file the file that changed
+     */
+    public synchronized void invalidate(File file) {
+        stale.add(nameOf(file));
+    }
+
+    /**
+     * Drops every file not in the given set, e.g. files deleted while the application was not running,
+     * and saves the index if anything changed.
+     *
+     * @param fileNames the relative names of the files currently in the directory
+     */
+    public synchronized void retainOnly(Set<String> fileNames) {
+        for (String fileName : new ArrayList<>(fileIds.keySet())) {
+            if (!fileNames.contains(fileName)) {
+                remove(fileName);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Removes the specified file from the index.
+     *
+     * @param fileName the path of the file to remove, relative to the indexed directory
+     */
+    public synchronized void remove(String fileName) {
+        stale.remove(fileName);
+        Integer id = fileIds.remove(fileName);
+        if (id == null) {
+            return;
+        }
+        IndexedFile indexed = indexedFiles.remove(id);
+        for (String term : indexed.terms()) {
+            Map<Integer, int[]> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        dirty = true;
+    }
+
+    /**
+     * Checks whether the keyword contains at least one indexable term.
+     * Keywords made only of punctuation or whitespace cannot be answered from the index.
+     *
+     * @param keyword the keyword to check
+     * @return true if {@link #search(String)} can answer the keyword
+     */
+    public static boolean isSearchable(String keyword) {
+        return !terms(keyword).isEmpty();
+    }
+
+    /**
+     * Finds the files containing the keyword. A keyword of several terms is matched as a phrase,
+     * i.e. its terms must occur at consecutive word positions. Files marked as changed by
+     * {@link #invalidate(File)} are indexed again first.
+     *
+     * @param keyword the keyword or phrase to search for
+     * @return the relative names of the matching files, sorted
+     */
+    public synchronized List<String> search(String keyword) {
+        List<String> terms = terms(keyword);
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        for (String fileName : new ArrayList<>(stale)) {
+            File file = root.resolve(fileName).toFile();
+            if (file.isFile()) {
+                update(file);
+            }
+            else {
+                remove(fileName);
+            }
+        }
+
+        List<Map<Integer, int[]>> termPostings = new ArrayList<>();
+        for (String term : terms) {
+            Map<Integer, int[]> posting = postings.get(term);
+            if (posting == null) {
+                return Collections.emptyList();
+            }
+            termPostings.add(posting);
+        }
+
+        Map<Integer, int[]> smallest = Collections.min(termPostings, Comparator.comparingInt(Map::size));
+        List<String> results = new ArrayList<>();
+        for (Integer id : smallest.keySet()) {
+            if (containsPhrase(termPostings, id)) {
+                results.add(indexedFiles.get(id).name());
+            }
+        }
+        Collections.sort(results);
+        return results;
+    }
+
+    /**
+     * Writes the index to its sidecar file. The file is replaced atomically so a crash never leaves
+     * a truncated index behind.
+     */
+    public synchronized void save() {
+        try {
+            SidecarFiles.writeAtomically(indexFile, out -> {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(nextFileId);
+                out.writeInt(indexedFiles.size());
+                for (Map.Entry<Integer, IndexedFile> entry : indexedFiles.entrySet()) {
+                    out.writeInt(entry.getKey());
+                    out.writeUTF(entry.getValue().name());
+                    out.writeLong(entry.getValue().lastModified());
+                    out.writeLong(entry.getValue().size());
+                }
+                out.writeInt(postings.size());
+                for (Map.Entry<String, Map<Integer, int[]>> entry : postings.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (Map.Entry<Integer, int[]> posting : entry.getValue().entrySet()) {
+                        out.writeInt(posting.getKey());
+                        out.writeInt(posting.getValue().length);
+                        for (int position : posting.getValue()) {
+                            out.writeInt(position);
+                        }
+                    }
+                }
+            });
+            dirty = false;
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save index: " + indexFile, e);
+        }
+    }
+
+    /**
+     * Saves the index if it has changes that are not yet on disk.
+     */
+    public synchronized void flush() {
+        if (dirty) {
+            save();
+        }
+    }
+
+    /**
+     * Loads the sidecar file. Counts, file ids and positions are checked as they are read, so a corrupt
+     * sidecar fails with an IOException instead of allocating from garbage or leaving postings that
+     * point at no file.
+     *
+     * @throws IOException if the sidecar cannot be read or is corrupt
+     */
+    private void load() throws IOException {
+        // Every counted element takes at least four bytes, so no valid count exceeds this.
+        long maxCount = Files.size(indexFile) / 4;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported index format");
+            }
+            nextFileId = in.readInt();
+            if (nextFileId < 0) {
+                throw new IOException("Corrupt index: next file id " + nextFileId);
+            }
+            int fileCount = readCount(in, maxCount, "file");
+            for (int i = 0; i < fileCount; i++) {
+                int id = in.readInt();
+                IndexedFile indexed = new IndexedFile(in.readUTF(), in.readLong(), in.readLong(), new HashSet<>());
+                if (id < 0 || id >= nextFileId || indexedFiles.containsKey(id) || fileIds.containsKey(indexed.name())) {
+                    throw new IOException("Corrupt index: file id " + id + " of " + indexed.name());
+                }
+                fileIds.put(indexed.name(), id);
+                indexedFiles.put(id, indexed);
+            }
+            int termCount = readCount(in, maxCount, "term");
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                int postingCount = readCount(in, maxCount, "posting");
+                Map<Integer, int[]> posting = new HashMap<>(postingCount * 2);
+                for (int j = 0; j < postingCount; j++) {
+                    int id = in.readInt();
+                    IndexedFile indexed = indexedFiles.get(id);
+                    if (indexed == null) {
+                        throw new IOException("Corrupt index: posting of term " + term + " for unknown file id " + id);
+                    }
+                    int[] positions = new int[readCount(in, maxCount, "position")];
+                    for (int k = 0; k < positions.length; k++) {
+                        positions[k] = in.readInt();
+                        if (positions[k] < 0 || (k > 0 && positions[k] <= positions[k - 1])) {
+                            throw new IOException("Corrupt index: positions of term " + term + " are not ascending");
+                        }
+                    }
+                    posting.put(id, positions);
+                    indexed.terms().add(term);
+                }
+                postings.put(term, posting);
+            }
+        }
+    }
+
+    private static int readCount(DataInputStream in, long maxCount, String what) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > maxCount) {
+            throw new IOException("Corrupt index: " + what + " count " + count);
+        }
+        return count;
+    }
+
+    private String nameOf(File file) {
+        return DirectoryLoader.relativeName(root, file.toPath());
+    }
+
+    private void clear() {
+        stale.clear();
+        fileIds.clear();
+        indexedFiles.clear();
+        postings.clear();
+        nextFileId = 0;
+    }
+
+    private static boolean containsPhrase(List<Map<Integer, int[]>> termPostings, int id) {
+        int[] first = termPostings.get(0).get(id);
+        if (first == null) {
+            return false;
+        }
+        for (int start : first) {
+            boolean matches = true;
+            for (int i = 1; i < termPostings.size() && matches; i++) {
+                int[] positions = termPostings.get(i).get(id);
+                matches = positions != null && Arrays.binarySearch(positions, start + i) >= 0;
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        try {
+            tokenize(new StringReader(text), (term, position) -> terms.add(term));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    /**
+     * Splits the text into terms: maximal runs of letters and digits. Terms keep their case, like
+     * the {@code String.contains} lookup the index replaces. Overly long terms are skipped but still
+     * take up a position so phrases never match across them.
+     */
+    private static void tokenize(Reader reader, TermConsumer consumer) throws IOException {
+        StringBuilder term = new StringBuilder();
+        char[] buffer = new char[8192];
+        int position = 0;
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (Character.isLetterOrDigit(c) || Character.isSurrogate(c)) {
+                    term.append(c);
+                }
+                else if (!term.isEmpty()) {
+                    emit(term, position++, consumer);
+                }
+            }
+        }
+        if (!term.isEmpty()) {
+            emit(term, position, consumer);
+        }
+    }
+
+    private static void emit(StringBuilder term, int position, TermConsumer consumer) {
+        if (term.length() <= MAX_TERM_LENGTH) {
+            consumer.accept(term.toString(), position);
+        }
+        term.setLength(0);
+    }
+
+    private interface TermConsumer {
+        void accept(String term, int position);
+    }
+
+    private record IndexedFile(String name, long lastModified, long size, Set<String> terms) {
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
\ No newline at end of file
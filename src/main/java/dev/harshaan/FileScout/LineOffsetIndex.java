@@ -0,0 +1,137 @@
+package dev.harshaan.FileScout;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Sparse index of the byte offsets of a file's lines. The offset of every {@value #LINES_PER_CHECKPOINT}th
+ * line is kept, so finding any line reads at most that many lines from the nearest checkpoint, whatever
+ * the size of the file. The index is built in one pass and is only valid while the file's modification
+ * time and size are unchanged.
+ */
+public class LineOffsetIndex {
+    static final int LINES_PER_CHECKPOINT = 1024;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final long lastModified;
+    private final long size;
+    private final long lineCount;
+    private final long[] checkpoints;
+
+    private LineOffsetIndex(long lastModified, long size, long lineCount, long[] checkpoints) {
+        this.lastModified = lastModified;
+        this.size = size;
+        this.lineCount = lineCount;
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Builds the index of a file.
+     *
+     * @param file the file
+     * @return the index
+     * @throws IOException if the file cannot be read
+     */
+    public static LineOffsetIndex build(File file) throws IOException {
+        long lastModified = file.lastModified();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] checkpoints = new long[16];
+            int checkpointCount = 1;
+            long newlines = 0;
+            long position = 0;
+            byte last = '\n';
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                buffer.flip();
+                for (int i = 0; i < read; i++) {
+                    last = buffer.get(i);
+                    if (last == '\n') {
+                        newlines++;
+                        if (newlines % LINES_PER_CHECKPOINT == 0) {
+                            if (checkpointCount == checkpoints.length) {
+                                checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+                            }
+                            checkpoints[checkpointCount++] = position + i + 1;
+                        }
+                    }
+                }
+                position += read;
+            }
+            long lineCount = newlines + (last != '\n' ? 1 : 0);
+            return new LineOffsetIndex(lastModified, size, lineCount, Arrays.copyOf(checkpoints, checkpointCount));
+        }
+    }
+
+    /**
+     * Checks whether the index still describes the file.
+     *
+     * @param file the file to check
+     * @return true if the file's modification time and size are unchanged
+     */
+    public boolean matches(File file) {
+        return lastModified == file.lastModified() && size == file.length();
+    }
+
+    /**
+     * Gets the number of lines of the file. A last line without a line break counts as a line.
+     *
+     * @return the number of lines
+     */
+    public long lineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Gets the size of the file when it was indexed.
+     *
+     * @return the size in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Finds the byte offset at which a line starts, reading forward from the nearest checkpoint.
+     *
+     * @param channel the open file
+     * @param line    the number of the line, starting at 1; lines past the end start at the end of the file
+     * @return the byte offset of the line
+     * @throws IOException if the file cannot be read
+     */
+    public long offsetOf(FileChannel channel, long line) throws IOException {
+        if (line <= 1) {
+            return 0;
+        }
+        if (line > lineCount) {
+            return size;
+        }
+        int checkpoint = (int) Math.min((line - 1) / LINES_PER_CHECKPOINT, checkpoints.length - 1);
+        long position = checkpoints[checkpoint];
+        long remaining = line - 1 - (long) checkpoint * LINES_PER_CHECKPOINT;
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (remaining > 0 && position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n' && --remaining == 0) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return Math.min(position, size);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,161 @@
+package dev.harshaan.FileScout;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded LRU cache of the MinHash signatures of one directory's files, see {@link NearDuplicateFinder}.
+ * Entries are validated against the file's modification time and size, so a near-duplicate check only
+ * reads the files that changed since the last one. The cache is persisted as a sidecar file.
+ */
+public class MinHashCache {
+    private static final Logger logger = Logger.getLogger(MinHashCache.class.getName());
+    private static final int MAGIC = 0x464d4843;
+    private static final int FORMAT_VERSION = 1;
+    private static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private final Path cacheFile;
+    private final int signatureSize;
+    private final LinkedHashMap<String, Signature> entries;
+    private boolean dirty;
+
+    /**
+     * The MinHash signature of a file, as of the given modification time and size.
+     *
+     * @param lastModified the modification time of the file when it was hashed
+     * @param size         the size of the file in bytes when it was hashed
+     * @param minHashes    the minimum of each hash function over the file's shingles
+     */
+    public record Signature(long lastModified, long size, long[] minHashes) {
+        /**
+         * Checks whether this signature still describes the file.
+         *
+         * @param file the file to check
+         * @return true if the file's modification time and size are unchanged
+         */
+        public boolean matches(File file) {
+            return lastModified == file.lastModified() && size == file.length();
+        }
+    }
+
+    private MinHashCache(Path cacheFile, int signatureSize, int maxEntries) {
+        this.cacheFile = cacheFile;
+        this.signatureSize = signatureSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Signature> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Opens the signature cache of the specified directory, loading its sidecar file if one exists.
+     *
+     * @param directoryPath the directory the cache covers
+     * @return the cache, empty if no usable sidecar was found
+     */
+    public static MinHashCache open(String directoryPath) {
+        MinHashCache cache = new MinHashCache(SidecarFiles.forDirectory(directoryPath, "minhash"), NearDuplicateFinder.SIGNATURE_SIZE, DEFAULT_MAX_ENTRIES);
+        if (Files.isRegularFile(cache.cacheFile)) {
+            try {
+                cache.load();
+            }
+            catch (IOException e) {
+                logger.log(Level.WARNING, "Discarding unreadable signature cache: " + cache.cacheFile, e);
+                cache.entries.clear();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Gets the signature of a file if the cached one still matches it.
+     *
+     * @param fileName the path of the file, relative to the cached directory
+     * @param file     the file
+     * @return the cached signature, or null if there is none or the file changed since
+     */
+    public synchronized Signature get(String fileName, File file) {
+        Signature cached = entries.get(fileName);
+        return cached != null && cached.matches(file) ? cached : null;
+    }
+
+    /**
+     * Records a freshly computed signature of a file.
+     *
+     * @param fileName  the path of the file, relative to the cached directory
+     * @param signature the signature of the file
+     */
+    public synchronized void put(String fileName, Signature signature) {
+        entries.put(fileName, signature);
+        dirty = true;
+    }
+
+    /**
+     * Drops the cached signature of a file, e.g. after it was deleted.
+     *
+     * @param fileName the path of the file, relative to the cached directory
+     */
+    public synchronized void invalidate(String fileName) {
+        if (entries.remove(fileName) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Saves the cache to its sidecar file if it has changes that are not yet on disk.
+     */
+    public synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            SidecarFiles.writeAtomically(cacheFile, out -> {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(signatureSize);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Signature> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().lastModified());
+                    out.writeLong(entry.getValue().size());
+                    for (long minHash : entry.getValue().minHashes()) {
+                        out.writeLong(minHash);
+                    }
+                }
+            });
+            dirty = false;
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save signature cache: " + cacheFile, e);
+        }
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != signatureSize) {
+                throw new IOException("Unsupported signature cache format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String fileName = in.readUTF();
+                long lastModified = in.readLong();
+                long size = in.readLong();
+                long[] minHashes = new long[signatureSize];
+                for (int j = 0; j < signatureSize; j++) {
+                    minHashes[j] = in.readLong();
+                }
+                entries.put(fileName, new Signature(lastModified, size, minHashes));
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,85 +1,626 @@
 package dev.harshaan.FileScout;
 
+import io.micrometer.core.instrument.Timer;
+
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.ArrayList;
-import java.util.logging.Level;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
  * Multithreaded word counter that counts words in a file using a specified number of threads.
+ * Counts run on the shared {@link WordCountPool}, so the number of threads a client asks for is only
+ * an upper bound.
  */
 public class MultithreadedWordCounter {
     private static final Logger logger = Logger.getLogger(MultithreadedWordCounter.class.getName());
+    private static final long MAX_RANGE_SIZE = 1L << 30;
+    private static final int DEFAULT_TOP_K = 10;
+    private static final int CANDIDATES_PER_RESULT = 16;
+    private static final int MIN_CANDIDATES = 256;
+    private static final int MAX_CANDIDATES = 1 << 16;
+    private static final long LINE_MODE_TIMEOUT_SECONDS = 60;
+
+    private static final int LINES_PER_TASK = 1024;
+    private static final int PROGRESS_INTERVAL = 1 << 20;
+
+    private final WordCountPool pool;
+    private final FileScoutMetrics metrics;
+    private final WordCountAccumulator accumulator;
+    private final Tokenizer tokenizer;
+
+    /**
+     * Constructs a counter with its own pool, whose metrics are recorded in memory only.
+     */
+    public MultithreadedWordCounter() {
+        this(new WordCountPool(), new FileScoutMetrics());
+    }
+
+    /**
+     * Constructs a counter whose line-by-line counts accumulate into per-thread tables.
+     *
+     * @param pool    the shared pool to count on
+     * @param metrics the metrics to record stage timings to
+     */
+    public MultithreadedWordCounter(WordCountPool pool, FileScoutMetrics metrics) {
+        this(pool, metrics, WordCountAccumulator.PER_THREAD);
+    }
+
+    /**
+     * Constructs a counter that splits words with the default {@link Tokenizer}.
+     *
+     * @param pool        the shared pool to count on
+     * @param metrics     the metrics to record stage timings to
+     * @param accumulator how line-by-line counts combine the counts of their batches
+     */
+    public MultithreadedWordCounter(WordCountPool pool, FileScoutMetrics metrics, WordCountAccumulator accumulator) {
+        this(pool, metrics, accumulator, new Tokenizer());
+    }
+
+    /**
+     * Constructs a counter.
+     *
+     * @param pool        the shared pool to count on
+     * @param metrics     the metrics to record stage timings to
+     * @param accumulator how line-by-line counts combine the counts of their batches
+     * @param tokenizer   how every counting mode splits and normalizes words
+     */
+    public MultithreadedWordCounter(WordCountPool pool, FileScoutMetrics metrics, WordCountAccumulator accumulator, Tokenizer tokenizer) {
+        this.pool = pool;
+        this.metrics = metrics;
+        this.accumulator = accumulator;
+        this.tokenizer = tokenizer;
+    }
 
     /**
      * Counts words in the specified file using the specified number of threads.
      *
      * @param fileName   the name of the file to count words in
      * @param numThreads the number of threads to use
-     * @return a list of word counts
+     * @return a list of the top 10 word counts
+     * @throws IOException if the file cannot be read
+     */
+    public List<Map.Entry<String, Integer>> countWords(String fileName, int numThreads) throws IOException {
+        return countWords(fileName, numThreads, DEFAULT_TOP_K);
+    }
+
+    /**
+     * Counts words in the specified file using the specified number of threads, see
+     * {@link #countWords(String, int, int, AtomicLong)}.
+     *
+     * @param fileName   the name of the file to count words in
+     * @param numThreads the number of threads to use
+     * @param topK       the number of top words to return
+     * @return a list of the top word counts
+     * @throws IOException if the file cannot be read
      */
-    public List<Map.Entry<String, Integer>> countWords(String fileName, int numThreads) {
-        ConcurrentHashMap<String, Integer> wordCounts = new ConcurrentHashMap<>();
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    public List<Map.Entry<String, Integer>> countWords(String fileName, int numThreads, int topK) throws IOException {
+        return countWords(fileName, numThreads, topK, new AtomicLong());
+    }
+
+    /**
+     * Counts words in the specified file on up to the specified number of threads of the shared pool.
+     * The file is read line by line and batches of lines are counted in parallel, with at most two
+     * batches per thread in flight so a fast reader cannot flood the pool. The batches' counts are
+     * combined by the counter's {@link WordCountAccumulator}. A compressed file is decompressed as it is
+     * read, and its progress counts the compressed bytes read, see {@link CompressedFiles}.
+     * If counting takes longer than 60 seconds from when the count got its threads, or the calling thread
+     * is interrupted, the remaining lines are dropped and the truncation is recorded in the metrics.
+     *
+     * @param fileName   the name of the file to count words in
+     * @param numThreads the number of threads to use; capped at the parallelism of the pool
+     * @param topK       the number of top words to return
+     * @param progress   incremented by the approximate number of bytes counted so far
+     * @return a list of the top word counts
+     * @throws IOException                 if the file cannot be read
+     * @throws WordCountTruncatedException if the count timed out or was interrupted, with the partial counts
+     */
+    public List<Map.Entry<String, Integer>> countWords(String fileName, int numThreads, int topK, AtomicLong progress) throws IOException {
+        WordCountAccumulator.Accumulation wordCounts = accumulator.start(tokenizer);
+        List<Future<?>> futures = new ArrayList<>();
+        String truncation = null;
+        File file = new File(fileName);
+        boolean compressed = CompressedFiles.isCompressed(file);
+        AtomicLong lineProgress = compressed ? new AtomicLong() : progress;
+
+        try (WordCountPool.Lease lease = pool.acquire(numThreads)) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(LINE_MODE_TIMEOUT_SECONDS);
+            Semaphore inFlight = new Semaphore(lease.threads() * 2);
+            Timer.Sample read = metrics.start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(compressed
+                    ? CompressedFiles.open(file, new CompressedFiles.Unit(0, file.length()), progress::addAndGet)
+                    : new FileInputStream(file), StandardCharsets.UTF_8))) {
+                List<String> batch = new ArrayList<>(LINES_PER_TASK);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    batch.add(line);
+                    if (batch.size() == LINES_PER_TASK) {
+                        futures.add(submitLines(lease, batch, wordCounts, inFlight, lineProgress, deadline));
+                        batch = new ArrayList<>(LINES_PER_TASK);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    futures.add(submitLines(lease, batch, wordCounts, inFlight, lineProgress, deadline));
+                }
+            }
+            metrics.stop(read, "countWords", "read");
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                final String finalLine = line;
-                executor.submit(() -> countWordsInLine(finalLine, wordCounts));
+            Timer.Sample tokenize = metrics.start();
+            for (Future<?> future : futures) {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
             }
+            metrics.stop(tokenize, "countWords", "tokenize");
         }
-        catch (IOException e) {
-            logger.log(Level.SEVERE, "Failed to read the file: " + fileName, e);
+        catch (TimeoutException e) {
+            logger.warning("Word count timed out: " + fileName);
+            metrics.truncated("countWords");
+            truncation = "Word count timed out after " + LINE_MODE_TIMEOUT_SECONDS + " seconds: ";
         }
+        catch (InterruptedException e) {
+            metrics.truncated("countWords");
+            truncation = "Word count interrupted: ";
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            throw new IOException("Failed to count the words of the file: " + fileName, e.getCause());
+        }
+        finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        metrics.bytesRead("countWords", file.length());
 
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(60, java.util.concurrent.TimeUnit.SECONDS)) {
-                executor.shutdownNow();
+        Timer.Sample sort = metrics.start();
+        List<Map.Entry<String, Integer>> topWords = wordCounts.topWords(topK);
+        metrics.stop(sort, "countWords", "sort");
+        if (truncation != null) {
+            throw new WordCountTruncatedException(truncation + fileName, topWords);
+        }
+        return topWords;
+    }
+
+    /**
+     * Submits a batch of lines to be counted once one of the count's in-flight slots is free.
+     *
+     * @param lease      the threads leased by the count
+     * @param lines      the lines to count
+     * @param wordCounts the counts to add the words of the lines to
+     * @param inFlight   the free in-flight slots of the count
+     * @param progress   incremented by the approximate number of bytes of the lines once counted
+     * @param deadline   the {@link System#nanoTime()} by which the count must finish
+     * @return the future of the batch
+     * @throws InterruptedException if the calling thread is interrupted while waiting for a slot
+     * @throws TimeoutException     if no slot is freed before the deadline
+     */
+    private Future<?> submitLines(WordCountPool.Lease lease, List<String> lines, WordCountAccumulator.Accumulation wordCounts,
+                                  Semaphore inFlight, AtomicLong progress, long deadline) throws InterruptedException, TimeoutException {
+        if (!inFlight.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            throw new TimeoutException();
+        }
+        return lease.submit(() -> {
+            try {
+                wordCounts.countLines(lines);
+                long bytes = 0;
+                for (String line : lines) {
+                    bytes += line.length() + 1;
+                }
+                progress.addAndGet(bytes);
+                return null;
             }
+            finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Counts words in the specified file by memory-mapping it and splitting it into byte ranges
+     * aligned to word boundaries, one or more per thread. Each range is tokenized in place into a
+     * thread-owned {@link WordCountTable} and the tables are merged once at the end, so no String is
+     * allocated per word. Words are split by the same {@link Tokenizer} as in {@link #countWords(String, int)}.
+     * A compressed file cannot be mapped; it is split into units that decompress independently instead,
+     * see {@link CompressedFiles#split(File, int)}, which are counted in parallel the same way.
+     *
+     * @param fileName   the name of the file to count words in
+     * @param numThreads the number of threads to use
+     * @return a list of the top 10 word counts
+     * @throws IOException if the file cannot be read
+     */
+    public List<Map.Entry<String, Integer>> countWordsMapped(String fileName, int numThreads) throws IOException {
+        return countWordsMapped(fileName, numThreads, DEFAULT_TOP_K);
+    }
+
+    /**
+     * Counts words in the specified file over memory-mapped byte ranges, see {@link #countWordsMapped(String, int)}.
+     *
+     * @param fileName   the name of the file to count words in
+     * @param numThreads the number of threads to use
+     * @param topK       the number of top words to return
+     * @return a list of the top word counts
+     * @throws IOException if the file cannot be read
+     */
+    public List<Map.Entry<String, Integer>> countWordsMapped(String fileName, int numThreads, int topK) throws IOException {
+        return countWordsMapped(fileName, numThreads, topK, new AtomicLong());
+    }
+
+    /**
+     * Counts words in the specified file over memory-mapped byte ranges, see {@link #countWordsMapped(String, int)}.
+     *
+     * @param fileName   the name of the file to count words in
+     * @param numThreads the number of threads to use; capped at the parallelism of the pool
+     * @param topK       the number of top words to return
+     * @param progress   incremented by the number of bytes counted so far
+     * @return a list of the top word counts
+     * @throws IOException                 if the file cannot be read
+     * @throws WordCountTruncatedException if the count was interrupted, with the partial counts
+     */
+    public List<Map.Entry<String, Integer>> countWordsMapped(String fileName, int numThreads, int topK, AtomicLong progress) throws IOException {
+        WordCountTable totals = countMappedRanges("countWordsMapped", fileName, numThreads, progress, WordCountTable::new, WordCountTable::merge);
+        Timer.Sample sort = metrics.start();
+        List<Map.Entry<String, Integer>> topWords = TopKSelector.select(totals, topK);
+        metrics.stop(sort, "countWordsMapped", "sort");
+        return checkFinished(fileName, topWords);
+    }
+
+    /**
+     * Estimates the top words of the specified file, see {@link #countWordsApproximate(String, int, int, AtomicLong)}.
+     *
+     * @param fileName   the name of the file to count words in
+     * @param numThreads the number of threads to use
+     * @param topK       the number of top words to return
+     * @return a list of the top words and their estimated counts
+     * @throws IOException if the file cannot be read
+     */
+    public List<Map.Entry<String, Integer>> countWordsApproximate(String fileName, int numThreads, int topK) throws IOException {
+        return countWordsApproximate(fileName, numThreads, topK, new AtomicLong());
+    }
+
+    /**
+     * Estimates the top words of the specified file within a fixed memory budget, whatever the size
+     * of its vocabulary. The file is counted over memory-mapped byte ranges like
+     * {@link #countWordsMapped(String, int)}, but each thread feeds a {@link HeavyHitterSketch}
+     * instead of an exact table. Counts may be overestimated by the sketch's error bound.
+     *
+     * @param fileName   the name of the file to count words in
+     * @param numThreads the number of threads to use; capped at the parallelism of the pool
+     * @param topK       the number of top words to return
+     * @param progress   incremented by the number of bytes counted so far
+     * @return a list of the top words and their estimated counts
+     * @throws IOException                 if the file cannot be read
+     * @throws WordCountTruncatedException if the count was interrupted, with the partial estimates
+     */
+    public List<Map.Entry<String, Integer>> countWordsApproximate(String fileName, int numThreads, int topK, AtomicLong progress) throws IOException {
+        int capacity = (int) Math.min(MAX_CANDIDATES, Math.max(MIN_CANDIDATES, (long) topK * CANDIDATES_PER_RESULT));
+        HeavyHitterSketch totals = countMappedRanges("countWordsApproximate", fileName, numThreads, progress,
+                () -> new HeavyHitterSketch(capacity), HeavyHitterSketch::merge);
+        Timer.Sample sort = metrics.start();
+        List<Map.Entry<String, Integer>> topWords = totals.topWords(topK);
+        metrics.stop(sort, "countWordsApproximate", "sort");
+        return checkFinished(fileName, topWords);
+    }
+
+    /**
+     * Checks that a count over byte ranges or units was not cut short. An interrupted count keeps the
+     * ranges or units counted so far and leaves the calling thread's interrupt status set.
+     *
+     * @param fileName the name of the file counted
+     * @param topWords the top words of the count
+     * @return the top words
+     * @throws WordCountTruncatedException if the calling thread was interrupted, with the top words
+     */
+    private static List<Map.Entry<String, Integer>> checkFinished(String fileName, List<Map.Entry<String, Integer>> topWords) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new WordCountTruncatedException("Word count interrupted: " + fileName, topWords);
+        }
+        return topWords;
+    }
+
+    /**
+     * Maps the file in word-aligned byte ranges and tokenizes each range on the shared pool into its
+     * own sink, merging each range's sink into the totals as soon as it is counted. If the calling thread
+     * is interrupted, the ranges still being counted are cancelled and the totals of every range counted
+     * so far are returned.
+     *
+     * @param operation  the name the stages are recorded under
+     * @param fileName   the name of the file to count words in
+     * @param numThreads the number of threads to use
+     * @param progress   incremented by the number of bytes counted so far
+     * @param sinks      creates one sink per range
+     * @param merger     merges a range's sink into the totals
+     * @return the merged sink
+     * @throws IOException if the file cannot be read
+     */
+    private <S extends WordSink> S countMappedRanges(String operation, String fileName, int numThreads, AtomicLong progress,
+                                                     Supplier<S> sinks, BiConsumer<S, S> merger) throws IOException {
+        File file = new File(fileName);
+        if (CompressedFiles.isCompressed(file)) {
+            return countCompressedUnits(operation, file, numThreads, progress, sinks, merger);
+        }
+        S totals = sinks.get();
+        List<Future<S>> futures = new ArrayList<>();
+        int merged = 0;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+             WordCountPool.Lease lease = pool.acquire(numThreads)) {
+            Timer.Sample tokenize = metrics.start();
+            long[] bounds = splitIntoRanges(channel, lease.threads());
+            for (int i = 0; i < bounds.length - 1; i++) {
+                MappedByteBuffer range = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]);
+                futures.add(lease.submit(() -> countWordsInRange(range, sinks.get(), progress)));
+            }
+            for (Future<S> future : futures) {
+                S rangeSink = future.get();
+                Timer.Sample merge = metrics.start();
+                merger.accept(totals, rangeSink);
+                metrics.stop(merge, operation, "merge");
+                merged++;
+            }
+            metrics.stop(tokenize, operation, "tokenize");
+            metrics.bytesRead(operation, bounds[bounds.length - 1]);
+        }
+        catch (ExecutionException e) {
+            throw new IOException("Failed to read the file: " + fileName, e.getCause());
+        }
+        catch (InterruptedException e) {
+            metrics.truncated(operation);
+            mergeFinished(futures.subList(merged, futures.size()), totals, Function.identity(), merger);
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            for (Future<S> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Splits a compressed file into units that decompress independently and tokenizes each unit on the
+     * shared pool into its own sink, merging the sinks into the totals in file order as the units are
+     * counted. A word may be split between two units, so the partial words at the ends of the units are
+     * joined and counted as the sinks are merged. If the calling thread is interrupted, the units still
+     * being counted are cancelled and the totals of every unit counted so far are returned, without the
+     * words split between those units and the ones not yet merged.
+     *
+     * @param operation  the name the stages are recorded under
+     * @param file       the compressed file to count words in
+     * @param numThreads the number of threads to use
+     * @param progress   incremented by the number of compressed bytes read so far
+     * @param sinks      creates one sink per unit
+     * @param merger     merges a unit's sink into the totals
+     * @return the merged sink
+     * @throws IOException if the file cannot be read
+     */
+    private <S extends WordSink> S countCompressedUnits(String operation, File file, int numThreads, AtomicLong progress,
+                                                        Supplier<S> sinks, BiConsumer<S, S> merger) throws IOException {
+        S totals = sinks.get();
+        List<Future<UnitCount<S>>> futures = new ArrayList<>();
+        int merged = 0;
+
+        try (WordCountPool.Lease lease = pool.acquire(numThreads)) {
+            Timer.Sample tokenize = metrics.start();
+            for (CompressedFiles.Unit unit : CompressedFiles.split(file, lease.threads())) {
+                futures.add(lease.submit(() -> countWordsInUnit(file, unit, sinks.get(), progress)));
+            }
+            byte[] word = new byte[64];
+            ByteArrayOutputStream partialWord = new ByteArrayOutputStream();
+            for (Future<UnitCount<S>> future : futures) {
+                UnitCount<S> unitCount = future.get();
+                Timer.Sample merge = metrics.start();
+                merger.accept(totals, unitCount.sink());
+                partialWord.write(unitCount.head());
+                if (unitCount.tail() != null) {
+                    word = tokenizer.tokenize(ByteBuffer.wrap(partialWord.toByteArray()), word, totals);
+                    partialWord.reset();
+                    partialWord.write(unitCount.tail());
+                }
+                metrics.stop(merge, operation, "merge");
+                merged++;
+            }
+            tokenizer.tokenize(ByteBuffer.wrap(partialWord.toByteArray()), word, totals);
+            metrics.stop(tokenize, operation, "tokenize");
+            metrics.bytesRead(operation, file.length());
+        }
+        catch (ExecutionException e) {
+            throw new IOException("Failed to read the file: " + file, e.getCause());
         }
         catch (InterruptedException e) {
-            executor.shutdownNow();
+            metrics.truncated(operation);
+            mergeFinished(futures.subList(merged, futures.size()), totals, UnitCount::sink, merger);
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            for (Future<UnitCount<S>> future : futures) {
+                future.cancel(true);
+            }
         }
+        return totals;
+    }
 
-        return getTopWords(wordCounts);
+    /**
+     * Merges the sinks of the ranges or units that were counted but not merged yet when the count was
+     * interrupted. Those still running are left to be cancelled.
+     *
+     * @param futures the ranges or units not merged yet
+     * @param totals  the sink to merge into
+     * @param sinkOf  gets the sink of a range's or unit's result
+     * @param merger  merges a sink into the totals
+     */
+    private static <S, R> void mergeFinished(List<Future<R>> futures, S totals, Function<R, S> sinkOf, BiConsumer<S, S> merger) {
+        for (Future<R> future : futures) {
+            if (future.state() == Future.State.SUCCESS) {
+                merger.accept(totals, sinkOf.apply(future.resultNow()));
+            }
+        }
+    }
+
+    /**
+     * The counts of one unit of a compressed file.
+     *
+     * @param sink the words that lie wholly inside the unit
+     * @param head the bytes before the unit's first separator, or all of its bytes if it has none
+     * @param tail the bytes after the unit's last separator, or null if it has none
+     * @param <S>  the type of the sink
+     */
+    private record UnitCount<S>(S sink, byte[] head, byte[] tail) {
     }
 
     /**
-     * Counts words in the specified line and updates the word counts map.
+     * Counts the words of one unit of a compressed file, decompressing it in chunks of about a megabyte
+     * that are cut after their last separator. The bytes before the first separator and after the last
+     * may continue words of the neighbouring units, so they are returned uncounted.
      *
-     * @param line the line to count words in
-     * @param wordCounts the map to update with word counts
+     * @param file     the compressed file
+     * @param unit     the unit to count
+     * @param sink     the sink to feed the words of the unit to
+     * @param progress incremented by the number of compressed bytes read so far
+     * @return the counts of the unit
+     * @throws IOException if the unit cannot be read or decompressed
      */
-    private void countWordsInLine(String line, ConcurrentHashMap<String, Integer> wordCounts) {
-        line = line.replaceAll("[^a-zA-Z\\s]", "").toLowerCase();
-        String[] words = line.split("\\s+");
-        for (String word : words) {
-            if (!word.isEmpty()) {
-                wordCounts.merge(word, 1, Integer::sum);
+    private <S extends WordSink> UnitCount<S> countWordsInUnit(File file, CompressedFiles.Unit unit, S sink, AtomicLong progress) throws IOException {
+        byte[] word = new byte[64];
+        byte[] buffer = new byte[PROGRESS_INTERVAL];
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        boolean separatorSeen = false;
+        int filled = 0;
+        try (InputStream in = CompressedFiles.open(file, unit, progress::addAndGet)) {
+            int read;
+            while ((read = in.read(buffer, filled, buffer.length - filled)) != -1) {
+                int start = filled;
+                filled += read;
+                int from = 0;
+                if (!separatorSeen) {
+                    from = start;
+                    while (from < filled && !Tokenizer.isSeparator(buffer[from])) {
+                        from++;
+                    }
+                    head.write(buffer, 0, from);
+                    if (from == filled) {
+                        filled = 0;
+                        continue;
+                    }
+                    separatorSeen = true;
+                }
+                int cut = filled;
+                while (cut > from && !Tokenizer.isSeparator(buffer[cut - 1])) {
+                    cut--;
+                }
+                if (cut == from && filled == buffer.length) {
+                    cut = filled;
+                }
+                word = tokenizer.tokenize(ByteBuffer.wrap(buffer, from, cut - from), word, sink);
+                System.arraycopy(buffer, cut, buffer, 0, filled - cut);
+                filled -= cut;
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
             }
         }
+        return new UnitCount<>(sink, head.toByteArray(), separatorSeen ? Arrays.copyOf(buffer, filled) : null);
     }
 
     /**
-     * Gets the top words and their counts from the word counts map.
+     * Splits the file into at least {@code numRanges} byte ranges, each small enough to be mapped,
+     * moving every boundary forward to the start of the next word.
      *
-     * @param wordCounts the map of word counts
-     * @return a list of the top words and their counts
+     * @param channel   the channel of the file to split
+     * @param numRanges the minimum number of ranges
+     * @return the range boundaries; range {@code i} spans {@code [bounds[i], bounds[i + 1])}
+     * @throws IOException if an I/O error occurs
      */
-    private List<Map.Entry<String, Integer>> getTopWords(ConcurrentHashMap<String, Integer> wordCounts) {
-        List<Map.Entry<String, Integer>> entryList = new ArrayList<>(wordCounts.entrySet());
+    private long[] splitIntoRanges(FileChannel channel, int numRanges) throws IOException {
+        long size = channel.size();
+        int ranges = (int) Math.max(numRanges, (size + MAX_RANGE_SIZE - 1) / MAX_RANGE_SIZE);
+        long[] bounds = new long[ranges + 1];
+        bounds[ranges] = size;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < ranges; i++) {
+            bounds[i] = nextWordStart(channel, Math.max(bounds[i - 1], size / ranges * i), size, probe);
+        }
+        return bounds;
+    }
 
-        entryList.sort((entry1, entry2) -> entry2.getValue().compareTo(entry1.getValue()));
+    /**
+     * Finds the first position at or after the given one that starts a word, i.e. is preceded by a separator.
+     *
+     * @param channel  the channel of the file
+     * @param position the position to start looking from
+     * @param size     the size of the file
+     * @param probe    a scratch buffer for the lookahead reads
+     * @return the start of the next word, or the file size if there is none
+     * @throws IOException if an I/O error occurs
+     */
+    private long nextWordStart(FileChannel channel, long position, long size, ByteBuffer probe) throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+        long scan = position - 1;
+        while (scan < size) {
+            probe.clear();
+            int read = channel.read(probe, scan);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (Tokenizer.isSeparator(probe.get(i))) {
+                    return scan + i + 1;
+                }
+            }
+            scan += read;
+        }
+        return size;
+    }
 
-        return entryList.subList(0, Math.min(10, entryList.size()));
+    /**
+     * Counts the words in one mapped byte range with the counter's {@link Tokenizer}. The range is
+     * tokenized in slices of about a megabyte that end at separators, reporting progress and checking
+     * for interruption after each.
+     *
+     * @param range    the mapped bytes to count words in
+     * @param sink     the sink to feed the words of the range to
+     * @param progress incremented by the number of bytes counted so far
+     * @return the sink
+     */
+    private <S extends WordSink> S countWordsInRange(MappedByteBuffer range, S sink, AtomicLong progress) {
+        byte[] word = new byte[64];
+        int limit = range.limit();
+        int start = 0;
+        while (start < limit) {
+            int end = (int) Math.min(limit, (long) start + PROGRESS_INTERVAL);
+            while (end < limit && !Tokenizer.isSeparator(range.get(end))) {
+                end++;
+            }
+            word = tokenizer.tokenize(range.slice(start, end - start), word, sink);
+            progress.addAndGet(end - start);
+            start = end;
+            if (Thread.currentThread().isInterrupted()) {
+                return sink;
+            }
+        }
+        return sink;
     }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package dev.harshaan.FileScout;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes objects to a response stream as newline-delimited JSON, flushing after each line so the
+ * client sees every record as soon as it is produced. Writes block while the client is not reading,
+ * which slows down the producers. Once a write fails, e.g. because the client disconnected, the
+ * writer is marked cancelled so producers can stop.
+ */
+public class NdjsonWriter {
+    private final OutputStream out;
+    private final ObjectMapper objectMapper;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    /**
+     * Constructs a writer.
+     *
+     * @param out          the response stream
+     * @param objectMapper the mapper used to serialize records
+     */
+    public NdjsonWriter(OutputStream out, ObjectMapper objectMapper) {
+        this.out = out;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes one record as a JSON line. Safe to call from several threads.
+     *
+     * @param record the record to write
+     * @throws UncheckedIOException if the record cannot be written; the writer is then cancelled
+     */
+    public synchronized void write(Object record) {
+        if (cancelled.get()) {
+            throw new UncheckedIOException(new IOException("Response stream closed"));
+        }
+        try {
+            out.write(objectMapper.writeValueAsBytes(record));
+            out.write('\n');
+            out.flush();
+        }
+        catch (IOException e) {
+            cancelled.set(true);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets the flag that is set once the client stops reading. Producers should check it to stop early.
+     *
+     * @return the cancellation flag
+     */
+    public AtomicBoolean cancelled() {
+        return cancelled;
+    }
+}
\ No newline at end of file
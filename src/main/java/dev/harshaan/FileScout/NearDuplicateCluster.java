@@ -0,0 +1,16 @@
+package dev.harshaan.FileScout;
+
+import java.util.List;
+
+/**
+ * A group of files whose content is nearly the same, see {@link NearDuplicateFinder}.
+ *
+ * @param fileNames  the paths of the files, relative to the workspace's directory, in name order;
+ *                   the first is the one kept when the copies are deleted
+ * @param similarity the lowest estimated Jaccard similarity between the first file and any other
+ * @param copies     the files other than the first whose own similarity to the first reaches the threshold;
+ *                   only these are deleted. Files are linked pairwise, so other members may only be similar
+ *                   to another member and are kept.
+ */
+public record NearDuplicateCluster(List<String> fileNames, double similarity, List<String> copies) {
+}
\ No newline at end of file
@@ -0,0 +1,256 @@
+package dev.harshaan.FileScout;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Finds files whose content is nearly the same, e.g. copies that differ only by a timestamp or
+ * trailing whitespace, without comparing every pair of files.
+ * <ol>
+ *     <li>Each file is read once, as a stream, and reduced to a MinHash signature: the minimum of
+ *     {@value #SIGNATURE_SIZE} hash functions over its shingles, the runs of {@value #SHINGLE_WORDS}
+ *     consecutive words. Signatures are cached per file, see {@link MinHashCache}.</li>
+ *     <li>Signatures are split into bands and files sharing any band are bucketed together
+ *     (locality-sensitive hashing). The rows per band are chosen so that files at the threshold share
+ *     a band with a probability of at least 99%.</li>
+ *     <li>Each candidate pair is checked against the threshold with the fraction of equal signature
+ *     entries, which estimates the Jaccard similarity of the files' shingle sets.</li>
+ * </ol>
+ * Words are split like file stats split them, see {@link Tokenizer#isSeparator(int)}, but are not
+ * normalized, so only changes in whitespace are ignored outright.
+ */
+public class NearDuplicateFinder {
+    static final int SIGNATURE_SIZE = 128;
+    static final int SHINGLE_WORDS = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final double BAND_RECALL = 0.99;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long[] MULTIPLIERS = new long[SIGNATURE_SIZE];
+    private static final long[] OFFSETS = new long[SIGNATURE_SIZE];
+
+    static {
+        // Fixed seed, so signatures stay comparable with the ones cached by earlier runs.
+        SplittableRandom random = new SplittableRandom(0x46534e44L);
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            MULTIPLIERS[i] = random.nextLong() | 1;
+            OFFSETS[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Finds clusters of files whose estimated Jaccard similarity is at least the threshold.
+     * Files are linked pairwise, so a cluster may contain files that are each only similar to another member;
+     * the cluster's copies are the members that are similar to its first file themselves.
+     *
+     * @param files     the files to compare, in the order their clusters should list them
+     * @param namer     gives the name of a file, relative to the cached directory
+     * @param cache     the signatures computed by earlier runs; updated with new ones
+     * @param threshold the lowest Jaccard similarity, between 0 exclusive and 1 inclusive
+     * @return the clusters with at least two files, in the order of their first files
+     * @throws IOException if an I/O error occurs while reading a file
+     */
+    public List<NearDuplicateCluster> findClusters(List<File> files, Function<File, String> namer, MinHashCache cache,
+                                                   double threshold) throws IOException {
+        long[][] signatures = new long[files.size()][];
+        try {
+            IntStream.range(0, files.size()).parallel().forEach(i -> {
+                File file = files.get(i);
+                String fileName = namer.apply(file);
+                MinHashCache.Signature cached = cache.get(fileName, file);
+                if (cached != null) {
+                    signatures[i] = cached.minHashes();
+                    return;
+                }
+                try {
+                    long lastModified = file.lastModified();
+                    long size = file.length();
+                    signatures[i] = signatureOf(file);
+                    cache.put(fileName, new MinHashCache.Signature(lastModified, size, signatures[i]));
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        int[] parents = IntStream.range(0, files.size()).toArray();
+        int rows = rowsPerBand(threshold);
+        for (int band = 0; band < SIGNATURE_SIZE / rows; band++) {
+            Map<Long, List<Integer>> buckets = new HashMap<>();
+            for (int i = 0; i < signatures.length; i++) {
+                buckets.computeIfAbsent(bandKey(signatures[i], band, rows), key -> new ArrayList<>()).add(i);
+            }
+            for (List<Integer> bucket : buckets.values()) {
+                for (int a = 1; a < bucket.size(); a++) {
+                    for (int b = 0; b < a; b++) {
+                        int first = bucket.get(b);
+                        int second = bucket.get(a);
+                        if (find(parents, first) != find(parents, second) && similarity(signatures[first], signatures[second]) >= threshold) {
+                            parents[find(parents, second)] = find(parents, first);
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<Integer, List<Integer>> members = new LinkedHashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            members.computeIfAbsent(find(parents, i), root -> new ArrayList<>()).add(i);
+        }
+        List<NearDuplicateCluster> clusters = new ArrayList<>();
+        for (List<Integer> cluster : members.values()) {
+            if (cluster.size() < 2) {
+                continue;
+            }
+            List<String> fileNames = new ArrayList<>(cluster.size());
+            List<String> copies = new ArrayList<>(cluster.size() - 1);
+            int kept = cluster.get(0);
+            double lowest = 1;
+            for (int i : cluster) {
+                String fileName = namer.apply(files.get(i));
+                fileNames.add(fileName);
+                double similarity = similarity(signatures[kept], signatures[i]);
+                lowest = Math.min(lowest, similarity);
+                if (i != kept && similarity >= threshold) {
+                    copies.add(fileName);
+                }
+            }
+            clusters.add(new NearDuplicateCluster(fileNames, lowest, copies));
+        }
+        return clusters;
+    }
+
+    /**
+     * Estimates the Jaccard similarity of two files from their signatures.
+     *
+     * @param first  the signature of the first file
+     * @param second the signature of the second file
+     * @return the fraction of signature entries the files share
+     */
+    static double similarity(long[] first, long[] second) {
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (first[i] == second[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIGNATURE_SIZE;
+    }
+
+    /**
+     * Computes the MinHash signature of a file in one streaming pass, decompressing it if it is compressed.
+     * A file with fewer words than a shingle has one shingle of all its words; an empty file has no shingles.
+     *
+     * @param file the file to hash
+     * @return the signature
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    static long[] signatureOf(File file) throws IOException {
+        long[] minHashes = new long[SIGNATURE_SIZE];
+        Arrays.fill(minHashes, Long.MAX_VALUE);
+        long[] window = new long[SHINGLE_WORDS];
+        long words = 0;
+        long wordHash = FNV_OFFSET;
+        boolean inWord = false;
+        try (ReadableByteChannel channel = CompressedFiles.openChannel(file)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                int limit = buffer.limit();
+                for (int i = 0; i < limit; i++) {
+                    byte b = buffer.get(i);
+                    if (Tokenizer.isSeparator(b)) {
+                        if (inWord) {
+                            window[(int) (words++ % SHINGLE_WORDS)] = wordHash;
+                            if (words >= SHINGLE_WORDS) {
+                                addShingle(minHashes, window, words, SHINGLE_WORDS);
+                            }
+                            wordHash = FNV_OFFSET;
+                            inWord = false;
+                        }
+                    }
+                    else {
+                        wordHash = (wordHash ^ (b & 0xff)) * FNV_PRIME;
+                        inWord = true;
+                    }
+                }
+                buffer.clear();
+            }
+        }
+        if (inWord) {
+            window[(int) (words++ % SHINGLE_WORDS)] = wordHash;
+            if (words >= SHINGLE_WORDS) {
+                addShingle(minHashes, window, words, SHINGLE_WORDS);
+            }
+        }
+        if (words > 0 && words < SHINGLE_WORDS) {
+            addShingle(minHashes, window, words, (int) words);
+        }
+        return minHashes;
+    }
+
+    /**
+     * Hashes the last {@code length} words of the window as one shingle and lowers the signature's
+     * minimums with it.
+     */
+    private static void addShingle(long[] minHashes, long[] window, long words, int length) {
+        long shingle = FNV_OFFSET;
+        for (long word = words - length; word < words; word++) {
+            shingle = shingle * FNV_PRIME + window[(int) (word % SHINGLE_WORDS)];
+        }
+        shingle = mix(shingle);
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            long hash = shingle * MULTIPLIERS[i] + OFFSETS[i];
+            if (hash < minHashes[i]) {
+                minHashes[i] = hash;
+            }
+        }
+    }
+
+    /**
+     * Chooses the fewest bands, i.e. the most rows per band, for which two files exactly at the threshold
+     * still share a band with a probability of at least {@value #BAND_RECALL}. Fewer bands mean fewer
+     * dissimilar files bucketed together.
+     */
+    static int rowsPerBand(double threshold) {
+        for (int rows = SIGNATURE_SIZE; rows > 1; rows /= 2) {
+            int bands = SIGNATURE_SIZE / rows;
+            if (1 - Math.pow(1 - Math.pow(threshold, rows), bands) >= BAND_RECALL) {
+                return rows;
+            }
+        }
+        return 1;
+    }
+
+    private static long bandKey(long[] signature, int band, int rows) {
+        long key = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            key = mix(key ^ signature[i]);
+        }
+        return key;
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
\ No newline at end of file
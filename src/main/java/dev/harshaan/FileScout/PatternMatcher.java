@@ -0,0 +1,49 @@
+package dev.harshaan.FileScout;
+
+/**
+ * Finds the occurrences of one or more literal patterns in a buffer of text.
+ */
+public interface PatternMatcher {
+    /**
+     * Receives one occurrence of a pattern.
+     */
+    interface Occurrence {
+        /**
+         * Accepts an occurrence.
+         *
+         * @param pattern the index of the pattern that occurs
+         * @param start   the position of the first character of the occurrence in the buffer
+         * @param end     the position after the last character of the occurrence in the buffer
+         */
+        void found(int pattern, int start, int end);
+    }
+
+    /**
+     * Gets the length of the longest pattern. A buffer scanned in chunks must carry this many
+     * characters minus one over to the next chunk so occurrences spanning two chunks are found.
+     *
+     * @return the length of the longest pattern
+     */
+    int maxLength();
+
+    /**
+     * Finds the occurrences in a range of a buffer, in order of their end positions.
+     *
+     * @param text       the buffer
+     * @param from       the start of the range
+     * @param to         the end of the range, exclusive
+     * @param occurrence receives each occurrence
+     */
+    void find(char[] text, int from, int to, Occurrence occurrence);
+
+    /**
+     * Folds a character for case-insensitive matching. Characters are folded one at a time so a
+     * folded pattern keeps its length.
+     *
+     * @param c the character
+     * @return the lower-case form of the character
+     */
+    static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+}
\ No newline at end of file
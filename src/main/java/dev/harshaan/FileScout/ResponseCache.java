@@ -0,0 +1,166 @@
+package dev.harshaan.FileScout;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of serialized responses of the read endpoints.
+ * A response is cached per scope, i.e. directory, endpoint and parameters, together with the version
+ * of the directory or file it was computed from; it is only served while that version is current, and
+ * a response computed for a newer version replaces it. The cache is bounded by the total size of the
+ * cached bodies, not by their number, so a few large listings cannot take unbounded memory.
+ */
+@Component
+public class ResponseCache {
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * A cached response.
+     *
+     * @param version the version of the directory or file the response was computed from
+     * @param etag    the entity tag of the response, see {@link #etag(String, String)}
+     * @param body    the serialized body
+     * @param headers the headers to send with the body, besides the entity tag
+     */
+    public record Entry(String version, String etag, byte[] body, Map<String, String> headers) {
+        private long weight(String scope) {
+            return body.length + 2L * (scope.length() + version.length()) + ENTRY_OVERHEAD;
+        }
+    }
+
+    /**
+     * Computes the body and headers of a response that is not cached.
+     */
+    public interface Loader {
+        /**
+         * Computes the response.
+         *
+         * @param headers receives the headers to send with the body
+         * @return the serialized body
+         * @throws Exception if the response cannot be computed
+         */
+        byte[] load(Map<String, String> headers) throws Exception;
+    }
+
+    /**
+     * Constructs a cache of at most 32 MiB whose metrics are recorded in memory only.
+     */
+    public ResponseCache() {
+        this(32L * 1024 * 1024, new FileScoutMetrics());
+    }
+
+    /**
+     * Constructs a cache and registers a gauge for the size of its bodies.
+     *
+     * @param maxBytes the most bytes the cached responses may take
+     * @param metrics  the metrics to register the gauge to
+     */
+    @Autowired
+    public ResponseCache(@Value("${filescout.responseCache.maxBytes:33554432}") long maxBytes, FileScoutMetrics metrics) {
+        this.maxBytes = maxBytes;
+        metrics.gauge("filescout.responsecache.bytes", "Bytes taken by cached responses", this::bytes);
+    }
+
+    /**
+     * Computes the entity tag of a response from its scope and version, so clients can revalidate it
+     * without the body being computed again.
+     *
+     * @param scope   the directory, endpoint and parameters of the response
+     * @param version the version of the directory or file the response is computed from
+     * @return the quoted entity tag
+     */
+    public static String etag(String scope, String version) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(scope.getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) 0);
+            sha256.update(version.getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(sha256.digest(), 0, 16) + "\"";
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Gets the cached response of a scope, computing and caching it if there is none for the version.
+     * Concurrent misses compute the response independently; the last one to finish is kept.
+     *
+     * @param scope   the directory, endpoint and parameters of the response
+     * @param version the current version of the directory or file the response is computed from
+     * @param loader  computes the response on a miss
+     * @return the response
+     * @throws Exception if the response cannot be computed
+     */
+    public Entry get(String scope, String version, Loader loader) throws Exception {
+        Entry cached = get(scope, version);
+        if (cached != null) {
+            return cached;
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        byte[] body = loader.load(headers);
+        Entry loaded = new Entry(version, etag(scope, version), body, Map.copyOf(headers));
+        put(scope, loaded);
+        return loaded;
+    }
+
+    /**
+     * Gets the cached response of a scope if it was computed for the version.
+     *
+     * @param scope   the directory, endpoint and parameters of the response
+     * @param version the current version of the directory or file the response is computed from
+     * @return the response, or null if there is none for the version
+     */
+    public synchronized Entry get(String scope, String version) {
+        Entry cached = entries.get(scope);
+        return cached != null && cached.version().equals(version) ? cached : null;
+    }
+
+    /**
+     * Caches a response, replacing the one of an older version and evicting the least recently used
+     * responses until the cache fits its size. Responses larger than a quarter of the cache are not cached.
+     *
+     * @param scope the directory, endpoint and parameters of the response
+     * @param entry the response
+     */
+    public synchronized void put(String scope, Entry entry) {
+        Entry replaced = entries.remove(scope);
+        if (replaced != null) {
+            bytes -= replaced.weight(scope);
+        }
+        long weight = entry.weight(scope);
+        if (weight > maxBytes / 4) {
+            return;
+        }
+        entries.put(scope, entry);
+        bytes += weight;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            bytes -= eldest.getValue().weight(eldest.getKey());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Gets the size of the cached responses.
+     *
+     * @return the weight of the cached bodies, their keys and bookkeeping in bytes
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,372 @@
+package dev.harshaan.FileScout;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Scans files for the matches of a {@link SearchQuery}.
+ * Files are streamed in chunks of {@value #CHUNK_SIZE} characters and never loaded whole. Literal and
+ * boolean queries are matched on the chunks directly, with {@link HorspoolMatcher} for a single term and
+ * {@link AhoCorasickMatcher} for several; phrase and regex queries are matched line by line. Files are
+ * scanned in parallel on a fork/join pool, and the scan stops once the query's limit of files is reached.
+ * Compressed files are decompressed as they are streamed, see {@link CompressedFiles}.
+ */
+public class SearchEngine {
+    private static final Logger logger = Logger.getLogger(SearchEngine.class.getName());
+    static final int CHUNK_SIZE = 1 << 16;
+    private static final int SNIPPET_CONTEXT = 40;
+
+    private final ForkJoinPool pool;
+    private final FileScoutMetrics metrics;
+
+    /**
+     * Constructs an engine with one scanning thread per core.
+     *
+     * @param metrics the metrics to record scanned files and bytes to
+     */
+    public SearchEngine(FileScoutMetrics metrics) {
+        this(Runtime.getRuntime().availableProcessors(), metrics);
+    }
+
+    /**
+     * Constructs an engine.
+     *
+     * @param parallelism the number of files scanned at once
+     * @param metrics     the metrics to record scanned files and bytes to
+     */
+    public SearchEngine(int parallelism, FileScoutMetrics metrics) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Scans files for the matches of a query, handing each matching file to the consumer as soon as it
+     * has been scanned. Unreadable files are skipped.
+     *
+     * @param files     the files to scan
+     * @param namer     gets the name a file is reported under
+     * @param query     the query
+     * @param operation the operation the scan is recorded under
+     * @param consumer  receives each matching file, at most the query's limit; called from several threads
+     * @param cancelled set to true to stop the scan, e.g. when the client disconnects
+     * @return true if the scan stopped because the limit was reached
+     */
+    public boolean search(List<File> files, Function<File, String> namer, SearchQuery query, String operation,
+                          Consumer<SearchHit> consumer, AtomicBoolean cancelled) {
+        FileScanner scanner = scannerFor(query);
+        AtomicInteger found = new AtomicInteger();
+        AtomicBoolean limitReached = new AtomicBoolean();
+        Timer.Sample scan = metrics.start();
+        pool.invoke(new ScanTask(files, 0, files.size(), file -> {
+            if (cancelled.get() || limitReached.get()) {
+                return;
+            }
+            SearchHit hit;
+            try {
+                hit = scanner.scan(file, namer.apply(file), query.maxSnippets(), () -> cancelled.get() || limitReached.get());
+            }
+            catch (IOException e) {
+                logger.log(Level.WARNING, "Skipping unreadable file: " + file, e);
+                return;
+            }
+            metrics.bytesRead(operation, file.length());
+            metrics.filesProcessed(operation, 1);
+            if (hit == null) {
+                return;
+            }
+            int count = found.incrementAndGet();
+            if (count <= query.limit()) {
+                consumer.accept(hit);
+            }
+            if (count >= query.limit()) {
+                limitReached.set(true);
+            }
+        }));
+        metrics.stop(scan, operation, "scan");
+        if (limitReached.get()) {
+            metrics.truncated(operation);
+        }
+        return limitReached.get();
+    }
+
+    private static FileScanner scannerFor(SearchQuery query) {
+        return switch (query.type()) {
+            case LITERAL -> new ChunkScanner(new HorspoolMatcher(query.text(), query.ignoreCase()),
+                    List.of(List.of(new SearchQuery.Term(query.text(), false))), List.of(query.text()));
+            case BOOLEAN -> {
+                List<List<SearchQuery.Term>> clauses = query.clauses();
+                List<String> terms = new ArrayList<>();
+                for (List<SearchQuery.Term> clause : clauses) {
+                    for (SearchQuery.Term term : clause) {
+                        if (!terms.contains(term.text())) {
+                            terms.add(term.text());
+                        }
+                    }
+                }
+                PatternMatcher matcher = terms.size() == 1
+                        ? new HorspoolMatcher(terms.get(0), query.ignoreCase())
+                        : new AhoCorasickMatcher(terms, query.ignoreCase());
+                yield new ChunkScanner(matcher, clauses, terms);
+            }
+            case PHRASE, REGEX -> new LineScanner(query.pattern());
+        };
+    }
+
+    /**
+     * Scans one file.
+     */
+    private interface FileScanner {
+        /**
+         * Scans a file.
+         *
+         * @param file        the file
+         * @param fileName    the name the file is reported under
+         * @param maxSnippets the maximum number of snippets to collect
+         * @param stopped     checked between chunks; the scan is abandoned once it returns true
+         * @return the hit, or null if the file does not match or the scan was abandoned
+         * @throws IOException if the file cannot be read
+         */
+        SearchHit scan(File file, String fileName, int maxSnippets, StopSignal stopped) throws IOException;
+    }
+
+    private interface StopSignal {
+        boolean get();
+    }
+
+    /**
+     * Matches literal terms on the raw chunks. Each chunk starts with the last characters of the
+     * previous one, so terms spanning two chunks are found; a match is only counted in the chunk it ends in.
+     */
+    private static final class ChunkScanner implements FileScanner {
+        private final PatternMatcher matcher;
+        private final int[][] required;
+        private final int[][] excluded;
+        private final boolean[] reported;
+
+        ChunkScanner(PatternMatcher matcher, List<List<SearchQuery.Term>> clauses, List<String> terms) {
+            this.matcher = matcher;
+            this.required = new int[clauses.size()][];
+            this.excluded = new int[clauses.size()][];
+            this.reported = new boolean[terms.size()];
+            for (int c = 0; c < clauses.size(); c++) {
+                List<SearchQuery.Term> clause = clauses.get(c);
+                required[c] = clause.stream().filter(term -> !term.negated()).mapToInt(term -> terms.indexOf(term.text())).toArray();
+                excluded[c] = clause.stream().filter(SearchQuery.Term::negated).mapToInt(term -> terms.indexOf(term.text())).toArray();
+                for (int term : required[c]) {
+                    reported[term] = true;
+                }
+            }
+        }
+
+        @Override
+        public SearchHit scan(File file, String fileName, int maxSnippets, StopSignal stopped) throws IOException {
+            long[] counts = new long[reported.length];
+            List<SearchHit.Snippet> snippets = new ArrayList<>();
+            int overlap = matcher.maxLength() - 1;
+            char[] buffer = new char[CHUNK_SIZE + overlap];
+            long bufferOffset = 0;
+            long bufferLine = 1;
+            int carried = 0;
+            try (Reader reader = new InputStreamReader(CompressedFiles.open(file), StandardCharsets.UTF_8)) {
+                int read;
+                while ((read = reader.read(buffer, carried, CHUNK_SIZE)) != -1) {
+                    if (stopped.get()) {
+                        return null;
+                    }
+                    int end = carried + read;
+                    int newFrom = carried;
+                    long offset = bufferOffset;
+                    long line = bufferLine;
+                    matcher.find(buffer, 0, end, (term, start, stop) -> {
+                        if (stop <= newFrom) {
+                            return;
+                        }
+                        counts[term]++;
+                        if (reported[term] && snippets.size() < maxSnippets) {
+                            snippets.add(new SearchHit.Snippet(line + countLines(buffer, 0, start), offset + start,
+                                    snippet(buffer, 0, end, start, stop)));
+                        }
+                    });
+
+                    int keep = Math.min(overlap, end);
+                    if (snippets.size() < maxSnippets) {
+                        bufferLine += countLines(buffer, 0, end - keep);
+                    }
+                    System.arraycopy(buffer, end - keep, buffer, 0, keep);
+                    bufferOffset += end - keep;
+                    carried = keep;
+                }
+            }
+
+            long matchCount = 0;
+            boolean matches = false;
+            for (int c = 0; c < required.length; c++) {
+                if (Arrays.stream(required[c]).allMatch(term -> counts[term] > 0)
+                        && Arrays.stream(excluded[c]).allMatch(term -> counts[term] == 0)) {
+                    matches = true;
+                }
+            }
+            if (!matches) {
+                return null;
+            }
+            for (int term = 0; term < counts.length; term++) {
+                if (reported[term]) {
+                    matchCount += counts[term];
+                }
+            }
+            snippets.sort(Comparator.comparingLong(SearchHit.Snippet::offset));
+            return new SearchHit(fileName, matchCount, snippets);
+        }
+    }
+
+    /**
+     * Matches a pattern against each line. Lines are cut from the chunks without copying unless they
+     * span two chunks.
+     */
+    private static final class LineScanner implements FileScanner {
+        private final Pattern pattern;
+
+        LineScanner(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public SearchHit scan(File file, String fileName, int maxSnippets, StopSignal stopped) throws IOException {
+            long[] matchCount = new long[1];
+            List<SearchHit.Snippet> snippets = new ArrayList<>();
+            char[] buffer = new char[CHUNK_SIZE];
+            StringBuilder partial = new StringBuilder();
+            long lineNumber = 1;
+            long lineOffset = 0;
+            try (Reader reader = new InputStreamReader(CompressedFiles.open(file), StandardCharsets.UTF_8)) {
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    if (stopped.get()) {
+                        return null;
+                    }
+                    int lineStart = 0;
+                    for (int i = 0; i < read; i++) {
+                        if (buffer[i] != '\n') {
+                            continue;
+                        }
+                        CharSequence line;
+                        if (partial.isEmpty()) {
+                            line = CharBuffer.wrap(buffer, lineStart, i - lineStart);
+                        }
+                        else {
+                            line = partial.append(buffer, lineStart, i - lineStart);
+                        }
+                        matchLine(line, lineNumber, lineOffset, maxSnippets, matchCount, snippets);
+                        lineOffset += line.length() + 1;
+                        lineNumber++;
+                        partial.setLength(0);
+                        lineStart = i + 1;
+                    }
+                    partial.append(buffer, lineStart, read - lineStart);
+                }
+            }
+            if (!partial.isEmpty()) {
+                matchLine(partial, lineNumber, lineOffset, maxSnippets, matchCount, snippets);
+            }
+            return matchCount[0] == 0 ? null : new SearchHit(fileName, matchCount[0], snippets);
+        }
+
+        private void matchLine(CharSequence line, long lineNumber, long lineOffset, int maxSnippets,
+                               long[] matchCount, List<SearchHit.Snippet> snippets) {
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                length--;
+            }
+            Matcher matcher = pattern.matcher(line).region(0, length);
+            while (matcher.find()) {
+                matchCount[0]++;
+                if (snippets.size() < maxSnippets) {
+                    snippets.add(new SearchHit.Snippet(lineNumber, lineOffset + matcher.start(),
+                            snippet(line, 0, length, matcher.start(), matcher.end())));
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans a range of the files, splitting it in halves until each task scans one file.
+     */
+    private static final class ScanTask extends RecursiveAction {
+        private final List<File> files;
+        private final int from;
+        private final int to;
+        private final Consumer<File> scan;
+
+        ScanTask(List<File> files, int from, int to, Consumer<File> scan) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.scan = scan;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    scan.accept(files.get(from));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ScanTask(files, from, middle, scan), new ScanTask(files, middle, to, scan));
+        }
+    }
+
+    private static long countLines(char[] buffer, int from, int to) {
+        long lines = 0;
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static String snippet(char[] buffer, int from, int to, int start, int end) {
+        return snippet(CharBuffer.wrap(buffer), from, to, start, end);
+    }
+
+    /**
+     * Cuts a match and up to {@value #SNIPPET_CONTEXT} characters on either side out of its line.
+     *
+     * @param text  the text holding the match
+     * @param from  the first position that may be included
+     * @param to    the position after the last that may be included
+     * @param start the start of the match
+     * @param end   the end of the match
+     * @return the snippet
+     */
+    private static String snippet(CharSequence text, int from, int to, int start, int end) {
+        int snippetStart = start;
+        while (snippetStart > from && start - snippetStart < SNIPPET_CONTEXT && text.charAt(snippetStart - 1) != '\n') {
+            snippetStart--;
+        }
+        int snippetEnd = end;
+        while (snippetEnd < to && snippetEnd - end < SNIPPET_CONTEXT && text.charAt(snippetEnd) != '\n' && text.charAt(snippetEnd) != '\r') {
+            snippetEnd++;
+        }
+        return text.subSequence(snippetStart, snippetEnd).toString().strip();
+    }
+}
\ No newline at end of file
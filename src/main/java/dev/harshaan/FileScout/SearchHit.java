@@ -0,0 +1,22 @@
+package dev.harshaan.FileScout;
+
+import java.util.List;
+
+/**
+ * A file matching a {@link SearchQuery}.
+ *
+ * @param fileName   the path of the file, relative to the workspace's directory
+ * @param matchCount the number of matches in the file
+ * @param snippets   the first matches, so clients can show them without fetching the file
+ */
+public record SearchHit(String fileName, long matchCount, List<Snippet> snippets) {
+    /**
+     * One match and the text around it.
+     *
+     * @param line   the number of the line the match starts on, starting at 1
+     * @param offset the character offset of the match from the start of the file
+     * @param text   the match with up to 40 characters of its line on either side
+     */
+    public record Snippet(long line, long offset, String text) {
+    }
+}
\ No newline at end of file
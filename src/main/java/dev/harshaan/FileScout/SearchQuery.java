@@ -0,0 +1,180 @@
+package dev.harshaan.FileScout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A query for {@link SearchEngine}.
+ *
+ * @param type        how the text is interpreted
+ * @param text        the text of the query
+ * @param ignoreCase  whether matching ignores case
+ * @param limit       the maximum number of files to report
+ * @param maxSnippets the maximum number of snippets to report per file
+ */
+public record SearchQuery(Type type, String text, boolean ignoreCase, int limit, int maxSnippets) {
+    private static final String WORD_CHAR = "[\\p{IsLetter}\\p{IsDigit}]";
+
+    /**
+     * The kinds of queries.
+     */
+    public enum Type {
+        /**
+         * The text occurs anywhere in the file, as with the plain keyword search.
+         */
+        LITERAL,
+        /**
+         * The words of the text occur in order as whole words within one line, separated by anything
+         * but letters and digits.
+         */
+        PHRASE,
+        /**
+         * Terms combined with {@code AND}, {@code OR} and {@code NOT}. Terms next to each other must
+         * all occur, {@code OR} separates alternatives, {@code NOT term} or {@code -term} must not
+         * occur, and {@code "quoted text"} is a single term.
+         */
+        BOOLEAN,
+        /**
+         * A {@link Pattern} matched against each line.
+         */
+        REGEX
+    }
+
+    /**
+     * A literal term of a boolean query.
+     *
+     * @param text    the text of the term
+     * @param negated true if the term must not occur
+     */
+    public record Term(String text, boolean negated) {
+    }
+
+    /**
+     * Creates a query from request parameters and checks that it can be compiled.
+     *
+     * @param type        the name of the query type, case-insensitive
+     * @param text        the text of the query
+     * @param ignoreCase  whether matching ignores case
+     * @param limit       the maximum number of files to report; 0 or less for no limit
+     * @param maxSnippets the maximum number of snippets to report per file
+     * @return the query
+     * @throws IllegalArgumentException if the type is unknown or the text is not a valid query of its type
+     */
+    public static SearchQuery of(String type, String text, boolean ignoreCase, int limit, int maxSnippets) {
+        Type parsedType;
+        try {
+            parsedType = Type.valueOf(type.trim().toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown search type: " + type + ", expected one of "
+                    + Arrays.stream(Type.values()).map(t -> t.name().toLowerCase(Locale.ROOT)).collect(Collectors.joining(", ")));
+        }
+        if (text == null || text.isEmpty()) {
+            throw new IllegalArgumentException("Empty search query");
+        }
+        SearchQuery query = new SearchQuery(parsedType, text, ignoreCase, limit > 0 ? limit : Integer.MAX_VALUE, Math.max(0, maxSnippets));
+        switch (parsedType) {
+            case BOOLEAN -> query.clauses();
+            case PHRASE, REGEX -> query.pattern();
+            default -> {
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Parses the text of a boolean query into alternatives, each a list of terms that must all hold.
+     *
+     * @return the alternatives
+     * @throws IllegalArgumentException if an alternative has no term that must occur, or a quote is not closed
+     */
+    public List<List<Term>> clauses() {
+        List<List<Term>> clauses = new ArrayList<>();
+        List<Term> clause = new ArrayList<>();
+        boolean negated = false;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            String token;
+            boolean quoted = false;
+            if (c == '-' && i + 1 < text.length() && !Character.isWhitespace(text.charAt(i + 1))) {
+                negated = true;
+                i++;
+                continue;
+            }
+            if (c == '"') {
+                int close = text.indexOf('"', i + 1);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed quote in search query: " + text);
+                }
+                token = text.substring(i + 1, close);
+                quoted = true;
+                i = close + 1;
+            }
+            else {
+                int end = i;
+                while (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+                    end++;
+                }
+                token = text.substring(i, end);
+                i = end;
+            }
+
+            if (!quoted && token.equals("OR")) {
+                addClause(clauses, clause);
+                clause = new ArrayList<>();
+                negated = false;
+            }
+            else if (!quoted && token.equals("NOT")) {
+                negated = true;
+            }
+            else if (!quoted && token.equals("AND")) {
+                negated = false;
+            }
+            else {
+                if (!token.isEmpty()) {
+                    clause.add(new Term(token, negated));
+                }
+                negated = false;
+            }
+        }
+        addClause(clauses, clause);
+        return clauses;
+    }
+
+    private void addClause(List<List<Term>> clauses, List<Term> clause) {
+        if (clause.stream().allMatch(Term::negated)) {
+            throw new IllegalArgumentException("Every alternative of a search query needs a term that must occur: " + text);
+        }
+        clauses.add(clause);
+    }
+
+    /**
+     * Compiles a phrase or regex query into the pattern matched against each line.
+     *
+     * @return the pattern
+     * @throws IllegalArgumentException if the regex is invalid or the phrase has no words
+     */
+    public Pattern pattern() {
+        int flags = ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+        if (type == Type.REGEX) {
+            return Pattern.compile(text, flags);
+        }
+        List<String> words = Arrays.stream(text.split("[^\\p{IsLetter}\\p{IsDigit}]+"))
+                .filter(word -> !word.isEmpty())
+                .map(Pattern::quote)
+                .toList();
+        if (words.isEmpty()) {
+            throw new IllegalArgumentException("A phrase needs at least one word: " + text);
+        }
+        return Pattern.compile("(?<!" + WORD_CHAR + ")" + String.join("[^\\p{IsLetter}\\p{IsDigit}]+", words) + "(?!" + WORD_CHAR + ")", flags);
+    }
+}
\ No newline at end of file
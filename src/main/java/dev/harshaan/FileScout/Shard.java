@@ -0,0 +1,46 @@
+package dev.harshaan.FileScout;
+
+import java.io.File;
+
+/**
+ * The part of a directory one worker answers for in cluster mode, see {@link ClusterService}.
+ * Files are assigned by the top-level entry of the directory they are in, so a subtree belongs to one
+ * worker as a whole, and files directly inside the directory are assigned one by one.
+ *
+ * @param ring the workers the directory is split between
+ * @param node the worker this shard belongs to
+ */
+public record Shard(HashRing ring, String node) {
+    /**
+     * Checks that the worker is on the ring.
+     *
+     * @throws IllegalArgumentException if the ring does not contain the worker
+     */
+    public Shard {
+        if (!ring.nodes().contains(node)) {
+            throw new IllegalArgumentException("Unknown shard node: " + node + ", expected one of " + ring.nodes());
+        }
+    }
+
+    /**
+     * Gets the key a file is assigned by: the first component of its relative path.
+     *
+     * @param relativeName the path of the file, relative to the directory
+     * @return the name of the top-level file or directory the file is in
+     */
+    public static String keyOf(String relativeName) {
+        String normalized = relativeName.replace(File.separatorChar, '/');
+        int slash = normalized.indexOf('/');
+        return slash < 0 ? normalized : normalized.substring(0, slash);
+    }
+
+    /**
+     * Checks if a file or top-level directory belongs to this shard.
+     *
+     * @param relativeName the path of the file or directory, relative to the directory
+     * @return true if this shard's worker answers for it
+     */
+    public boolean owns(String relativeName) {
+        return ring.nodeFor(keyOf(relativeName)).equals(node);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,186 @@
+package dev.harshaan.FileScout;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * REST controller for the worker side of cluster mode, called by the coordinator, see {@link ClusterService}.
+ * Every request names the directory, the files to include, and the hash ring that splits the directory
+ * between the workers; the worker only answers for its own shard of it.
+ */
+@RestController
+@RequestMapping("/api/shard")
+public class ShardController {
+    static final String TRUNCATED_HEADER = "X-Search-Truncated";
+
+    @Autowired
+    private FileScoutService fileScoutService;
+
+    /**
+     * Searches this worker's shard for a keyword.
+     * @param directoryPath the path of the directory
+     * @param keyword       the keyword to search for
+     * @param maxDepth      the number of directory levels to descend
+     * @param extensions    the file extensions to search
+     * @param nodes         the workers the directory is split between
+     * @param node          this worker, as named in the nodes
+     * @param virtualNodes  the number of points per worker on the hash ring
+     * @return the names of the shard's files containing the keyword, 400 if the shard is invalid
+     */
+    @GetMapping("/keywordSearch")
+    public ResponseEntity<List<String>> keywordSearch(@RequestParam String directoryPath, @RequestParam String keyword,
+                                                      @RequestParam int maxDepth, @RequestParam(required = false) Set<String> extensions,
+                                                      @RequestParam List<String> nodes, @RequestParam String node,
+                                                      @RequestParam int virtualNodes) {
+        try {
+            String workspaceId = fileScoutService.openShard(directoryPath, shardOptions(maxDepth, extensions, nodes, node, virtualNodes));
+            return ResponseEntity.ok(fileScoutService.keywordSearch(workspaceId, keyword));
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    /**
+     * Searches this worker's shard with a query of the given type, see {@link FileScoutController#search}.
+     * If more files match than the limit, the X-Search-Truncated header is true.
+     * @param directoryPath the path of the directory
+     * @param keyword       the text of the query
+     * @param type          the type of the query
+     * @param ignoreCase    whether matching ignores case
+     * @param limit         the maximum number of files to return; 0 for no limit
+     * @param snippets      the maximum number of snippets to return per file
+     * @param maxDepth      the number of directory levels to descend
+     * @param extensions    the file extensions to search
+     * @param nodes         the workers the directory is split between
+     * @param node          this worker, as named in the nodes
+     * @param virtualNodes  the number of points per worker on the hash ring
+     * @return the shard's matching files with their match counts and snippets, 400 if the query or shard is invalid
+     */
+    @GetMapping(value = "/keywordSearch", params = "type")
+    public ResponseEntity<List<SearchHit>> search(@RequestParam String directoryPath, @RequestParam String keyword,
+                                                  @RequestParam String type,
+                                                  @RequestParam(defaultValue = "false") boolean ignoreCase,
+                                                  @RequestParam(defaultValue = "100") int limit,
+                                                  @RequestParam(defaultValue = "3") int snippets,
+                                                  @RequestParam int maxDepth, @RequestParam(required = false) Set<String> extensions,
+                                                  @RequestParam List<String> nodes, @RequestParam String node,
+                                                  @RequestParam int virtualNodes) {
+        try {
+            SearchQuery query = SearchQuery.of(type, keyword, ignoreCase, limit, snippets);
+            String workspaceId = fileScoutService.openShard(directoryPath, shardOptions(maxDepth, extensions, nodes, node, virtualNodes));
+            AtomicBoolean truncated = new AtomicBoolean();
+            List<SearchHit> results = fileScoutService.search(workspaceId, query, truncated);
+            return ResponseEntity.ok().header(TRUNCATED_HEADER, String.valueOf(truncated.get())).body(results);
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    /**
+     * Counts words in a file of the directory. The coordinator sends this to the worker owning the file.
+     * @param directoryPath the path of the directory
+     * @param fileName      the name of the file, relative to the directory
+     * @param numThreads    the number of threads to use
+     * @param topK          the number of top words to return
+     * @param memoryMapped  whether to memory-map the file and count byte ranges in parallel
+     * @param approximate   whether to estimate the top words within a fixed memory budget
+     * @return a list of word counts
+     */
+    @GetMapping("/countWords")
+    public ResponseEntity<List<String>> countWords(@RequestParam String directoryPath, @RequestParam String fileName,
+                                                   @RequestParam int numThreads,
+                                                   @RequestParam(defaultValue = "10") int topK,
+                                                   @RequestParam(defaultValue = "false") boolean memoryMapped,
+                                                   @RequestParam(defaultValue = "false") boolean approximate) {
+        try {
+            WordCountOptions options = new WordCountOptions(topK, memoryMapped, approximate);
+            return ResponseEntity.ok(fileScoutService.countWords(fileScoutService.openWorkspace(directoryPath), fileName, numThreads, options));
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    /**
+     * Counts words across every text file of this worker's shard.
+     * @param directoryPath the path of the directory
+     * @param topK          the number of top words to return
+     * @param maxDepth      the number of directory levels to descend
+     * @param extensions    the file extensions to count
+     * @param nodes         the workers the directory is split between
+     * @param node          this worker, as named in the nodes
+     * @param virtualNodes  the number of points per worker on the hash ring
+     * @return the shard's top words and their counts, 400 if the shard is invalid
+     */
+    @GetMapping("/countWords/corpus")
+    public ResponseEntity<List<String>> countCorpusWords(@RequestParam String directoryPath,
+                                                         @RequestParam(defaultValue = "10") int topK,
+                                                         @RequestParam int maxDepth, @RequestParam(required = false) Set<String> extensions,
+                                                         @RequestParam List<String> nodes, @RequestParam String node,
+                                                         @RequestParam int virtualNodes) {
+        try {
+            String workspaceId = fileScoutService.openShard(directoryPath, shardOptions(maxDepth, extensions, nodes, node, virtualNodes));
+            return ResponseEntity.ok(fileScoutService.countCorpusWords(workspaceId, WordCountOptions.checkTopK(topK)));
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    /**
+     * Counts given words across every text file of this worker's shard, so the coordinator can complete
+     * the counts of top words this shard did not list.
+     * @param words         the words to count
+     * @param directoryPath the path of the directory
+     * @param maxDepth      the number of directory levels to descend
+     * @param extensions    the file extensions to count
+     * @param nodes         the workers the directory is split between
+     * @param node          this worker, as named in the nodes
+     * @param virtualNodes  the number of points per worker on the hash ring
+     * @return the counts of the words that occur in the shard, 400 if the shard is invalid
+     */
+    @PostMapping("/countWords/corpus/lookup")
+    public ResponseEntity<List<String>> lookupCorpusWords(@RequestBody List<String> words, @RequestParam String directoryPath,
+                                                          @RequestParam int maxDepth, @RequestParam(required = false) Set<String> extensions,
+                                                          @RequestParam List<String> nodes, @RequestParam String node,
+                                                          @RequestParam int virtualNodes) {
+        try {
+            String workspaceId = fileScoutService.openShard(directoryPath, shardOptions(maxDepth, extensions, nodes, node, virtualNodes));
+            return ResponseEntity.ok(fileScoutService.countCorpusWords(workspaceId, words));
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    /**
+     * Builds the load options of a shard from request parameters.
+     * @throws IllegalArgumentException if there are no nodes or the node is not one of them
+     */
+    private static DirectoryLoadOptions shardOptions(int maxDepth, Set<String> extensions, List<String> nodes, String node,
+                                                     int virtualNodes) {
+        return DirectoryLoadOptions.of(maxDepth, extensions).withShard(new Shard(new HashRing(nodes, virtualNodes), node));
+    }
+}
\ No newline at end of file
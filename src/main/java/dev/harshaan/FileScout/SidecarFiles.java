@@ -0,0 +1,92 @@
+package dev.harshaan.FileScout;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Resolves the locations of the sidecar files (indexes, caches) FileScout keeps for a loaded directory.
+ * Sidecars live outside the user's directory, under the {@code filescout.dataDir} system property
+ * or {@code java.io.tmpdir/filescout} when it is not set.
+ */
+final class SidecarFiles {
+    private static final String DATA_DIR_PROPERTY = "filescout.dataDir";
+
+    private SidecarFiles() {
+    }
+
+    /**
+     * Gets the sidecar file of the given kind for a directory.
+     *
+     * @param directoryPath the directory the sidecar belongs to
+     * @param kind          the kind of sidecar, used as the file extension (e.g. "index")
+     * @return the path of the sidecar file; its parent directory is not created
+     */
+    static Path forDirectory(String directoryPath, String kind) {
+        String absolutePath = new File(directoryPath).getAbsolutePath();
+        String name = new File(absolutePath).getName().replaceAll("[^A-Za-z0-9._-]", "_");
+        return dataDirectory().resolve(name + "-" + digest(absolutePath) + "." + kind);
+    }
+
+    /**
+     * Gets the directory all sidecar files are stored in.
+     *
+     * @return the sidecar directory
+     */
+    static Path dataDirectory() {
+        String configured = System.getProperty(DATA_DIR_PROPERTY);
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("java.io.tmpdir"), "filescout");
+    }
+
+    /**
+     * Writes a sidecar file through a temporary file that atomically replaces it, so a crash never
+     * leaves a truncated sidecar behind.
+     *
+     * @param sidecar the sidecar file to write
+     * @param writer  writes the sidecar's content
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeAtomically(Path sidecar, SidecarWriter writer) throws IOException {
+        Files.createDirectories(sidecar.getParent());
+        Path tempFile = Files.createTempFile(sidecar.getParent(), sidecar.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                writer.write(out);
+            }
+            Files.move(tempFile, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Writes the content of a sidecar file.
+     */
+    interface SidecarWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static String digest(String value) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] hash = sha1.digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        }
+        catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+}
\ No newline at end of file
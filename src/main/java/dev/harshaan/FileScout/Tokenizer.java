@@ -0,0 +1,298 @@
+package dev.harshaan.FileScout;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits text into words for every counting path, so file stats and word counts agree on what a word is.
+ * Words are maximal runs of characters between ASCII whitespace. For word counts, each word is then
+ * normalized: only its letters are kept, optionally case-folded, and words that are stopwords or have no
+ * letters left are dropped.
+ * Text is scanned one character at a time, from {@link CharSequence}s such as lines and
+ * {@link java.nio.CharBuffer}s or from UTF-8 {@link ByteBuffer}s such as mapped files, and each normalized
+ * word is handed to a {@link WordSink} as UTF-8 bytes in a reused buffer, so no String is allocated per word.
+ * A tokenizer is immutable and can be shared by any number of threads.
+ */
+@Component
+public class Tokenizer {
+    private static final int MIN_STEM_LENGTH = 3;
+    /**
+     * Words ending in "s" that are not plurals, or whose stem would be wrong.
+     */
+    private static final WordCountTable STEM_EXCEPTIONS = new WordCountTable();
+
+    static {
+        for (String exception : new String[] {"always", "perhaps", "whereas", "towards", "afterwards", "besides",
+                "news", "series", "species", "lens"}) {
+            byte[] bytes = exception.getBytes(StandardCharsets.US_ASCII);
+            int hash = WordCountTable.initialHash();
+            for (byte b : bytes) {
+                hash = WordCountTable.updateHash(hash, b);
+            }
+            STEM_EXCEPTIONS.add(bytes, 0, bytes.length, hash, 1);
+        }
+    }
+
+    private final boolean foldCase;
+    private final boolean unicodeLetters;
+    private final boolean stem;
+    private final WordCountTable stopwords = new WordCountTable();
+
+    /**
+     * Constructs a tokenizer that keeps Unicode letters and folds case, without stopwords or stemming.
+     */
+    public Tokenizer() {
+        this(true, true, new String[0], false);
+    }
+
+    /**
+     * Constructs a tokenizer.
+     *
+     * @param foldCase       whether to lower-case words
+     * @param unicodeLetters whether to keep the letters of any script; otherwise only ASCII letters are kept
+     * @param stopwords      words to drop, given in any case; normalized like the words they are compared to
+     * @param stem           whether to reduce plural words to their singular form, e.g. "queries" to "query";
+     *                       only lower-case English plural endings are recognized
+     */
+    @Autowired
+    public Tokenizer(@Value("${filescout.tokenizer.foldCase:true}") boolean foldCase,
+                     @Value("${filescout.tokenizer.unicodeLetters:true}") boolean unicodeLetters,
+                     @Value("${filescout.tokenizer.stopwords:}") String[] stopwords,
+                     @Value("${filescout.tokenizer.stem:false}") boolean stem) {
+        this.foldCase = foldCase;
+        this.unicodeLetters = unicodeLetters;
+        // Stopwords are matched before stemming, so they are normalized while stem is still unset.
+        for (String stopword : stopwords) {
+            tokenize(stopword, new byte[64], (word, length, hash) -> this.stopwords.add(word, 0, length, hash, 1));
+        }
+        this.stem = stem;
+    }
+
+    /**
+     * Checks whether a character separates words.
+     *
+     * @param c the character or code point
+     * @return true if the character is ASCII whitespace
+     */
+    public static boolean isSeparator(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Counts the words of text without normalizing them, as the words of a file's stats.
+     *
+     * @param text          the text to count
+     * @param continuesWord whether the text continues a word, whose rest is then not counted again
+     * @return the number of words starting in the text
+     */
+    public static int countWords(CharSequence text, boolean continuesWord) {
+        int words = 0;
+        boolean inWord = continuesWord;
+        for (int i = 0; i < text.length(); i++) {
+            boolean wordChar = !isSeparator(text.charAt(i));
+            if (wordChar && !inWord) {
+                words++;
+            }
+            inWord = wordChar;
+        }
+        return words;
+    }
+
+    /**
+     * Feeds the normalized words of text to a sink. The text must start and end at word boundaries,
+     * e.g. be a whole line.
+     *
+     * @param text the text to split
+     * @param word a scratch buffer for the word being read
+     * @param sink the sink to feed the words to
+     * @return the scratch buffer, grown if a word did not fit
+     */
+    public byte[] tokenize(CharSequence text, byte[] word, WordSink sink) {
+        int length = 0;
+        int hash = WordCountTable.initialHash();
+        int end = text.length();
+        for (int i = 0; i < end; i++) {
+            int c = text.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, text.charAt(++i));
+            }
+            if (isSeparator(c)) {
+                if (length > 0) {
+                    emit(word, length, hash, sink);
+                    length = 0;
+                    hash = WordCountTable.initialHash();
+                }
+                continue;
+            }
+            if (isKept(c)) {
+                if (length + 4 > word.length) {
+                    word = Arrays.copyOf(word, word.length * 2);
+                }
+                int start = length;
+                length = encode(fold(c), word, length);
+                for (int j = start; j < length; j++) {
+                    hash = WordCountTable.updateHash(hash, word[j]);
+                }
+            }
+        }
+        if (length > 0) {
+            emit(word, length, hash, sink);
+        }
+        return word;
+    }
+
+    /**
+     * Feeds the normalized words of UTF-8 bytes to a sink, from the buffer's position to its limit.
+     * The bytes must start and end at word boundaries. Malformed bytes are dropped like any non-letter.
+     * The buffer's position is not changed.
+     *
+     * @param text the UTF-8 bytes to split
+     * @param word a scratch buffer for the word being read
+     * @param sink the sink to feed the words to
+     * @return the scratch buffer, grown if a word did not fit
+     */
+    public byte[] tokenize(ByteBuffer text, byte[] word, WordSink sink) {
+        int length = 0;
+        int hash = WordCountTable.initialHash();
+        int end = text.limit();
+        int i = text.position();
+        while (i < end) {
+            int b = text.get(i) & 0xff;
+            if (b < 0x80) {
+                i++;
+                if (isSeparator(b)) {
+                    if (length > 0) {
+                        emit(word, length, hash, sink);
+                        length = 0;
+                        hash = WordCountTable.initialHash();
+                    }
+                    continue;
+                }
+                if (!isKept(b)) {
+                    continue;
+                }
+                if (length == word.length) {
+                    word = Arrays.copyOf(word, word.length * 2);
+                }
+                byte folded = (byte) fold(b);
+                word[length++] = folded;
+                hash = WordCountTable.updateHash(hash, folded);
+                continue;
+            }
+            int needed = b >= 0xf0 ? 3 : b >= 0xe0 ? 2 : b >= 0xc0 ? 1 : -1;
+            if (needed < 0 || b >= 0xf8 || i + needed >= end) {
+                i++;
+                continue;
+            }
+            int c = b & (0x3f >> needed);
+            boolean valid = true;
+            for (int j = 1; j <= needed; j++) {
+                int next = text.get(i + j) & 0xff;
+                if ((next & 0xc0) != 0x80) {
+                    valid = false;
+                    break;
+                }
+                c = (c << 6) | (next & 0x3f);
+            }
+            if (!valid) {
+                i++;
+                continue;
+            }
+            i += needed + 1;
+            if (isKept(c)) {
+                if (length + 4 > word.length) {
+                    word = Arrays.copyOf(word, word.length * 2);
+                }
+                int start = length;
+                length = encode(fold(c), word, length);
+                for (int j = start; j < length; j++) {
+                    hash = WordCountTable.updateHash(hash, word[j]);
+                }
+            }
+        }
+        if (length > 0) {
+            emit(word, length, hash, sink);
+        }
+        return word;
+    }
+
+    private boolean isKept(int c) {
+        return unicodeLetters ? Character.isLetter(c) : (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private int fold(int c) {
+        if (!foldCase) {
+            return c;
+        }
+        return c < 0x80 ? ((c >= 'A' && c <= 'Z') ? c | 0x20 : c) : Character.toLowerCase(c);
+    }
+
+    private void emit(byte[] word, int length, int hash, WordSink sink) {
+        if (stopwords.size() > 0 && stopwords.get(word, 0, length, hash) > 0) {
+            return;
+        }
+        if (stem) {
+            int stemmed = stem(word, length, hash);
+            if (stemmed != length) {
+                length = stemmed;
+                hash = WordCountTable.initialHash();
+                for (int i = 0; i < length; i++) {
+                    hash = WordCountTable.updateHash(hash, word[i]);
+                }
+            }
+        }
+        sink.accept(word, length, hash);
+    }
+
+    /**
+     * Strips English plural endings: "ies" becomes "y" and a final "s" is dropped, except after
+     * "a", "e" or "o" before "es" and after "i", "u" or "s", so "this" and "analysis" are kept. An ending
+     * is only stripped if the stemmed word has at least {@value #MIN_STEM_LENGTH} letters, so short words
+     * such as "was" and "its" are kept, and words in {@link #STEM_EXCEPTIONS} are never stemmed.
+     */
+    private static int stem(byte[] word, int length, int hash) {
+        if (length <= MIN_STEM_LENGTH || word[length - 1] != 's' || STEM_EXCEPTIONS.get(word, 0, length, hash) > 0) {
+            return length;
+        }
+        if (length >= MIN_STEM_LENGTH + 2 && word[length - 2] == 'e' && word[length - 3] == 'i'
+                && word[length - 4] != 'e' && word[length - 4] != 'a') {
+            word[length - 3] = 'y';
+            return length - 2;
+        }
+        if (length > 3 && word[length - 2] == 'e'
+                && (word[length - 3] == 'a' || word[length - 3] == 'e' || word[length - 3] == 'o')) {
+            return length;
+        }
+        if (word[length - 2] != 'i' && word[length - 2] != 'u' && word[length - 2] != 's') {
+            return length - 1;
+        }
+        return length;
+    }
+
+    private static int encode(int c, byte[] out, int at) {
+        if (c < 0x80) {
+            out[at++] = (byte) c;
+        }
+        else if (c < 0x800) {
+            out[at++] = (byte) (0xc0 | (c >> 6));
+            out[at++] = (byte) (0x80 | (c & 0x3f));
+        }
+        else if (c < 0x10000) {
+            out[at++] = (byte) (0xe0 | (c >> 12));
+            out[at++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            out[at++] = (byte) (0x80 | (c & 0x3f));
+        }
+        else {
+            out[at++] = (byte) (0xf0 | (c >> 18));
+            out[at++] = (byte) (0x80 | ((c >> 12) & 0x3f));
+            out[at++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            out[at++] = (byte) (0x80 | (c & 0x3f));
+        }
+        return at;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+package dev.harshaan.FileScout;
+
+import java.util.*;
+
+/**
+ * Selects the K most frequent words with a bounded min-heap, in O(n log K) time and O(K) extra memory,
+ * instead of sorting every entry. Ties are broken alphabetically so results are deterministic.
+ */
+public final class TopKSelector {
+    private static final Comparator<Map.Entry<String, Integer>> ASCENDING =
+            Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private TopKSelector() {
+    }
+
+    /**
+     * Selects the top entries by count.
+     *
+     * @param entries the word counts to select from
+     * @param k       the number of entries to return
+     * @return at most {@code k} entries, in descending order of count
+     */
+    public static List<Map.Entry<String, Integer>> select(Iterable<Map.Entry<String, Integer>> entries, int k) {
+        int size = entries instanceof Collection<?> collection ? collection.size() : DEFAULT_CAPACITY;
+        PriorityQueue<Map.Entry<String, Integer>> heap = new PriorityQueue<>(initialCapacity(k, size), ASCENDING);
+        for (Map.Entry<String, Integer> entry : entries) {
+            offer(heap, entry, k);
+        }
+        return drain(heap);
+    }
+
+    /**
+     * Selects the top words of a count table. Ties are broken on the words' bytes in the table, see
+     * {@link WordCountTable#compareWords}, so only the selected words are decoded into Strings; words
+     * whose count dropped to zero are skipped.
+     *
+     * @param table the word counts to select from
+     * @param k     the number of entries to return
+     * @return at most {@code k} entries, in descending order of count
+     */
+    public static List<Map.Entry<String, Integer>> select(WordCountTable table, int k) {
+        Comparator<Integer> ascending = Comparator.<Integer>comparingLong(table::count)
+                .thenComparing((entry, other) -> table.compareWords(other, entry));
+        PriorityQueue<Integer> heap = new PriorityQueue<>(initialCapacity(k, table.size()), ascending);
+        for (int entry = 0; entry < table.size(); entry++) {
+            if (table.count(entry) <= 0) {
+                continue;
+            }
+            if (heap.size() < k) {
+                heap.add(entry);
+            }
+            else if (k > 0 && table.count(entry) >= table.count(heap.peek()) && ascending.compare(entry, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        PriorityQueue<Map.Entry<String, Integer>> entries = new PriorityQueue<>(initialCapacity(k, heap.size()), ASCENDING);
+        for (int entry : heap) {
+            entries.add(Map.entry(table.word(entry), (int) Math.min(Integer.MAX_VALUE, table.count(entry))));
+        }
+        return drain(entries);
+    }
+
+    /**
+     * Sizes a heap for at most {@code k} of {@code size} entries, so a large K does not allocate more
+     * slots than there are entries to select from.
+     */
+    private static int initialCapacity(int k, int size) {
+        return Math.max(1, Math.min(k, size));
+    }
+
+    private static void offer(PriorityQueue<Map.Entry<String, Integer>> heap, Map.Entry<String, Integer> entry, int k) {
+        if (heap.size() < k) {
+            heap.add(entry);
+        }
+        else if (k > 0 && ASCENDING.compare(entry, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    private static List<Map.Entry<String, Integer>> drain(PriorityQueue<Map.Entry<String, Integer>> heap) {
+        List<Map.Entry<String, Integer>> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(heap.poll());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+}
\ No newline at end of file
@@ -20,6 +20,7 @@ public class WebConfig implements WebMvcConfigurer {
                 )
                 .allowedMethods("GET", "POST", "PUT", "DELETE")
                 .allowedHeaders("*")
+                .exposedHeaders("X-Workspace-Id", "X-Search-Truncated", "X-Total-Lines", "Content-Range", "ETag", "X-Partial-Results", "X-Missing-Shards")
                 .allowCredentials(true);
     }
 
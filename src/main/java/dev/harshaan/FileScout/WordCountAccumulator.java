@@ -0,0 +1,177 @@
+package dev.harshaan.FileScout;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How a line-by-line word count combines the counts of the batches it runs in parallel.
+ * Every strategy counts the same words and returns the same top words; they differ only in how much
+ * the counting threads contend with each other and how much they allocate per word.
+ * Selected with {@code filescout.wordCount.accumulator}.
+ */
+public enum WordCountAccumulator {
+    /**
+     * Each batch counts into a {@link WordCountTable} no other batch is using, so words are never
+     * boxed or shared between threads. There are at most as many tables as batches in flight; they are
+     * merged once when the count ends.
+     */
+    PER_THREAD {
+        @Override
+        public Accumulation start(Tokenizer tokenizer) {
+            return new TableAccumulation(tokenizer);
+        }
+    },
+    /**
+     * All batches count into one map of {@link LongAdder}s, which spread the updates of frequent words
+     * over several cells instead of contending on one.
+     */
+    STRIPED {
+        @Override
+        public Accumulation start(Tokenizer tokenizer) {
+            return new AdderAccumulation(tokenizer);
+        }
+    },
+    /**
+     * All batches merge boxed counts into one {@link ConcurrentHashMap}. Kept to compare the other
+     * strategies against.
+     */
+    CONCURRENT_MAP {
+        @Override
+        public Accumulation start(Tokenizer tokenizer) {
+            return new MapAccumulation(tokenizer);
+        }
+    };
+
+    /**
+     * Starts accumulating the counts of one word count.
+     *
+     * @param tokenizer the tokenizer to split lines into words with
+     * @return the counts of the word count, initially empty
+     */
+    public abstract Accumulation start(Tokenizer tokenizer);
+
+    /**
+     * The counts of one word count, shared by the threads counting its batches.
+     */
+    public interface Accumulation {
+        /**
+         * Counts the words of a batch of lines. May be called from several threads at once.
+         *
+         * @param lines the lines to count
+         */
+        void countLines(List<String> lines);
+
+        /**
+         * Selects the top words counted so far. Batches still being counted are skipped or only
+         * partly included, so a truncated count can still return what it has.
+         *
+         * @param k the number of top words to return
+         * @return at most {@code k} words and their counts, in descending order of count
+         */
+        List<Map.Entry<String, Integer>> topWords(int k);
+    }
+
+    private static final class TableAccumulation implements Accumulation {
+        private final Tokenizer tokenizer;
+        private final Queue<WordCountTable> idle = new ConcurrentLinkedQueue<>();
+
+        private TableAccumulation(Tokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+        }
+
+        @Override
+        public void countLines(List<String> lines) {
+            WordCountTable table = idle.poll();
+            if (table == null) {
+                table = new WordCountTable();
+            }
+            try {
+                byte[] word = new byte[64];
+                for (String line : lines) {
+                    word = tokenizer.tokenize(line, word, table);
+                }
+            }
+            finally {
+                idle.offer(table);
+            }
+        }
+
+        /**
+         * Merges the tables no batch is counting into; taking them from the idle queue keeps any batch
+         * still running from writing to a table while it is merged.
+         */
+        @Override
+        public List<Map.Entry<String, Integer>> topWords(int k) {
+            WordCountTable totals = idle.poll();
+            if (totals == null) {
+                return List.of();
+            }
+            WordCountTable table;
+            while ((table = idle.poll()) != null) {
+                totals.merge(table);
+            }
+            return TopKSelector.select(totals, k);
+        }
+    }
+
+    private static final class AdderAccumulation implements Accumulation {
+        private final Tokenizer tokenizer;
+        private final ConcurrentHashMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+        private AdderAccumulation(Tokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+        }
+
+        @Override
+        public void countLines(List<String> lines) {
+            byte[] word = new byte[64];
+            WordSink sink = (bytes, length, hash) -> {
+                String key = new String(bytes, 0, length, StandardCharsets.UTF_8);
+                LongAdder adder = counts.get(key);
+                if (adder == null) {
+                    adder = counts.computeIfAbsent(key, ignored -> new LongAdder());
+                }
+                adder.increment();
+            };
+            for (String line : lines) {
+                word = tokenizer.tokenize(line, word, sink);
+            }
+        }
+
+        @Override
+        public List<Map.Entry<String, Integer>> topWords(int k) {
+            List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.size());
+            counts.forEach((word, adder) -> entries.add(Map.entry(word, (int) Math.min(Integer.MAX_VALUE, adder.sum()))));
+            return TopKSelector.select(entries, k);
+        }
+    }
+
+    private static final class MapAccumulation implements Accumulation {
+        private final Tokenizer tokenizer;
+        private final ConcurrentHashMap<String, Integer> counts = new ConcurrentHashMap<>();
+
+        private MapAccumulation(Tokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+        }
+
+        @Override
+        public void countLines(List<String> lines) {
+            byte[] word = new byte[64];
+            WordSink sink = (bytes, length, hash) -> counts.merge(new String(bytes, 0, length, StandardCharsets.UTF_8), 1, Integer::sum);
+            for (String line : lines) {
+                word = tokenizer.tokenize(line, word, sink);
+            }
+        }
+
+        @Override
+        public List<Map.Entry<String, Integer>> topWords(int k) {
+            return TopKSelector.select(counts.entrySet(), k);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,160 @@
+package dev.harshaan.FileScout;
+
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A word count running in the background, see {@link WordCountJobs}.
+ */
+public class WordCountJob {
+    /**
+     * The states of a job. A job starts running, possibly waiting for threads of the shared pool
+     * first, and ends in exactly one of the other states.
+     */
+    public enum State {
+        RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    @Getter
+    private final String id;
+    private final String fileName;
+    private final long totalBytes;
+    @Getter
+    private final AtomicLong bytesCounted = new AtomicLong();
+    private State state = State.RUNNING;
+    private List<String> result;
+    private String error;
+    private long finishedAt;
+    private Future<?> future;
+
+    /**
+     * Constructs a running job.
+     *
+     * @param id         the id of the job
+     * @param fileName   the name of the file being counted
+     * @param totalBytes the size of the file
+     */
+    public WordCountJob(String id, String fileName, long totalBytes) {
+        this.id = id;
+        this.fileName = fileName;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Gets the state of the job.
+     *
+     * @return the state
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Gets the word counts of a succeeded job.
+     *
+     * @return the word counts in the format "word: count", or null if the job has not succeeded
+     */
+    public synchronized List<String> getResult() {
+        return result;
+    }
+
+    /**
+     * Checks whether the job finished before the given time.
+     *
+     * @param time the time in milliseconds since the epoch
+     * @return true if the job is no longer running and finished before the time
+     */
+    public synchronized boolean finishedBefore(long time) {
+        return state != State.RUNNING && finishedAt < time;
+    }
+
+    /**
+     * Gets the status of the job as reported by the API.
+     *
+     * @return the id, file name, state, progress between 0 and 1, and error message if the job failed
+     */
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("id", id);
+        status.put("fileName", fileName);
+        status.put("state", state);
+        status.put("bytesCounted", Math.min(bytesCounted.get(), totalBytes));
+        status.put("totalBytes", totalBytes);
+        status.put("progress", state == State.SUCCEEDED || totalBytes == 0 ? 1.0 : Math.min(1.0, (double) bytesCounted.get() / totalBytes));
+        if (error != null) {
+            status.put("error", error);
+        }
+        return status;
+    }
+
+    /**
+     * Runs the count on the calling thread and records its outcome, unless the job was cancelled meanwhile.
+     * A count that was cut short, see {@link WordCountTruncatedException}, fails the job rather than
+     * passing off its partial counts as the result.
+     *
+     * @param count the count to run
+     */
+    void run(Callable<List<String>> count) {
+        try {
+            List<String> counts = count.call();
+            if (Thread.currentThread().isInterrupted()) {
+                finish(State.CANCELLED, null, null);
+            }
+            else {
+                finish(State.SUCCEEDED, counts, null);
+            }
+        }
+        catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                finish(State.CANCELLED, null, null);
+            }
+            else {
+                finish(State.FAILED, null, String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Records the future of the job so it can be cancelled.
+     *
+     * @param future the future of the job
+     */
+    synchronized void setFuture(Future<?> future) {
+        this.future = future;
+        if (state == State.CANCELLED) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Cancels the job if it is still running, interrupting the count.
+     *
+     * @return true if the job was running
+     */
+    synchronized boolean cancel() {
+        if (!finish(State.CANCELLED, null, null)) {
+            return false;
+        }
+        if (future != null) {
+            future.cancel(true);
+        }
+        return true;
+    }
+
+    private synchronized boolean finish(State finalState, List<String> counts, String message) {
+        if (state != State.RUNNING) {
+            return false;
+        }
+        state = finalState;
+        result = counts;
+        error = message;
+        finishedAt = System.currentTimeMillis();
+        return true;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+package dev.harshaan.FileScout;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs word counts in the background so long counts do not hold a request thread.
+ * A job is submitted, polled for its status and progress, and its result fetched once it has
+ * succeeded; a running job can be cancelled. Each job waits on a virtual thread for its turn on
+ * the shared {@link WordCountPool}; its time limit only starts once it has its threads, and a count
+ * that runs out of time fails rather than succeeding with partial counts. Finished jobs are kept for 10 minutes.
+ */
+@Service
+public class WordCountJobs {
+    private static final long RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_JOBS = 1000;
+
+    private final FileScoutService fileScoutService;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, WordCountJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs the job registry.
+     *
+     * @param fileScoutService the service that counts words in the files of the workspaces
+     */
+    @Autowired
+    public WordCountJobs(FileScoutService fileScoutService) {
+        this.fileScoutService = fileScoutService;
+    }
+
+    /**
+     * Starts counting words in a file of a workspace in the background.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @param fileName    the name of the file to count words in
+     * @param numThreads  the number of threads to use
+     * @param options     how to count and how many top words to return
+     * @return the job
+     * @throws Exception if the directory path is not set, the file does not exist or too many jobs are kept
+     */
+    public WordCountJob submit(String workspaceId, String fileName, int numThreads, WordCountOptions options) throws Exception {
+        String resolvedId = fileScoutService.resolveWorkspace(workspaceId);
+        File file = fileScoutService.getFile(resolvedId, fileName);
+        if (!file.isFile()) {
+            throw new Exception("File not found: " + fileName);
+        }
+        long expiry = System.currentTimeMillis() - RETENTION_MILLIS;
+        jobs.values().removeIf(job -> job.finishedBefore(expiry));
+        if (jobs.size() >= MAX_JOBS) {
+            throw new Exception("Too many word count jobs, try again later");
+        }
+
+        WordCountJob job = new WordCountJob(UUID.randomUUID().toString(), fileName, file.length());
+        jobs.put(job.getId(), job);
+        job.setFuture(executor.submit(() -> job.run(() -> fileScoutService.countWords(resolvedId, fileName, numThreads, options, job.getBytesCounted()))));
+        return job;
+    }
+
+    /**
+     * Gets a job.
+     *
+     * @param id the id of the job
+     * @return the job, or null if there is no such job or it has expired
+     */
+    public WordCountJob get(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Cancels a job if it is still running.
+     *
+     * @param id the id of the job
+     * @return the job, or null if there is no such job or it has expired
+     */
+    public WordCountJob cancel(String id) {
+        WordCountJob job = jobs.get(id);
+        if (job != null) {
+            job.cancel();
+        }
+        return job;
+    }
+
+    /**
+     * Interrupts the running jobs when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
\ No newline at end of file
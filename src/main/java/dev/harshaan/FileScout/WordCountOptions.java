@@ -0,0 +1,43 @@
+package dev.harshaan.FileScout;
+
+/**
+ * Options controlling how {@link WordCounterService} counts the words of a file.
+ *
+ * @param topK         the number of top words to return, from 1 to {@value #MAX_TOP_K}
+ * @param memoryMapped whether to count over memory-mapped byte ranges instead of line by line
+ * @param approximate  whether to estimate the top words within a fixed memory budget; implies memory mapping
+ */
+public record WordCountOptions(int topK, boolean memoryMapped, boolean approximate) {
+    /**
+     * The largest number of top words a count can return.
+     */
+    public static final int MAX_TOP_K = 10_000;
+
+    /**
+     * The default options: the exact top 10 words, counted line by line.
+     */
+    public static final WordCountOptions DEFAULTS = new WordCountOptions(10, false, false);
+
+    /**
+     * Checks the number of top words.
+     *
+     * @throws IllegalArgumentException if topK is not between 1 and {@value #MAX_TOP_K}
+     */
+    public WordCountOptions {
+        checkTopK(topK);
+    }
+
+    /**
+     * Checks a number of top words to return.
+     *
+     * @param topK the number of top words
+     * @return the number of top words
+     * @throws IllegalArgumentException if topK is not between 1 and {@value #MAX_TOP_K}
+     */
+    public static int checkTopK(int topK) {
+        if (topK <= 0 || topK > MAX_TOP_K) {
+            throw new IllegalArgumentException("topK must be between 1 and " + MAX_TOP_K + ": " + topK);
+        }
+        return topK;
+    }
+}
\ No newline at end of file
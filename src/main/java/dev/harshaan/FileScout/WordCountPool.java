@@ -0,0 +1,121 @@
+package dev.harshaan.FileScout;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The application-wide pool that word counts run on. Counting is CPU-bound, so the pool has a fixed
+ * number of threads, by default one per core, whatever the clients ask for.
+ * Each count first leases some of the pool's threads; leases are granted in arrival order, so a burst
+ * of small counts cannot starve a large one and the pool is never oversubscribed.
+ */
+@Component
+public class WordCountPool {
+    private final int parallelism;
+    private final Semaphore permits;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Constructs a pool with one thread per core whose metrics are recorded in memory only.
+     */
+    public WordCountPool() {
+        this(0, new FileScoutMetrics());
+    }
+
+    /**
+     * Constructs a pool and registers gauges for its queue depth, active threads and waiting counts.
+     *
+     * @param parallelism the number of threads of the pool; 0 or less for one per core
+     * @param metrics     the metrics to register the gauges to
+     */
+    @Autowired
+    public WordCountPool(@Value("${filescout.wordCount.parallelism:0}") int parallelism, FileScoutMetrics metrics) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.permits = new Semaphore(this.parallelism, true);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "word-count-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        metrics.gauge("filescout.wordcount.queued", "Tasks waiting in the word count pool", () -> executor.getQueue().size());
+        metrics.gauge("filescout.wordcount.active", "Threads counting words", executor::getActiveCount);
+        metrics.gauge("filescout.wordcount.waiting", "Word counts waiting to be admitted", permits::getQueueLength);
+    }
+
+    /**
+     * Gets the number of threads of the pool, which is also the most threads a single count can lease.
+     *
+     * @return the number of threads
+     */
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Leases threads for one count, waiting behind any counts that asked earlier.
+     *
+     * @param requestedThreads the number of threads the client asked for
+     * @return the lease, holding between 1 and {@link #parallelism()} threads
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public Lease acquire(int requestedThreads) throws InterruptedException {
+        int threads = Math.max(1, Math.min(requestedThreads, parallelism));
+        permits.acquire(threads);
+        return new Lease(threads);
+    }
+
+    /**
+     * Stops the pool's threads when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Threads of the pool leased by one count. Close it to hand the threads to the next count.
+     */
+    public final class Lease implements AutoCloseable {
+        private final int threads;
+        private boolean closed;
+
+        private Lease(int threads) {
+            this.threads = threads;
+        }
+
+        /**
+         * Gets the number of leased threads. The count should keep at most this many tasks in flight.
+         *
+         * @return the number of threads
+         */
+        public int threads() {
+            return threads;
+        }
+
+        /**
+         * Submits a task to the pool.
+         *
+         * @param task the task
+         * @param <T>  the type of the result of the task
+         * @return the future of the task
+         */
+        public <T> Future<T> submit(Callable<T> task) {
+            return executor.submit(task);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                permits.release(threads);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,256 @@
+package dev.harshaan.FileScout;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table counting words given as byte sequences.
+ * Words are copied into a single growing byte arena and counts are kept in primitive arrays,
+ * so adding a word never allocates unless the table itself has to grow. A table is meant to be
+ * owned by one thread; tables from several threads are combined with {@link #merge(WordCountTable)}.
+ */
+public class WordCountTable implements WordSink {
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private int[] slots;
+    private int[] hashes;
+    private int[] offsets;
+    private int[] lengths;
+    private long[] counts;
+    private byte[] arena;
+    private int arenaSize;
+    private int size;
+
+    /**
+     * Constructs an empty table.
+     */
+    public WordCountTable() {
+        slots = new int[1024];
+        Arrays.fill(slots, -1);
+        hashes = new int[512];
+        offsets = new int[512];
+        lengths = new int[512];
+        counts = new long[512];
+        arena = new byte[8192];
+    }
+
+    /**
+     * Gets the initial value of the hash accepted by {@link #add(byte[], int, int, int, long)}.
+     *
+     * @return the initial hash value
+     */
+    public static int initialHash() {
+        return FNV_OFFSET;
+    }
+
+    /**
+     * Folds one byte into a running word hash.
+     *
+     * @param hash the hash of the preceding bytes
+     * @param b    the next byte of the word
+     * @return the updated hash
+     */
+    public static int updateHash(int hash, byte b) {
+        return (hash ^ (b & 0xff)) * FNV_PRIME;
+    }
+
+    /**
+     * Adds occurrences of a word to the table.
+     *
+     * @param word   the buffer holding the word's bytes
+     * @param offset the offset of the word in the buffer
+     * @param length the length of the word in bytes
+     * @param hash   the hash of the word, computed with {@link #updateHash(int, byte)}
+     * @param count  the number of occurrences to add; negative to remove occurrences added before
+     * @return the count of the word after the addition
+     */
+    public long add(byte[] word, int offset, int length, int hash, long count) {
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry < 0) {
+                slots[slot] = insert(word, offset, length, hash, count);
+                if (size * 2 > slots.length) {
+                    rehash();
+                }
+                return count;
+            }
+            if (hashes[entry] == hash && lengths[entry] == length
+                    && Arrays.equals(arena, offsets[entry], offsets[entry] + length, word, offset, offset + length)) {
+                counts[entry] += count;
+                return counts[entry];
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Gets the number of occurrences of a word.
+     *
+     * @param word   the buffer holding the word's bytes
+     * @param offset the offset of the word in the buffer
+     * @param length the length of the word in bytes
+     * @param hash   the hash of the word, computed with {@link #updateHash(int, byte)}
+     * @return the count of the word, or 0 if it is not in the table
+     */
+    public long get(byte[] word, int offset, int length, int hash) {
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry < 0) {
+                return 0;
+            }
+            if (hashes[entry] == hash && lengths[entry] == length
+                    && Arrays.equals(arena, offsets[entry], offsets[entry] + length, word, offset, offset + length)) {
+                return counts[entry];
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public void accept(byte[] word, int length, int hash) {
+        add(word, 0, length, hash, 1);
+    }
+
+    /**
+     * Adds all counts of another table to this one.
+     *
+     * @param other the table to merge into this one
+     */
+    public void merge(WordCountTable other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.arena, other.offsets[i], other.lengths[i], other.hashes[i], other.counts[i]);
+        }
+    }
+
+    /**
+     * Removes all counts of another table, previously merged into this one, from this one.
+     * Words whose count drops to zero keep their entry until the table is compacted.
+     *
+     * @param other the table to subtract from this one
+     * @return the number of words whose count dropped to zero
+     */
+    public int subtract(WordCountTable other) {
+        int emptied = 0;
+        for (int i = 0; i < other.size; i++) {
+            if (add(other.arena, other.offsets[i], other.lengths[i], other.hashes[i], -other.counts[i]) == 0) {
+                emptied++;
+            }
+        }
+        return emptied;
+    }
+
+    /**
+     * Copies the words with a positive count into a new table.
+     *
+     * @return the compacted table
+     */
+    public WordCountTable compact() {
+        WordCountTable compacted = new WordCountTable();
+        for (int i = 0; i < size; i++) {
+            if (counts[i] > 0) {
+                compacted.add(arena, offsets[i], lengths[i], hashes[i], counts[i]);
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Gets the number of distinct words in the table, including words whose count dropped to zero.
+     *
+     * @return the number of distinct words
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the word stored at the specified entry, decoding it as UTF-8.
+     *
+     * @param entry the entry index, between 0 and {@link #size()}
+     * @return the word
+     */
+    public String word(int entry) {
+        return new String(arena, offsets[entry], lengths[entry], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares the words of two entries in the order of {@link String#compareTo}, without decoding them.
+     * UTF-8 bytes compare in code point order, which is String order except for characters beyond the
+     * Basic Multilingual Plane: as surrogate pairs they sort before U+E000 to U+FFFF in a String.
+     *
+     * @param entry the index of one entry, between 0 and {@link #size()}
+     * @param other the index of the other entry, between 0 and {@link #size()}
+     * @return a negative number, zero or a positive number as the first word sorts before, with or after the second
+     */
+    public int compareWords(int entry, int other) {
+        int length = Math.min(lengths[entry], lengths[other]);
+        for (int i = 0; i < length; i++) {
+            int b = arena[offsets[entry] + i] & 0xFF;
+            int o = arena[offsets[other] + i] & 0xFF;
+            if (b != o) {
+                return utf16Rank(b) - utf16Rank(o);
+            }
+        }
+        return lengths[entry] - lengths[other];
+    }
+
+    /**
+     * Ranks a byte of a UTF-8 word so that the lead bytes of four-byte sequences fall between 0xED, which
+     * starts U+D000 to U+DFFF, and 0xEE, which starts U+E000 to U+EFFF; other bytes keep their order.
+     */
+    private static int utf16Rank(int b) {
+        return b >= 0xF0 ? 0xED * 8 + 1 + (b - 0xF0) : b * 8;
+    }
+
+    /**
+     * Gets the count stored at the specified entry.
+     *
+     * @param entry the entry index, between 0 and {@link #size()}
+     * @return the number of occurrences of the entry's word
+     */
+    public long count(int entry) {
+        return counts[entry];
+    }
+
+    private int insert(byte[] word, int offset, int length, int hash, long count) {
+        if (size == hashes.length) {
+            int capacity = size * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+        }
+        System.arraycopy(word, offset, arena, arenaSize, length);
+        hashes[size] = hash;
+        offsets[size] = arenaSize;
+        lengths[size] = length;
+        counts[size] = count;
+        arenaSize += length;
+        return size++;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, -1);
+        int mask = slots.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = mix(hashes[entry]) & mask;
+            while (slots[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
\ No newline at end of file
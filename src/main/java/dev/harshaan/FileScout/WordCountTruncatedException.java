@@ -0,0 +1,26 @@
+package dev.harshaan.FileScout;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thrown when a word count stops before it has counted the whole file, because it ran out of time or
+ * its thread was interrupted. The counts of the part that was counted are kept, but they undercount the file.
+ */
+public class WordCountTruncatedException extends RuntimeException {
+    @Getter
+    private final List<Map.Entry<String, Integer>> partialCounts;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param message       why the count stopped
+     * @param partialCounts the top words of the part of the file that was counted
+     */
+    public WordCountTruncatedException(String message, List<Map.Entry<String, Integer>> partialCounts) {
+        super(message);
+        this.partialCounts = partialCounts;
+    }
+}
\ No newline at end of file
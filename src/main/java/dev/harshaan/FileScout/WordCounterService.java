@@ -1,19 +1,96 @@
 package dev.harshaan.FileScout;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
- * Service for counting words and returning the top 10 words in a file.
+ * Service for counting words and returning the top words in a file.
  * Uses a multithreaded approach to count words.
  */
 @Service
 public class WordCounterService {
-    private final MultithreadedWordCounter wordCounter = new MultithreadedWordCounter();
+    private final MultithreadedWordCounter wordCounter;
+    private final CorpusWordCounter corpusCounter;
 
-    public List<Map.Entry<String, Integer>> countWords(String fileName, int numThreads) {
-        return wordCounter.countWords(fileName, numThreads);
+    /**
+     * Constructs a service with its own pool, whose metrics are recorded in memory only.
+     */
+    public WordCounterService() {
+        this(new WordCountPool(), new FileScoutMetrics(), WordCountAccumulator.PER_THREAD, new Tokenizer());
+    }
+
+    /**
+     * Constructs a service.
+     *
+     * @param pool        the shared pool to count on
+     * @param metrics     the metrics to record counting stages to
+     * @param accumulator how line-by-line counts combine the counts of their batches
+     * @param tokenizer   how words are split and normalized
+     */
+    @Autowired
+    public WordCounterService(WordCountPool pool, FileScoutMetrics metrics,
+                              @Value("${filescout.wordCount.accumulator:per-thread}") WordCountAccumulator accumulator,
+                              Tokenizer tokenizer) {
+        this.wordCounter = new MultithreadedWordCounter(pool, metrics, accumulator, tokenizer);
+        this.corpusCounter = new CorpusWordCounter(pool, metrics, tokenizer);
+    }
+
+    /**
+     * Counts words in the specified file.
+     *
+     * @param fileName   the name of the file to count words in
+     * @param numThreads the number of threads to use
+     * @param options    how to count and how many top words to return
+     * @return a list of the top words and their counts
+     * @throws IOException                 if the file cannot be read
+     * @throws WordCountTruncatedException if the count timed out or was interrupted
+     */
+    public List<Map.Entry<String, Integer>> countWords(String fileName, int numThreads, WordCountOptions options) throws IOException {
+        return countWords(fileName, numThreads, options, new AtomicLong());
+    }
+
+    /**
+     * Counts words in the specified file, reporting how far the count has got.
+     *
+     * @param fileName   the name of the file to count words in
+     * @param numThreads the number of threads to use
+     * @param options    how to count and how many top words to return
+     * @param progress   incremented by the approximate number of bytes counted so far
+     * @return a list of the top words and their counts
+     * @throws IOException                 if the file cannot be read
+     * @throws WordCountTruncatedException if the count timed out or was interrupted
+     */
+    public List<Map.Entry<String, Integer>> countWords(String fileName, int numThreads, WordCountOptions options, AtomicLong progress) throws IOException {
+        if (options.approximate()) {
+            return wordCounter.countWordsApproximate(fileName, numThreads, options.topK(), progress);
+        }
+        if (options.memoryMapped()) {
+            return wordCounter.countWordsMapped(fileName, numThreads, options.topK(), progress);
+        }
+        return wordCounter.countWords(fileName, numThreads, options.topK(), progress);
+    }
+
+    /**
+     * Counts the words of every text file of a workspace, reading only the files that changed since the
+     * last corpus count, see {@link CorpusWordCounter}.
+     *
+     * @param counts the corpus counts of the workspace
+     * @param files  the text files of the workspace
+     * @param namer  gives the name of a file, relative to the workspace's directory
+     * @param topK   the number of top words to return
+     * @return a list of the top words of the corpus and their counts
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the pool
+     */
+    public List<Map.Entry<String, Integer>> countCorpus(CorpusWordCounts counts, List<File> files, Function<File, String> namer,
+                                                        int topK) throws InterruptedException {
+        return corpusCounter.count(counts, files, namer, topK);
     }
 }
\ No newline at end of file
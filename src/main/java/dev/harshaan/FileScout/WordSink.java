@@ -0,0 +1,15 @@
+package dev.harshaan.FileScout;
+
+/**
+ * Receives the words produced by a tokenizer as byte sequences, without allocating per word.
+ */
+public interface WordSink {
+    /**
+     * Accepts one occurrence of a word.
+     *
+     * @param word   the buffer holding the word's bytes; only valid for the duration of the call
+     * @param length the length of the word in bytes, starting at offset 0
+     * @param hash   the hash of the word, computed with {@link WordCountTable#updateHash(int, byte)}
+     */
+    void accept(byte[] word, int length, int hash);
+}
\ No newline at end of file
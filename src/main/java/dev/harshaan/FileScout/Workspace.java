@@ -0,0 +1,340 @@
+package dev.harshaan.FileScout;
+
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A loaded directory with its own keyword index, stats and signature caches and load options, see {@link WorkspaceRegistry}.
+ * Operations that only read the directory run concurrently under the workspace's read lock;
+ * operations that create, modify or delete files take its write lock. Operations on different
+ * workspaces never wait for each other.
+ * Once loaded, the directory is watched for changes, see {@link DirectoryWatcher}, and later
+ * operations use the watcher's catalog of files instead of walking the directory.
+ */
+public class Workspace {
+    private static final Logger logger = Logger.getLogger(Workspace.class.getName());
+    private static final int MAX_LINE_INDEXES = 64;
+
+    @Getter
+    private final String id;
+    @Getter
+    private final String directoryPath;
+    @Getter
+    private final InvertedIndex index;
+    @Getter
+    private final FileStatsCache statsCache;
+    @Getter
+    private final MinHashCache minHashCache;
+    @Getter
+    private final CorpusWordCounts corpusCounts = new CorpusWordCounts();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, LineOffsetIndex> lineIndexes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LineOffsetIndex> eldest) {
+            return size() > MAX_LINE_INDEXES;
+        }
+    };
+    private volatile DirectoryLoadOptions loadOptions = DirectoryLoadOptions.DEFAULTS;
+    private volatile long lastAccessed = System.currentTimeMillis();
+    private DirectoryWatcher watcher;
+    private long watchers;
+    private boolean closed;
+
+    /**
+     * An operation on a workspace.
+     *
+     * @param <T> the type of the result of the operation
+     */
+    public interface Action<T> {
+        /**
+         * Runs the operation.
+         *
+         * @param workspace the workspace, locked for the duration of the call
+         * @return the result of the operation
+         * @throws Exception if the operation fails
+         */
+        T run(Workspace workspace) throws Exception;
+    }
+
+    /**
+     * Opens a workspace, loading the sidecars of its directory.
+     *
+     * @param id            the id of the workspace
+     * @param directoryPath the decoded path of the directory
+     */
+    public Workspace(String id, String directoryPath) {
+        this.id = id;
+        this.directoryPath = directoryPath;
+        this.index = InvertedIndex.open(directoryPath);
+        this.statsCache = FileStatsCache.open(directoryPath);
+        this.minHashCache = MinHashCache.open(directoryPath);
+    }
+
+    /**
+     * Runs an operation that only reads the directory, concurrently with other reads.
+     *
+     * @param action the operation
+     * @param <T>    the type of the result of the operation
+     * @return the result of the operation
+     * @throws Exception if the workspace was evicted or the operation fails
+     */
+    public <T> T read(Action<T> action) throws Exception {
+        return run(lock.readLock(), action);
+    }
+
+    /**
+     * Runs an operation that modifies the directory, excluding all other operations on the workspace.
+     *
+     * @param action the operation
+     * @param <T>    the type of the result of the operation
+     * @return the result of the operation
+     * @throws Exception if the workspace was evicted or the operation fails
+     */
+    public <T> T write(Action<T> action) throws Exception {
+        return run(lock.writeLock(), action);
+    }
+
+    private <T> T run(Lock held, Action<T> action) throws Exception {
+        held.lock();
+        try {
+            if (closed) {
+                throw new Exception("Workspace was closed, load the directory again: " + id);
+            }
+            lastAccessed = System.currentTimeMillis();
+            return action.run(this);
+        }
+        finally {
+            held.unlock();
+        }
+    }
+
+    /**
+     * Gets the depth and extensions of the last load, which define the workspace's text files.
+     *
+     * @return the load options
+     */
+    public DirectoryLoadOptions getLoadOptions() {
+        return loadOptions;
+    }
+
+    /**
+     * Sets the depth and extensions used by later operations. Running operations read the options,
+     * so they are only set under the write lock.
+     *
+     * @param loadOptions the load options
+     */
+    public void setLoadOptions(DirectoryLoadOptions loadOptions) {
+        this.loadOptions = loadOptions;
+    }
+
+    /**
+     * Gets when the workspace was last used.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getLastAccessed() {
+        return lastAccessed;
+    }
+
+    /**
+     * Gets a file of the workspace's directory. Names that resolve outside the directory, e.g. through
+     * {@code ..} segments or an absolute path, are rejected.
+     *
+     * @param fileName the name of the file, relative to the directory
+     * @return the file
+     * @throws IllegalArgumentException if the name resolves outside the directory
+     */
+    public File getFile(String fileName) {
+        Path root = getRoot().toAbsolutePath().normalize();
+        if (!root.resolve(fileName).normalize().startsWith(root)) {
+            throw new IllegalArgumentException("File is outside the workspace directory: " + fileName);
+        }
+        return new File(directoryPath, fileName);
+    }
+
+    /**
+     * Gets the root of the workspace's directory.
+     *
+     * @return the directory
+     */
+    public Path getRoot() {
+        return Paths.get(directoryPath);
+    }
+
+    /**
+     * Gets the name of a file in the directory as used by the API, i.e. its path relative to the directory.
+     *
+     * @param file the file
+     * @return the relative name of the file
+     */
+    public String relativeName(File file) {
+        return DirectoryLoader.relativeName(getRoot(), file.toPath());
+    }
+
+    /**
+     * Checks if a file is a text file based on the extensions of the last load, and in cluster mode,
+     * if it belongs to the workspace's shard.
+     *
+     * @param file the file to check
+     * @return true if the file is a text file, false otherwise
+     */
+    public boolean isTextFile(File file) {
+        return loadOptions.includes(getRoot(), file.toPath());
+    }
+
+    /**
+     * Gets the line offset index of a file, building it if there is none or the file changed since it was built.
+     * The indexes of the most recently used files are kept in memory.
+     *
+     * @param fileName the name of the file, relative to the directory
+     * @return the index
+     * @throws IOException if the file cannot be read
+     */
+    public LineOffsetIndex lineIndex(String fileName) throws IOException {
+        File file = getFile(fileName);
+        synchronized (lineIndexes) {
+            LineOffsetIndex cached = lineIndexes.get(fileName);
+            if (cached != null && cached.matches(file)) {
+                return cached;
+            }
+        }
+        LineOffsetIndex built = LineOffsetIndex.build(file);
+        synchronized (lineIndexes) {
+            lineIndexes.put(fileName, built);
+        }
+        return built;
+    }
+
+    /**
+     * Gets the watcher for a load, starting one before the directory is walked so no change made
+     * during the walk is missed. The watcher is reused if it watches with the same options; otherwise
+     * the old watcher is closed, so this is only called under the write lock.
+     *
+     * @param options the depth and extensions of the load
+     * @return the watcher, to be seeded once the load completes, or null if the directory cannot be watched
+     */
+    public synchronized DirectoryWatcher watch(DirectoryLoadOptions options) {
+        if (closed) {
+            return null;
+        }
+        if (watcher != null && watcher.getOptions().equals(options)) {
+            return watcher;
+        }
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+        try {
+            watcher = new DirectoryWatcher(getRoot(), options, index, statsCache);
+            watchers++;
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot watch directory, operations will walk it: " + directoryPath, e);
+        }
+        return watcher;
+    }
+
+    /**
+     * Gets the text files of the directory from the watcher's catalog, without touching the disk.
+     *
+     * @return the text files, or null if the catalog is not current for the last load's options
+     */
+    public List<File> catalog() {
+        return catalog(loadOptions);
+    }
+
+    /**
+     * Gets the files matching the options from the watcher's catalog, without touching the disk.
+     * The watcher only ever watches with the last load's options, so a catalog is only found for those.
+     *
+     * @param options the depth and extensions of the files
+     * @return the files, or null if the catalog is not current for the options
+     */
+    public synchronized List<File> catalog(DirectoryLoadOptions options) {
+        if (watcher == null || !watcher.isCurrent() || !watcher.getOptions().equals(options)) {
+            return null;
+        }
+        return watcher.files();
+    }
+
+    /**
+     * Gets a version of the directory's text files that changes whenever the watcher sees a file added,
+     * changed or deleted, or the workspace writes or deletes one. The version is unique to this workspace
+     * and watcher, so it never repeats after the directory is loaded again.
+     *
+     * @param options the depth and extensions that define the text files
+     * @return the version, or null if the catalog is not current for the options
+     */
+    public synchronized String version(DirectoryLoadOptions options) {
+        if (watcher == null || !watcher.isCurrent() || !watcher.getOptions().equals(options)) {
+            return null;
+        }
+        return id + ":" + watchers + ":" + watcher.generation();
+    }
+
+    /**
+     * Adds a file the workspace just wrote to the catalog and removes its old counts from the corpus totals.
+     *
+     * @param file the file
+     */
+    public synchronized void fileChanged(File file) {
+        corpusCounts.invalidate(relativeName(file));
+        if (watcher != null) {
+            watcher.fileChanged(file);
+        }
+    }
+
+    /**
+     * Removes a file the workspace just deleted from the catalog and its counts from the corpus totals.
+     *
+     * @param fileName the name of the file, relative to the directory
+     */
+    public synchronized void fileDeleted(String fileName) {
+        corpusCounts.invalidate(fileName);
+        if (watcher != null) {
+            watcher.fileDeleted(fileName);
+        }
+    }
+
+    /**
+     * Writes pending keyword index, stats cache and signature cache changes to disk.
+     */
+    public void flush() {
+        index.flush();
+        statsCache.flush();
+        minHashCache.flush();
+    }
+
+    /**
+     * Stops watching the directory, flushes the workspace once running operations finish and rejects any later operation.
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (watcher != null) {
+                    watcher.close();
+                }
+            }
+            flush();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,186 @@
+package dev.harshaan.FileScout;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the loaded directories as workspaces, each with its own id, so clients working on different
+ * directories do not overwrite each other's state. Loading the same directory again returns its
+ * existing workspace. Requests without a workspace id use the most recently loaded one.
+ * Workspaces unused for longer than the idle timeout are evicted, as are the least recently used
+ * ones once there are too many; eviction saves their sidecars.
+ * Opening a workspace loads its sidecars, which can take a while, so it happens outside the registry's
+ * lock and only blocks other requests for the same directory; looking a workspace up takes no lock.
+ */
+@Component
+public class WorkspaceRegistry {
+    private static final Logger logger = Logger.getLogger(WorkspaceRegistry.class.getName());
+
+    private final int maxWorkspaces;
+    private final long idleTimeoutMillis;
+    private final Map<String, Workspace> byId = new ConcurrentHashMap<>();
+    private final Map<String, Opening> byDirectory = new ConcurrentHashMap<>();
+    private volatile Workspace latest;
+
+    /**
+     * Constructs a registry of up to 32 workspaces that are evicted after 30 idle minutes.
+     */
+    public WorkspaceRegistry() {
+        this(32, 30);
+    }
+
+    /**
+     * Constructs a registry.
+     *
+     * @param maxWorkspaces      the maximum number of workspaces kept open
+     * @param idleTimeoutMinutes the number of minutes after which an unused workspace is evicted
+     */
+    @Autowired
+    public WorkspaceRegistry(@Value("${filescout.workspace.max:32}") int maxWorkspaces,
+                             @Value("${filescout.workspace.idleTimeoutMinutes:30}") long idleTimeoutMinutes) {
+        this.maxWorkspaces = Math.max(1, maxWorkspaces);
+        this.idleTimeoutMillis = TimeUnit.MINUTES.toMillis(idleTimeoutMinutes);
+    }
+
+    /**
+     * Gets the workspace of a directory, opening one if it has none, and makes it the latest workspace.
+     *
+     * @param directoryPath the URL-encoded path of the directory
+     * @return the workspace
+     */
+    public Workspace open(String directoryPath) {
+        String decodedPath = new File(URLDecoder.decode(directoryPath, StandardCharsets.UTF_8)).getAbsolutePath();
+        List<Workspace> evicted;
+        Workspace workspace;
+        while (true) {
+            Opening opening = byDirectory.computeIfAbsent(decodedPath, Opening::new);
+            workspace = opening.workspace();
+            synchronized (this) {
+                // The workspace may have been evicted while it was being opened; open it again then.
+                if (byDirectory.get(decodedPath) != opening) {
+                    continue;
+                }
+                byId.put(workspace.getId(), workspace);
+                latest = workspace;
+                evicted = evict();
+            }
+            break;
+        }
+        for (Workspace victim : evicted) {
+            logger.info("Evicting workspace " + victim.getId() + ": " + victim.getDirectoryPath());
+            victim.close();
+        }
+        return workspace;
+    }
+
+    /**
+     * Gets a workspace by id.
+     *
+     * @param workspaceId the id of the workspace, or null for the most recently loaded one
+     * @return the workspace
+     * @throws Exception if no directory was loaded yet or there is no workspace with the id
+     */
+    public Workspace get(String workspaceId) throws Exception {
+        if (workspaceId == null || workspaceId.isBlank()) {
+            Workspace workspace = latest;
+            if (workspace == null) {
+                throw new Exception("Directory path not set");
+            }
+            return workspace;
+        }
+        Workspace workspace = byId.get(workspaceId);
+        if (workspace == null) {
+            throw new Exception("Unknown workspace, load the directory again: " + workspaceId);
+        }
+        return workspace;
+    }
+
+    /**
+     * Lists the open workspaces.
+     *
+     * @return the id and directory path of each workspace
+     */
+    public List<Map<String, Object>> list() {
+        Workspace latest = this.latest;
+        List<Map<String, Object>> workspaces = new ArrayList<>();
+        for (Workspace workspace : byId.values()) {
+            Map<String, Object> details = new HashMap<>();
+            details.put("id", workspace.getId());
+            details.put("directoryPath", workspace.getDirectoryPath());
+            details.put("latest", workspace == latest);
+            workspaces.add(details);
+        }
+        return workspaces;
+    }
+
+    /**
+     * Removes idle workspaces, then the least recently used ones beyond the maximum. The latest
+     * workspace is never removed.
+     *
+     * @return the removed workspaces, to be closed outside the registry's lock
+     */
+    private List<Workspace> evict() {
+        long now = System.currentTimeMillis();
+        Map<Workspace, Long> lastAccessed = new HashMap<>();
+        for (Workspace workspace : byId.values()) {
+            if (workspace != latest) {
+                lastAccessed.put(workspace, workspace.getLastAccessed());
+            }
+        }
+        List<Workspace> candidates = new ArrayList<>(lastAccessed.keySet());
+        candidates.sort(Comparator.comparing(lastAccessed::get));
+
+        List<Workspace> evicted = new ArrayList<>();
+        int remaining = byId.size();
+        for (Workspace workspace : candidates) {
+            if (remaining <= maxWorkspaces && now - lastAccessed.get(workspace) < idleTimeoutMillis) {
+                break;
+            }
+            byId.remove(workspace.getId());
+            byDirectory.remove(workspace.getDirectoryPath());
+            evicted.add(workspace);
+            remaining--;
+        }
+        return evicted;
+    }
+
+    /**
+     * Writes the pending sidecar changes of every workspace to disk before the application shuts down.
+     */
+    @PreDestroy
+    public void flush() {
+        for (Workspace workspace : new ArrayList<>(byId.values())) {
+            workspace.flush();
+        }
+    }
+
+    /**
+     * The workspace of a directory, created by the first request that needs it. Requests for the same
+     * directory wait for that one instead of loading the sidecars again.
+     */
+    private static final class Opening {
+        private final String directoryPath;
+        private Workspace workspace;
+
+        Opening(String directoryPath) {
+            this.directoryPath = directoryPath;
+        }
+
+        synchronized Workspace workspace() {
+            if (workspace == null) {
+                workspace = new Workspace(UUID.randomUUID().toString(), directoryPath);
+            }
+            return workspace;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package dev.harshaan.FileScout;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks how {@link Tokenizer} splits and normalizes words, in particular which words it stems.
+ */
+class TokenizerTest {
+    private final Tokenizer stemming = new Tokenizer(true, true, new String[0], true);
+
+    @Test
+    void shortWordsAreNotStemmed() {
+        assertEquals(List.of("this", "is", "was", "his", "has", "yes", "its", "us"),
+                words(stemming, "This is was his has yes its us"));
+    }
+
+    @Test
+    void wordsThatAreNotPluralsAreNotStemmed() {
+        assertEquals(List.of("analysis", "basis", "bus", "glass", "does", "news", "series", "species", "always"),
+                words(stemming, "analysis basis bus glass does news series species always"));
+    }
+
+    @Test
+    void pluralsAreStemmed() {
+        assertEquals(List.of("cat", "dog", "query", "fly", "tie", "day"),
+                words(stemming, "cats dogs queries flies ties days"));
+    }
+
+    @Test
+    void bytesAreStemmedLikeCharacters() {
+        String text = "This is was queries cats analysis news ties";
+        List<String> fromBytes = new ArrayList<>();
+        stemming.tokenize(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), new byte[64],
+                (bytes, length, hash) -> fromBytes.add(new String(bytes, 0, length, StandardCharsets.UTF_8)));
+        assertEquals(words(stemming, text), fromBytes);
+    }
+
+    @Test
+    void wordsAreNotStemmedByDefault() {
+        assertEquals(List.of("cats", "queries", "this"), words(new Tokenizer(), "Cats queries, this!"));
+    }
+
+    private static List<String> words(Tokenizer tokenizer, String text) {
+        List<String> words = new ArrayList<>();
+        tokenizer.tokenize(text, new byte[64], (bytes, length, hash) -> words.add(new String(bytes, 0, length, StandardCharsets.UTF_8)));
+        return words;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package dev.harshaan.FileScout;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks that every {@link WordCountAccumulator} counts the same words as a single-threaded count.
+ */
+class WordCountAccumulatorTest {
+    private static final int LINES_PER_TASK = 1024;
+    private static final int TOP_K = WordCountOptions.MAX_TOP_K;
+
+    private final WordCountPool pool = new WordCountPool();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void shutDownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void everyAccumulatorMatchesSingleThreadedCount() throws IOException {
+        Path file = writeFixture();
+        List<Map.Entry<String, Integer>> expected = countSingleThreaded(Files.readAllLines(file, StandardCharsets.UTF_8));
+        assertFalse(expected.isEmpty());
+
+        for (WordCountAccumulator accumulator : WordCountAccumulator.values()) {
+            MultithreadedWordCounter counter = new MultithreadedWordCounter(pool, new FileScoutMetrics(), accumulator);
+            assertEquals(expected, counter.countWords(file.toString(), 4, TOP_K), accumulator.name());
+        }
+    }
+
+    @Test
+    void wordsAroundBatchBoundariesAreCountedOnce() throws IOException {
+        Path file = writeFixture();
+        for (WordCountAccumulator accumulator : WordCountAccumulator.values()) {
+            MultithreadedWordCounter counter = new MultithreadedWordCounter(pool, new FileScoutMetrics(), accumulator);
+            Map<String, Integer> counts = toMap(counter.countWords(file.toString(), 4, TOP_K));
+            // One occurrence on the last line of each of the four full batches, one on the first line of the next batch.
+            assertEquals(4, counts.get("boundarylast"), accumulator.name());
+            assertEquals(4, counts.get("boundaryfirst"), accumulator.name());
+            assertEquals(1, counts.get("unterminated"), accumulator.name());
+        }
+    }
+
+    @Test
+    void accumulatorsMatchMemoryMappedCount() throws IOException {
+        Path file = writeFixture();
+        List<Map.Entry<String, Integer>> mapped = new MultithreadedWordCounter(pool, new FileScoutMetrics())
+                .countWordsMapped(file.toString(), 4, TOP_K);
+        for (WordCountAccumulator accumulator : WordCountAccumulator.values()) {
+            MultithreadedWordCounter counter = new MultithreadedWordCounter(pool, new FileScoutMetrics(), accumulator);
+            assertEquals(mapped, counter.countWords(file.toString(), 4, TOP_K), accumulator.name());
+        }
+    }
+
+    /**
+     * Writes a little over four batches of lines with a skewed vocabulary. Marker words sit on the last
+     * line of every full batch and the first line of the next one, and the file does not end in a newline.
+     */
+    private Path writeFixture() throws IOException {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        int lines = 4 * LINES_PER_TASK + 100;
+        for (int line = 0; line < lines; line++) {
+            if (line > 0) {
+                text.append('\n');
+            }
+            int words = random.nextInt(12);
+            for (int i = 0; i < words; i++) {
+                int rank = (int) Math.min(999, Math.abs(random.nextGaussian()) * 120);
+                text.append(i == 0 ? "" : random.nextBoolean() ? " " : " \t ").append(word(rank));
+            }
+            if (line % LINES_PER_TASK == LINES_PER_TASK - 1) {
+                text.append(" boundarylast");
+            }
+            if (line > 0 && line % LINES_PER_TASK == 0) {
+                text.append(" Boundaryfirst");
+            }
+        }
+        text.append(" unterminated");
+        Path file = directory.resolve("fixture.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static String word(int rank) {
+        StringBuilder word = new StringBuilder("w");
+        do {
+            word.append((char) ('a' + rank % 26));
+            rank /= 26;
+        }
+        while (rank > 0);
+        return word.toString();
+    }
+
+    private static List<Map.Entry<String, Integer>> countSingleThreaded(List<String> lines) {
+        Tokenizer tokenizer = new Tokenizer();
+        Map<String, Integer> counts = new HashMap<>();
+        byte[] word = new byte[64];
+        for (String line : lines) {
+            word = tokenizer.tokenize(line, word, (bytes, length, hash) ->
+                    counts.merge(new String(bytes, 0, length, StandardCharsets.UTF_8), 1, Integer::sum));
+        }
+        return TopKSelector.select(new ArrayList<>(counts.entrySet()), TOP_K);
+    }
+
+    private static Map<String, Integer> toMap(List<Map.Entry<String, Integer>> entries) {
+        Map<String, Integer> map = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            map.put(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+}
\ No newline at end of file